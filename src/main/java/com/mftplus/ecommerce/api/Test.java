@@ -1,7 +1,6 @@
 package com.mftplus.ecommerce.api;
 
 import com.mftplus.ecommerce.api.dto.RegistrationBody;
-import com.mftplus.ecommerce.exception.EmailFailureException;
 import com.mftplus.ecommerce.exception.UserAlreadyExistsException;
 import com.mftplus.ecommerce.model.entity.*;
 import com.mftplus.ecommerce.repository.*;
@@ -10,6 +9,8 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/test")
 public class Test {
@@ -46,8 +47,6 @@ public class Test {
             userService.save(user);
         } catch (UserAlreadyExistsException e) {
             throw new RuntimeException(e);
-        }catch (EmailFailureException e) {
-            throw  new RuntimeException();
         }
 
         RegistrationBody user1 = RegistrationBody.builder()
@@ -61,8 +60,6 @@ public class Test {
             userService.save(user1);
         } catch (UserAlreadyExistsException e) {
             throw new RuntimeException(e);
-        } catch (EmailFailureException e) {
-            throw  new RuntimeException();
         }
 
         //product
@@ -150,35 +147,18 @@ public class Test {
         Order order5 = Order.builder().user(userRepository.findByUsernameIgnoreCaseAndDeletedFalse(user1.getUsername()).get()).address(address2).build();
         orderRepository.save(order5);
 
-        //order quantities
-        OrderQuantities orderQuantities1 = OrderQuantities.builder().order(order1).product(product1).quantity(1).build();
-        orderQuantitiesRepository.save(orderQuantities1);
-
-        OrderQuantities orderQuantities2 = OrderQuantities.builder().order(order1).product(product2).quantity(1).build();
-        orderQuantitiesRepository.save(orderQuantities2);
-
-        OrderQuantities orderQuantities3 = OrderQuantities.builder().order(order2).product(product3).quantity(1).build();
-        orderQuantitiesRepository.save(orderQuantities3);
-
-        OrderQuantities orderQuantities4 = OrderQuantities.builder().order(order2).product(product2).quantity(1).build();
-        orderQuantitiesRepository.save(orderQuantities4);
-
-        OrderQuantities orderQuantities5 = OrderQuantities.builder().order(order2).product(product5).quantity(1).build();
-        orderQuantitiesRepository.save(orderQuantities5);
-
-        OrderQuantities orderQuantities6 = OrderQuantities.builder().order(order3).product(product3).quantity(1).build();
-        orderQuantitiesRepository.save(orderQuantities6);
-
-        OrderQuantities orderQuantities7 = OrderQuantities.builder().order(order4).product(product4).quantity(1).build();
-        orderQuantitiesRepository.save(orderQuantities7);
-
-        OrderQuantities orderQuantities8 = OrderQuantities.builder().order(order4).product(product2).quantity(1).build();
-        orderQuantitiesRepository.save(orderQuantities8);
-
-        OrderQuantities orderQuantities9 = OrderQuantities.builder().order(order5).product(product3).quantity(1).build();
-        orderQuantitiesRepository.save(orderQuantities9);
-
-        OrderQuantities orderQuantities10 = OrderQuantities.builder().order(order5).product(product1).quantity(1).build();
-        orderQuantitiesRepository.save(orderQuantities10);
+        //order quantities, inserted in one batch
+        orderQuantitiesRepository.saveAll(List.of(
+                OrderQuantities.builder().order(order1).product(product1).quantity(1).build(),
+                OrderQuantities.builder().order(order1).product(product2).quantity(1).build(),
+                OrderQuantities.builder().order(order2).product(product3).quantity(1).build(),
+                OrderQuantities.builder().order(order2).product(product2).quantity(1).build(),
+                OrderQuantities.builder().order(order2).product(product5).quantity(1).build(),
+                OrderQuantities.builder().order(order3).product(product3).quantity(1).build(),
+                OrderQuantities.builder().order(order4).product(product4).quantity(1).build(),
+                OrderQuantities.builder().order(order4).product(product2).quantity(1).build(),
+                OrderQuantities.builder().order(order5).product(product3).quantity(1).build(),
+                OrderQuantities.builder().order(order5).product(product1).quantity(1).build()
+        ));
     }
 }
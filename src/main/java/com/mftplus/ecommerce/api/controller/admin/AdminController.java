@@ -1,12 +1,54 @@
 package com.mftplus.ecommerce.api.controller.admin;
 
+import com.mftplus.ecommerce.api.dto.HotStockStatus;
+import com.mftplus.ecommerce.exception.NoContentException;
+import com.mftplus.ecommerce.service.stock.HotStock;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
 
 @PreAuthorize("hasRole('admin')")
 @RestController
 @RequestMapping("/admin")
 public class AdminController {
 
+    private final HotStock hotStock;
+
+    public AdminController(HotStock hotStock) {
+        this.hotStock = hotStock;
+    }
+
+    //flash sales : the stock of the inventory is served from memory until it is switched back
+    @GetMapping("/stock/hot")
+    public List<HotStockStatus> findHotStock() {
+        return hotStock.findAll();
+    }
+
+    @PostMapping("/stock/hot")
+    public ResponseEntity<HotStockStatus> enableHotStock(@RequestParam("productId") Long productId,
+                                                         @RequestParam("colorId") Long colorId) {
+        try {
+            return ResponseEntity.ok(hotStock.enable(productId, colorId));
+        } catch (NoContentException e) {
+            return ResponseEntity.notFound().build();
+        } catch (PessimisticLockingFailureException e) {
+            //the row is busy with reservations, can be tried again
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    @DeleteMapping("/stock/hot")
+    public ResponseEntity<Void> disableHotStock(@RequestParam("productId") Long productId,
+                                                @RequestParam("colorId") Long colorId) {
+        try {
+            hotStock.disable(productId, colorId);
+            return ResponseEntity.ok().build();
+        } catch (NoContentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package com.mftplus.ecommerce.api.controller.auth;
 
 import com.mftplus.ecommerce.api.dto.*;
+import com.mftplus.ecommerce.api.idempotency.IdempotencyStore;
 import com.mftplus.ecommerce.exception.*;
 import com.mftplus.ecommerce.model.entity.User;
 import com.mftplus.ecommerce.service.impl.UserServiceImpl;
@@ -10,59 +11,84 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
 @RestController
 @RequestMapping("/auth")
 public class AuthenticationController {
     private final UserServiceImpl userService;
 
-    public AuthenticationController(UserServiceImpl userService) {
+    private final IdempotencyStore idempotencyStore;
+
+    public AuthenticationController(UserServiceImpl userService, IdempotencyStore idempotencyStore) {
         this.userService = userService;
+        this.idempotencyStore = idempotencyStore;
     }
 
+    //a retry with the same Idempotency-Key gets the first response back, no second verification email.
+    //bcrypt runs on the password hashing pool, the request thread is free until the answer
     @PostMapping("/register")
-    public ResponseEntity registerUser(@Valid @RequestBody RegistrationBody registrationBody){
-        try {
-            userService.save(registrationBody);
-            return ResponseEntity.ok().build();
-        } catch (UserAlreadyExistsException e) {
-            return ResponseEntity.status(HttpStatus.CONFLICT).build();
-        }catch (EmailFailureException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
+    public CompletableFuture<ResponseEntity<Void>> registerUser(@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+                                                                @Valid @RequestBody RegistrationBody registrationBody){
+        return idempotencyStore.executeAsync("register", idempotencyKey, registrationBody, () ->
+                userService.saveAsync(registrationBody).handle((user, throwable) -> {
+                    Throwable exception = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+
+                    if (exception instanceof UserAlreadyExistsException) {
+                        return ResponseEntity.status(HttpStatus.CONFLICT).build();
+
+                    } else if (exception instanceof RejectedExecutionException) {
+                        //the password hashing pool is full
+                        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+
+                    } else if (exception instanceof RuntimeException runtimeException) {
+                        throw runtimeException;
+                    } else if (exception != null) {
+                        throw new CompletionException(exception);
+                    }
+
+                    return ResponseEntity.ok().build();
+                }));
     }
 
+    //bcrypt runs on the password hashing pool, the request thread is free until the answer
     @PostMapping("/login")
-    public ResponseEntity<LoginResponse> loginUser(@Valid @RequestBody LoginBody loginBody){
-        String jwt = null;
-
-        try {
-            jwt = userService.loginUser(loginBody);
-
-
-        } catch (UserNotVerifiedException exception) {
-            LoginResponse loginResponse = new LoginResponse();
-            loginResponse.setSuccsess(false);
-            String reason = "USER_NOT_VERIFIED";
-            if (exception.isNewEmailSent()){
-                reason += "_EMAIL_RESENT";
+    public CompletableFuture<ResponseEntity<LoginResponse>> loginUser(@Valid @RequestBody LoginBody loginBody){
+        return userService.loginUserAsync(loginBody).handle((jwt, throwable) -> {
+            Throwable exception = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+
+            if (exception instanceof UserNotVerifiedException notVerifiedException) {
+                LoginResponse loginResponse = new LoginResponse();
+                loginResponse.setSuccsess(false);
+                String reason = "USER_NOT_VERIFIED";
+                if (notVerifiedException.isNewEmailSent()){
+                    reason += "_EMAIL_RESENT";
+                }
+                loginResponse.setFailureReason(reason);
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(loginResponse);
+
+            } else if (exception instanceof RejectedExecutionException) {
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+
+            } else if (exception instanceof RuntimeException runtimeException) {
+                //left to the mvc error handling, which reports it
+                throw runtimeException;
+            } else if (exception != null) {
+                throw new CompletionException(exception);
             }
-            loginResponse.setFailureReason(reason);
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(loginResponse);
 
 
-        } catch (EmailFailureException exception) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
-
-
-        if (jwt == null){
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
-        }else {
-            LoginResponse loginResponse = new LoginResponse();
-            loginResponse.setJwt(jwt);
-            loginResponse.setSuccsess(true);
-            return ResponseEntity.ok(loginResponse);
-        }
+            if (jwt == null){
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+            }else {
+                LoginResponse loginResponse = new LoginResponse();
+                loginResponse.setJwt(jwt);
+                loginResponse.setSuccsess(true);
+                return ResponseEntity.ok(loginResponse);
+            }
+        });
     }
 
     @PostMapping("/verify")
@@ -87,15 +113,16 @@ public class AuthenticationController {
 
         } catch (EmailNotFoundException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
-
-        } catch (EmailFailureException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
     @PostMapping("/reset")
     public ResponseEntity resetPassword(@Valid @RequestBody PasswordResetBody body){
-        userService.resetPassword(body);
+        try {
+            userService.resetPassword(body);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
         return ResponseEntity.ok().build();
     }
 
@@ -1,11 +1,18 @@
 package com.mftplus.ecommerce.api.controller.category;
 
 import com.fasterxml.jackson.annotation.JsonView;
+import com.mftplus.ecommerce.api.dto.CategoryMenu;
+import com.mftplus.ecommerce.api.dto.CategoryNode;
 import com.mftplus.ecommerce.exception.NoContentException;
 import com.mftplus.ecommerce.model.entity.Category;
 import com.mftplus.ecommerce.model.entity.Views;
 import com.mftplus.ecommerce.service.impl.CategoryServiceImpl;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.List;
 
 @RestController
 @RequestMapping("/category")
@@ -21,7 +28,25 @@ public class CategoryController {
     @JsonView(Views.Category.class)
     @GetMapping
     public Category findCategories(@RequestParam(value = "categoryName", required = false) String categoryName) throws NoContentException {
-        return categoryService.findByNameAndDeletedFalse(categoryName);
+        return categoryService.findTreeByNameAndDeletedFalse(categoryName);
+    }
+
+    //browse tree for the menus : bounded depth and product counts, revalidated with the snapshot version as ETag
+    @GetMapping("/tree")
+    public ResponseEntity<List<CategoryNode>> findCategoryTree(
+            @RequestParam(value = "categoryName", required = false) String categoryName,
+            @RequestParam(value = "depth", required = false) Integer depth,
+            WebRequest request) {
+        try {
+            CategoryMenu menu = categoryService.findMenu(categoryName, depth);
+            String eTag = "\"" + menu.getVersion() + "\"";
+            if (request.checkNotModified(eTag)) {
+                return null;
+            }
+            return ResponseEntity.ok().eTag(eTag).cacheControl(CacheControl.noCache()).body(menu.getCategories());
+        } catch (NoContentException e) {
+            return ResponseEntity.notFound().build();
+        }
     }
 
 }
@@ -1,29 +1,80 @@
 package com.mftplus.ecommerce.api.controller.order;
 
-import com.mftplus.ecommerce.model.entity.Order;
+import com.mftplus.ecommerce.api.dto.OrderBody;
+import com.mftplus.ecommerce.api.dto.OrderDetail;
+import com.mftplus.ecommerce.api.dto.OrderPage;
+import com.mftplus.ecommerce.api.idempotency.IdempotencyStore;
+import com.mftplus.ecommerce.exception.NoContentException;
+import com.mftplus.ecommerce.exception.OutOfStockException;
 import com.mftplus.ecommerce.model.entity.User;
 import com.mftplus.ecommerce.service.OrderService;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/order")
 public class OrderController {
 
     private final OrderService orderService;
 
-    public OrderController(OrderService orderService) {
+    private final IdempotencyStore idempotencyStore;
+
+    public OrderController(OrderService orderService, IdempotencyStore idempotencyStore) {
         this.orderService = orderService;
+        this.idempotencyStore = idempotencyStore;
     }
 
+    //order history, newest first : summaries only, one query per page
     @PreAuthorize("hasRole('user')")
     @GetMapping
-    public List<Order> findOrdersByUser(@AuthenticationPrincipal User user){
-        return orderService.findOrdersByUser(user);
+    public ResponseEntity<OrderPage> findOrdersByUser(@AuthenticationPrincipal User user,
+                                                      @RequestParam(value = "limit", required = false) Integer limit,
+                                                      @RequestParam(value = "cursor", required = false) String cursor){
+        try {
+            return ResponseEntity.ok(orderService.findPageByUser(user, limit, cursor));
+        } catch (IllegalArgumentException e) {
+            //cursor was tampered with
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PreAuthorize("hasRole('user')")
+    @GetMapping("/{id:\\d+}")
+    public ResponseEntity<OrderDetail> findOrder(@AuthenticationPrincipal User user, @PathVariable("id") Long id) {
+        try {
+            return ResponseEntity.ok(orderService.findDetailByUser(user, id));
+        } catch (NoContentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    //returns the id of the new order. a retry with the same Idempotency-Key gets the same response back
+    @PreAuthorize("hasRole('user')")
+    @PostMapping
+    public ResponseEntity<Long> placeOrder(@AuthenticationPrincipal User user,
+                                           @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+                                           @Valid @RequestBody OrderBody body) {
+        return idempotencyStore.execute("order:" + user.getId(), idempotencyKey, body, () -> {
+            try {
+                return ResponseEntity.status(HttpStatus.CREATED).body(orderService.placeOrder(user, body).getId());
+            } catch (NoContentException e) {
+                return ResponseEntity.notFound().build();
+            } catch (OutOfStockException e) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        });
     }
 }
@@ -3,7 +3,11 @@ package com.mftplus.ecommerce.api.controller.product;
 import com.fasterxml.jackson.annotation.JsonView;
 import com.mftplus.ecommerce.api.dto.InventoryBody;
 import com.mftplus.ecommerce.api.dto.ProductBody;
+import com.mftplus.ecommerce.api.dto.ProductPage;
+import com.mftplus.ecommerce.api.dto.ProductSort;
+import com.mftplus.ecommerce.api.dto.ProductSummary;
 import com.mftplus.ecommerce.api.dto.SearchRequest;
+import com.mftplus.ecommerce.api.dto.Suggestion;
 import com.mftplus.ecommerce.exception.NoContentException;
 import com.mftplus.ecommerce.model.entity.*;
 import com.mftplus.ecommerce.service.impl.*;
@@ -40,26 +44,79 @@ public class ProductController {
         this.imageService = imageService;
     }
 
-    @JsonView(Views.Product.class)
     @GetMapping
-    public List<Product> findProducts
+    public List<ProductSummary> findProducts
             (@RequestParam(value = "category", required = false) List<String> categoryNames,
              @RequestParam(value = "brand", required = false) String brandName,
+             @RequestParam(value = "color", required = false) Long colorId,
              @RequestParam(value = "name", required = false) String name,
              @RequestParam(value = "minPrice", required = false) Integer minPrice,
              @RequestParam(value = "maxPrice", required = false) Integer maxPrice,
              @RequestParam(value = "enableOff", required = false) boolean enableOff){
 
+        SearchRequest request = createSearchRequest(categoryNames, brandName, colorId, name, minPrice, maxPrice, enableOff);
+
+        return productService.findAllByCriteria(request);
+
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<ProductPage> searchProducts
+            (@RequestParam(value = "category", required = false) List<String> categoryNames,
+             @RequestParam(value = "brand", required = false) String brandName,
+             @RequestParam(value = "color", required = false) Long colorId,
+             @RequestParam(value = "name", required = false) String name,
+             @RequestParam(value = "minPrice", required = false) Integer minPrice,
+             @RequestParam(value = "maxPrice", required = false) Integer maxPrice,
+             @RequestParam(value = "enableOff", required = false) boolean enableOff,
+             @RequestParam(value = "limit", required = false) Integer limit,
+             @RequestParam(value = "sort", required = false, defaultValue = "ID_ASC") ProductSort sort,
+             @RequestParam(value = "cursor", required = false) String cursor,
+             @RequestParam(value = "facets", required = false) boolean facets){
+
+        SearchRequest request = createSearchRequest(categoryNames, brandName, colorId, name, minPrice, maxPrice, enableOff);
+        request.setLimit(limit);
+        request.setSort(sort);
+        request.setCursor(cursor);
+        request.setFacets(facets);
+
+        try {
+            return ResponseEntity.ok(productService.findPageByCriteria(request));
+        } catch (IllegalArgumentException e) {
+            //cursor was tampered with
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    //search as you type, served from memory
+    @GetMapping("/suggest")
+    public List<Suggestion> suggest(@RequestParam("q") String prefix,
+                                    @RequestParam(value = "limit", required = false) Integer limit) {
+        return productService.suggest(prefix, limit);
+    }
+
+    //full product, listings only return summaries
+    @JsonView(Views.Product.class)
+    @GetMapping("/{id:\\d+}")
+    public ResponseEntity<Product> findProduct(@PathVariable("id") Long id) {
+        try {
+            return ResponseEntity.ok(productService.findByIdAndDeletedFalse(id));
+        } catch (NoContentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    private SearchRequest createSearchRequest(List<String> categoryNames, String brandName, Long colorId, String name,
+                                              Integer minPrice, Integer maxPrice, boolean enableOff) {
         SearchRequest request = new SearchRequest();
         request.setName(name);
         request.setCategoryNames(categoryNames);
         request.setBrandName(brandName);
+        request.setColorId(colorId);
         request.setMinPrice(minPrice);
         request.setMaxPrice(maxPrice);
         request.setEnableOff(enableOff);
-
-        return productService.findAllByCriteria(request);
-
+        return request;
     }
 
 
@@ -91,15 +148,9 @@ public class ProductController {
         product.setMainImage(mainImage);
 
         //category
-        String categoryName = body.getCategoryName();
-        Category mainCategory = categoryService.findByNameAndDeletedFalse(categoryName);
-        List<Category> categories = new ArrayList<>();
-        for (String categoryNameOriginal : mainCategory.getCategoryPath()) {
-            Category category = categoryService.findByNameAndDeletedFalse(categoryNameOriginal);
-            categories.add(category);
-
-            product.setCategories(categories);
-        }
+        //the category and all of its ancestors
+        List<Category> categories = categoryService.findPathByNameAndDeletedFalse(body.getCategoryName());
+        product.setCategories(categories);
 
         //brand
         Brand brand = brandService.findByIdAndDeletedFalse(body.getBrandId());
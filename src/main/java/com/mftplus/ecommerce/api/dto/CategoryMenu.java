@@ -0,0 +1,16 @@
+package com.mftplus.ecommerce.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+//browse tree cut from one category tree snapshot, the version of the snapshot is the ETag of the response
+@Getter
+@AllArgsConstructor
+public class CategoryMenu {
+
+    private String version;
+
+    private List<CategoryNode> categories;
+}
@@ -0,0 +1,23 @@
+package com.mftplus.ecommerce.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+//a category of the browse tree, with the number of products in it or under it instead of the products
+@Getter
+@AllArgsConstructor
+public class CategoryNode {
+
+    private Long id;
+
+    private String name;
+
+    private Long productCount;
+
+    //false with no children when the requested depth cut the tree here
+    private boolean leaf;
+
+    private List<CategoryNode> children;
+}
@@ -0,0 +1,13 @@
+package com.mftplus.ecommerce.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class FacetCount {
+
+    private String value;
+
+    private Long count;
+}
@@ -0,0 +1,20 @@
+package com.mftplus.ecommerce.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//an inventory served from the hot stock counters, quantities as held in memory
+@Getter
+@AllArgsConstructor
+public class HotStockStatus {
+
+    private Long inventoryId;
+
+    private Long productId;
+
+    private Long colorId;
+
+    private Long quantity;
+
+    private Long reserved;
+}
@@ -0,0 +1,25 @@
+package com.mftplus.ecommerce.api.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderBody {
+
+    @NotNull
+    private Long addressId;
+
+    @Valid
+    @NotEmpty
+    private List<OrderLineBody> lines;
+}
@@ -0,0 +1,40 @@
+package com.mftplus.ecommerce.api.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+public class OrderDetail {
+
+    private Long id;
+
+    private Timestamp createdTimeStamp;
+
+    private String addressLine1;
+
+    private String addressLine2;
+
+    private String city;
+
+    private String country;
+
+    private List<OrderLine> lines = new ArrayList<>();
+
+    private long total;
+
+    //header row of the query, the lines are read next
+    public OrderDetail(Long id, Timestamp createdTimeStamp, String addressLine1, String addressLine2,
+                       String city, String country) {
+        this.id = id;
+        this.createdTimeStamp = createdTimeStamp;
+        this.addressLine1 = addressLine1;
+        this.addressLine2 = addressLine2;
+        this.city = city;
+        this.country = country;
+    }
+}
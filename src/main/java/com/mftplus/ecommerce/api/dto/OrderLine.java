@@ -0,0 +1,22 @@
+package com.mftplus.ecommerce.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class OrderLine {
+
+    private Long productId;
+
+    private String productName;
+
+    //null for the lines written before the color was kept
+    private Long colorId;
+
+    private String colorName;
+
+    private Integer quantity;
+
+    private Integer price;
+}
@@ -0,0 +1,25 @@
+package com.mftplus.ecommerce.api.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderLineBody {
+
+    @NotNull
+    private Long productId;
+
+    @NotNull
+    private Long colorId;
+
+    @NotNull
+    @Min(value = 1, message = "Quantity must be equal or greater than 1.")
+    private Integer quantity;
+}
@@ -0,0 +1,22 @@
+package com.mftplus.ecommerce.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderPage {
+
+    //newest first
+    private List<OrderSummary> orders = new ArrayList<>();
+
+    //null when this is the last page
+    private String nextCursor;
+}
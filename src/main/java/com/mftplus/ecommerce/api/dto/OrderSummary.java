@@ -0,0 +1,22 @@
+package com.mftplus.ecommerce.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.sql.Timestamp;
+
+//order history row, the lines are only served by the detail endpoint
+@Getter
+@AllArgsConstructor
+public class OrderSummary {
+
+    private Long id;
+
+    //null for the orders placed before it was kept
+    private Timestamp createdTimeStamp;
+
+    private Long lineCount;
+
+    //sum of quantity * unit price, lines without a price count as 0
+    private Long total;
+}
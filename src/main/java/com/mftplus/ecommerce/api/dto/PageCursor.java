@@ -0,0 +1,59 @@
+package com.mftplus.ecommerce.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+//opaque keyset cursor : last sort value + last id of the previous page
+@Getter
+@AllArgsConstructor
+public class PageCursor {
+
+    private static final char SEPARATOR = '\u0000';
+
+    private String value;
+
+    private Long id;
+
+    public String encode() {
+        String raw = (value == null ? "" : value) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    //throws IllegalArgumentException for cursors we did not create
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int separator = raw.lastIndexOf(SEPARATOR);
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid cursor : " + cursor);
+        }
+        try {
+            return new PageCursor(raw.substring(0, separator), Long.valueOf(raw.substring(separator + 1)));
+        } catch (NumberFormatException exception) {
+            throw new IllegalArgumentException("Invalid cursor : " + cursor);
+        }
+    }
+
+    //a product page cursor, the value of a price sorted page must be a price
+    public static PageCursor decode(String cursor, ProductSort sort) {
+        PageCursor decoded = decode(cursor);
+        if (decoded != null && sort.isByPrice()) {
+            try {
+                Integer.parseInt(decoded.getValue());
+            } catch (NumberFormatException exception) {
+                throw new IllegalArgumentException("Invalid cursor : " + cursor);
+            }
+        }
+        return decoded;
+    }
+
+    public int getPrice() {
+        return Integer.parseInt(value);
+    }
+}
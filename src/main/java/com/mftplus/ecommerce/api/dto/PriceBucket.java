@@ -0,0 +1,17 @@
+package com.mftplus.ecommerce.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//products with at least one inventory priced in [from, to)
+@Getter
+@AllArgsConstructor
+public class PriceBucket {
+
+    private Integer from;
+
+    //null for the last, open ended bucket
+    private Integer to;
+
+    private Long count;
+}
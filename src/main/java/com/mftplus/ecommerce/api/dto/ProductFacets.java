@@ -0,0 +1,27 @@
+package com.mftplus.ecommerce.api.dto;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//counts next to the search filters, every facet ignores its own filter
+//so the other values of that facet stay selectable
+@Getter
+@Setter
+@NoArgsConstructor
+public class ProductFacets {
+
+    //size of the whole result, not only of the page
+    private long total;
+
+    private List<FacetCount> brands = new ArrayList<>();
+
+    private List<FacetCount> categories = new ArrayList<>();
+
+    private List<PriceBucket> prices = new ArrayList<>();
+
+    private long onSale;
+}
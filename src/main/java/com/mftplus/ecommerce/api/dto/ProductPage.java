@@ -0,0 +1,31 @@
+package com.mftplus.ecommerce.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductPage {
+
+    private List<ProductSummary> products = new ArrayList<>();
+
+    //null when this is the last page
+    private String nextCursor;
+
+    //only when asked for
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private ProductFacets facets;
+
+    public ProductPage(List<ProductSummary> products, String nextCursor) {
+        this.products = products;
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,32 @@
+package com.mftplus.ecommerce.api.dto;
+
+public enum ProductSort {
+    ID_ASC,
+    ID_DESC,
+    NAME_ASC,
+    NAME_DESC,
+    //by the cheapest inventory, products without a price come last either way
+    PRICE_ASC,
+    PRICE_DESC;
+
+    public boolean isById() {
+        return this == ID_ASC || this == ID_DESC;
+    }
+
+    public boolean isByName() {
+        return this == NAME_ASC || this == NAME_DESC;
+    }
+
+    public boolean isByPrice() {
+        return this == PRICE_ASC || this == PRICE_DESC;
+    }
+
+    public boolean isDescending() {
+        return this == ID_DESC || this == NAME_DESC || this == PRICE_DESC;
+    }
+
+    //sort value of a product without a price (prices are at least 1)
+    public int noPrice() {
+        return isDescending() ? 0 : Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,23 @@
+package com.mftplus.ecommerce.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//flat listing row, the full product is only served by the detail endpoint
+@Getter
+@AllArgsConstructor
+public class ProductSummary {
+
+    private Long id;
+
+    private String name;
+
+    private String brandName;
+
+    //null when the product has no inventory
+    private Integer minPrice;
+
+    private Integer maxOffPercent;
+
+    private String mainImagePath;
+}
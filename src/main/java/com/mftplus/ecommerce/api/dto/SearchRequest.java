@@ -10,13 +10,14 @@ import java.util.List;
 @Setter
 public class SearchRequest {
 
+    //part of the product name (not the descriptions), see ProductTextIndex
     private String name;
 
     private List<String> categoryNames = new ArrayList<>();
 
     private String brandName;
 
-//    private Long colorId;
+    private Long colorId;
 
     private Integer minPrice;
 
@@ -27,4 +28,27 @@ public class SearchRequest {
 //    private Integer minOffPercent;
 //
 //    private Integer maxOffPercent;
+
+    //paging, only used by the paginated search
+    private Integer limit;
+
+    private ProductSort sort = ProductSort.ID_ASC;
+
+    private String cursor;
+
+    //facet counts with the page
+    private boolean facets;
+
+    //the filters only, paging and facet flags are left to their defaults
+    public SearchRequest copyFilters() {
+        SearchRequest copy = new SearchRequest();
+        copy.setName(name);
+        copy.setCategoryNames(categoryNames);
+        copy.setBrandName(brandName);
+        copy.setColorId(colorId);
+        copy.setMinPrice(minPrice);
+        copy.setMaxPrice(maxPrice);
+        copy.setEnableOff(enableOff);
+        return copy;
+    }
 }
@@ -0,0 +1,21 @@
+package com.mftplus.ecommerce.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//immutable, shared by every node of the suggestion trie that ranks it
+@Getter
+@AllArgsConstructor
+public class Suggestion {
+
+    private SuggestionType type;
+
+    private Long id;
+
+    private String text;
+
+    //ordered quantity of the product, or of all the products of the brand / category
+    @JsonIgnore
+    private long popularity;
+}
@@ -0,0 +1,7 @@
+package com.mftplus.ecommerce.api.dto;
+
+public enum SuggestionType {
+    PRODUCT,
+    BRAND,
+    CATEGORY
+}
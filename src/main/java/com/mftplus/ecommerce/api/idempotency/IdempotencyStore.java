@@ -0,0 +1,137 @@
+package com.mftplus.ecommerce.api.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+//Idempotency-Key header of the requests that create something (order placement, registration) : the response of
+//the first request is kept and a retry with the same key gets it back without running the action again.
+//in memory, bounded and evicted after the ttl, so a retry after a restart or on an other instance runs again.
+//a retry while the first request is still running gets 409, the same key with another body 422.
+//5xx, 429 and 409 responses and exceptions are not kept, the retry runs the action : a 409 (out of stock) is
+//a state of the moment and a retry with the same key can succeed once the stock is back.
+@Component
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final ObjectMapper objectMapper;
+
+    private final Cache<String, Entry> entries;
+
+    @Autowired
+    public IdempotencyStore(ObjectMapper objectMapper,
+                            @Value("${idempotency.max-size}") long maxSize,
+                            @Value("${idempotency.ttl-seconds}") long ttlSeconds) {
+        this(objectMapper, maxSize, ttlSeconds, Ticker.systemTicker());
+    }
+
+    IdempotencyStore(ObjectMapper objectMapper, long maxSize, long ttlSeconds, Ticker ticker) {
+        this.objectMapper = objectMapper;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .ticker(ticker)
+                .build();
+    }
+
+    //scope keeps the keys of different endpoints and users apart, without a key the action just runs
+    public <T> ResponseEntity<T> execute(String scope, String key, Object request, Supplier<ResponseEntity<T>> action) {
+        return executeAsync(scope, key, request, () -> CompletableFuture.completedFuture(action.get())).join();
+    }
+
+    //for the actions that answer later : the key is running until the future of the action completes
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<ResponseEntity<T>> executeAsync(String scope, String key, Object request,
+                                                                 Supplier<CompletableFuture<ResponseEntity<T>>> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+
+        String cacheKey = scope + '\u0000' + key;
+        byte[] fingerprint = fingerprint(request);
+        Entry running = new Entry(fingerprint);
+        Entry existing = entries.asMap().putIfAbsent(cacheKey, running);
+        if (existing != null) {
+            if (!Arrays.equals(existing.fingerprint, fingerprint)) {
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).build());
+            }
+            ResponseEntity<?> response = existing.response;
+            if (response == null) {
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.CONFLICT).build());
+            }
+            return CompletableFuture.completedFuture((ResponseEntity<T>) ResponseEntity.status(response.getStatusCode())
+                    .headers(response.getHeaders())
+                    .header(REPLAYED_HEADER, "true")
+                    .body(response.getBody()));
+        }
+
+        CompletableFuture<ResponseEntity<T>> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            entries.asMap().remove(cacheKey, running);
+            throw e;
+        }
+        return response.whenComplete((result, throwable) -> {
+            if (throwable != null || result.getStatusCode().is5xxServerError()
+                    || result.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS || result.getStatusCode() == HttpStatus.CONFLICT) {
+                entries.asMap().remove(cacheKey, running);
+            } else {
+                entries.asMap().replace(cacheKey, running, new Entry(fingerprint, result));
+            }
+        });
+    }
+
+    long size() {
+        entries.cleanUp();
+        return entries.estimatedSize();
+    }
+
+    //sha-256 of the json of the request body
+    private byte[] fingerprint(Object request) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //response is null while the first request is running
+    private static class Entry {
+
+        private final byte[] fingerprint;
+
+        private final ResponseEntity<?> response;
+
+        private Entry(byte[] fingerprint) {
+            this(fingerprint, null);
+        }
+
+        private Entry(byte[] fingerprint, ResponseEntity<?> response) {
+            this.fingerprint = fingerprint;
+            this.response = response;
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package com.mftplus.ecommerce.api.security;
 
-import com.auth0.jwt.exceptions.JWTDecodeException;
+import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.mftplus.ecommerce.model.entity.User;
 import com.mftplus.ecommerce.repository.UserRepository;
 import com.mftplus.ecommerce.service.JWTService;
@@ -25,10 +25,12 @@ import java.util.*;
 public class JWTRequestFilter extends OncePerRequestFilter implements ChannelInterceptor {
     private final JWTService jwtService;
     private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
 
-    public JWTRequestFilter(JWTService jwtService, UserRepository userRepository) {
+    public JWTRequestFilter(JWTService jwtService, UserRepository userRepository, PrincipalCache principalCache) {
         this.jwtService = jwtService;
         this.userRepository = userRepository;
+        this.principalCache = principalCache;
     }
 
     @Override
@@ -45,13 +47,25 @@ public class JWTRequestFilter extends OncePerRequestFilter implements ChannelInt
         filterChain.doFilter(request,response);
     }
 
-    private UsernamePasswordAuthenticationToken checkToken(String token){
-        if (token != null && token.startsWith("Bearer ")) {
+    UsernamePasswordAuthenticationToken checkToken(String token){
+        //no header, an authentication set before this filter (e.g. a test user) is left alone
+        if (token == null) {
+            return null;
+        }
+
+        if (token.startsWith("Bearer ")) {
             //we do not need "Bearer "
             token = token.substring(7);
 
-            // .decode throws jwtDecodeException
+            //a token seen before skips the signature check and the user query
+            User cachedUser = principalCache.get(token);
+            if (cachedUser != null) {
+                return authenticate(cachedUser);
+            }
+
+            //malformed, expired, badly signed or foreign tokens throw a JWTVerificationException
             try {
+                long version = principalCache.version();
                 String username = jwtService.getUsername(token);
                 Optional<User> optionalUser = userRepository.findByUsernameIgnoreCaseAndDeletedFalse(username);
 
@@ -59,16 +73,11 @@ public class JWTRequestFilter extends OncePerRequestFilter implements ChannelInt
                     User user = optionalUser.get();
 
                     if (user.getEmailVerified()) {
-                        //inputs : authentication principal = user object , password , granted authorities
-                        UsernamePasswordAuthenticationToken authenticationToken =
-                                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
-
-                        SecurityContextHolder.getContext().setAuthentication(authenticationToken);
-
-                        return authenticationToken;
+                        principalCache.put(token, user, version);
+                        return authenticate(user);
                     }
                 }
-            } catch (JWTDecodeException exception) {
+            } catch (JWTVerificationException exception) {
 
             }
         }
@@ -77,6 +86,16 @@ public class JWTRequestFilter extends OncePerRequestFilter implements ChannelInt
         return null;
     }
 
+    private UsernamePasswordAuthenticationToken authenticate(User user) {
+        //inputs : authentication principal = user object , password , granted authorities
+        UsernamePasswordAuthenticationToken authenticationToken =
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+
+        SecurityContextHolder.getContext().setAuthentication(authenticationToken);
+
+        return authenticationToken;
+    }
+
     @Override
     public Message<?> preSend(Message<?> message, MessageChannel channel) {
         SimpMessageType messageType =
@@ -0,0 +1,107 @@
+package com.mftplus.ecommerce.api.security;
+
+import com.auth0.jwt.JWT;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.mftplus.ecommerce.model.entity.User;
+import com.mftplus.ecommerce.service.event.UserChangedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+//verified login token -> its user, so a request with a known token needs neither the signature check nor user_tbl.
+//keyed by the sha-256 of the token : only the very token that was verified hits. an entry lives until the token
+//expires or the ttl is over, whichever comes first, and is dropped when its user changes.
+//the cached user is shared by every request of the token, it is read only.
+@Component
+public class PrincipalCache {
+
+    private final Cache<String, Principal> principals;
+
+    //moved on by every invalidation, a user read from the db before it is not put, guarded by this
+    private long version;
+
+    public PrincipalCache(@Value("${jwt.principal-cache.max-size}") long maxSize,
+                          @Value("${jwt.principal-cache.ttl-seconds}") long ttlSeconds,
+                          MeterRegistry meterRegistry) {
+        long ttl = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.principals = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Principal>() {
+                    //the ttl, or until the token expires when it is sooner
+                    @Override
+                    public long expireAfterCreate(String key, Principal principal, long currentTime) {
+                        long left = TimeUnit.MILLISECONDS.toNanos(principal.expiresAt - System.currentTimeMillis());
+                        return Math.max(0, Math.min(ttl, left));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Principal principal, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, principal, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Principal principal, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        //cache.gets{result=hit|miss}, cache.size ... tagged cache=jwt.principals
+        CaffeineCacheMetrics.monitor(meterRegistry, principals, "jwt.principals");
+        Gauge.builder("jwt.principals.hit.ratio", principals, cache -> cache.stats().hitRate()).register(meterRegistry);
+    }
+
+    public User get(String token) {
+        Principal principal = principals.getIfPresent(key(token));
+        return principal == null ? null : principal.user;
+    }
+
+    public synchronized long version() {
+        return version;
+    }
+
+    //token already verified
+    public synchronized void put(String token, User user, long readVersion) {
+        if (readVersion != version) {
+            return;
+        }
+        Instant expiresAt = JWT.decode(token).getExpiresAtAsInstant();
+        principals.put(key(token), new Principal(user, expiresAt == null ? Long.MAX_VALUE : expiresAt.toEpochMilli()));
+    }
+
+    //a scan, users change far less often than they are read
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onUserChanged(UserChangedEvent event) {
+        version++;
+        principals.asMap().values().removeIf(principal -> principal.user.getId().equals(event.getUserId()));
+    }
+
+    long size() {
+        principals.cleanUp();
+        return principals.estimatedSize();
+    }
+
+    private record Principal(User user, long expiresAt) {
+    }
+
+    private static String key(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
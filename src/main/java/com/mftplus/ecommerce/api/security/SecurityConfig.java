@@ -2,6 +2,7 @@ package com.mftplus.ecommerce.api.security;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityCustomizer;
 import org.springframework.security.web.SecurityFilterChain;
@@ -26,15 +27,18 @@ public class SecurityConfig {
                 .addFilterBefore(jwtRequestFilter, AuthorizationFilter.class);
         http
                 .authorizeHttpRequests((requests) -> requests
-                        .requestMatchers("/product", "/auth/register", "/auth/login"
+                        .requestMatchers(HttpMethod.GET, "/product/{id:\\d+}")
+                        .permitAll()
+
+                        .requestMatchers("/product", "/product/search", "/product/suggest", "/auth/register", "/auth/login"
                                 ,"/error","/", "/auth/verify","/category/**")
                         .permitAll()
 
-                        .requestMatchers("/admin","/product/save")
+                        .requestMatchers("/admin","/admin/**","/product/save")
                             .hasAuthority("admin")
 
                         .requestMatchers("/auth/forgot","/auth/reset",
-                                "/websocket","/websocket/**","/order")
+                                "/websocket","/websocket/**","/order","/order/**")
                                         .hasAuthority("user")
 
                         .anyRequest().authenticated()
@@ -93,7 +93,8 @@ public class WebSocketConfiguration implements WebSocketMessageBrokerConfigurer
     private class RejectClientMessagesOnChannelInterceptor implements ChannelInterceptor {
 
         private final String[] paths = new String[] {
-                "/topic/user/*/address"
+                "/topic/user/*/address",
+                "/topic/user/*/order"
         };
 
         @Override
@@ -0,0 +1,73 @@
+package com.mftplus.ecommerce.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.enhanced.DatabaseStructure;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+//the entities moved from identity columns to pooled sequences (a one row table on mysql, the hilo way) keep
+//their rows, so a new sequence would hand out ids already taken. on start every sequence is moved past the
+//biggest id of the tables it serves, never backwards : an other instance may hold a block above it.
+//rows inserted with explicit ids (imports, data.sql) are covered the same way on the next start.
+//it runs once every singleton (and the data.sql of the schema initializer) is ready, before the web server and the
+//schedulers start : nothing can take an id from a sequence that was not moved yet.
+@Component
+public class IdSequenceMigration implements SmartInitializingSingleton {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdSequenceMigration(EntityManagerFactory entityManagerFactory, JdbcTemplate jdbcTemplate) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        moveSequencesPastExistingIds();
+    }
+
+    public void moveSequencesPastExistingIds() {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        Map<String, DatabaseStructure> structures = new HashMap<>();
+        Map<String, Long> maxIds = new HashMap<>();
+
+        sessionFactory.getMappingMetamodel().forEachEntityDescriptor(persister -> {
+            if (persister.getGenerator() instanceof SequenceStyleGenerator generator
+                    && persister instanceof AbstractEntityPersister entityPersister) {
+                DatabaseStructure structure = generator.getDatabaseStructure();
+                String name = sessionFactory.getSqlStringGenerationContext().format(structure.getPhysicalName());
+                Long maxId = jdbcTemplate.queryForObject("select coalesce(max(" + entityPersister.getIdentifierColumnNames()[0]
+                        + "), 0) from " + entityPersister.getTableName(), Long.class);
+                structures.put(name, structure);
+                maxIds.merge(name, maxId, Math::max);
+            }
+        });
+
+        Dialect dialect = sessionFactory.getJdbcServices().getDialect();
+        structures.forEach((name, structure) -> {
+            //the pooled optimizer takes a value v as the block (v - increment, v]
+            long next = maxIds.get(name) + structure.getIncrementSize();
+            if (structure.isPhysicalSequence()) {
+                Long value = jdbcTemplate.queryForObject(
+                        dialect.getSequenceSupport().getSequenceNextValString(name), Long.class);
+                if (value < next) {
+                    jdbcTemplate.execute("alter sequence " + name + " restart with " + next);
+                }
+            } else if (jdbcTemplate.update("update " + name + " set next_val = ? where next_val < ?", next, next) == 0
+                    && jdbcTemplate.queryForObject("select count(*) from " + name, Long.class) == 0) {
+                //a table created by ddl-auto=update may have no row yet
+                jdbcTemplate.update("insert into " + name + " (next_val) values (?)", next);
+            }
+        });
+    }
+}
@@ -1,4 +0,0 @@
-package com.mftplus.ecommerce.exception;
-
-public class EmailFailureException extends Exception{
-}
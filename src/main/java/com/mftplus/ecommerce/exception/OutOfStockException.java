@@ -0,0 +1,10 @@
+package com.mftplus.ecommerce.exception;
+
+public class OutOfStockException extends TemplateException{
+
+    public OutOfStockException(String message) {
+        super(message);
+        setStatusCode(409);
+    }
+
+}
@@ -17,7 +17,8 @@ import lombok.experimental.SuperBuilder;
 @Table(name = "address_tbl")
 public class Address extends Base{
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "address_seq")
+    @SequenceGenerator(name = "address_seq", sequenceName = "address_tbl_seq", allocationSize = 50)
     @Column(name = "id", nullable = false)
     private Long id;
 
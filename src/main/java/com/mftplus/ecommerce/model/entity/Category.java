@@ -9,6 +9,8 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.experimental.SuperBuilder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -20,10 +22,13 @@ import java.util.List;
 @Setter
 @Entity(name = "categoryEntity")
 @Table(name = "category_tbl")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Category extends Base{
     @JsonView({Views.Product.class, Views.Category.class})
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "category_seq")
+    @SequenceGenerator(name = "category_seq", sequenceName = "category_tbl_seq", allocationSize = 50)
     @Column(name = "id", nullable = false)
     private Long id;
 
@@ -39,6 +44,7 @@ public class Category extends Base{
     private Category parentCategory;
 
     @JsonView(Views.Category.class)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @OneToMany(mappedBy = "parentCategory", orphanRemoval = true)
     private List<Category> childCategories = new ArrayList<>();
 
@@ -46,18 +52,4 @@ public class Category extends Base{
     @ManyToMany(mappedBy = "categories")
     private List<Product> products = new ArrayList<>();
 
-    public List<String> getCategoryPath() {
-        List<String> categoryPath = new ArrayList<>();
-        categoryPath.add(this.getName());
-        Category currentCategory = this;
-
-        while (currentCategory.getParentCategory() != null) {
-            categoryPath.add(currentCategory.getParentCategory().getName());
-//            categoryPath = currentCategory.getParentCategory().getName() + " > " + categoryPath;
-            currentCategory = currentCategory.getParentCategory();
-        }
-
-        return categoryPath;
-    }
-
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.mftplus.ecommerce.model.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+//closure table of the category tree : one row for every (ancestor, descendant) pair, a category is its own
+//ancestor at depth 0. maintained by CategoryServiceImpl on every category write.
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Entity(name = "categoryClosureEntity")
+@Table(name = "category_closure_tbl",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"ancestor_id", "descendant_id"}),
+        indexes = @Index(name = "category_closure_descendant_idx", columnList = "descendant_id, depth"))
+public class CategoryClosure {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "category_closure_seq")
+    @SequenceGenerator(name = "category_closure_seq", sequenceName = "category_closure_tbl_seq", allocationSize = 50)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "ancestor_id", nullable = false)
+    private Category ancestor;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "descendant_id", nullable = false)
+    private Category descendant;
+
+    @Column(name = "depth", nullable = false)
+    private int depth;
+
+    public CategoryClosure(Category ancestor, Category descendant, int depth) {
+        this.ancestor = ancestor;
+        this.descendant = descendant;
+        this.depth = depth;
+    }
+}
@@ -8,6 +8,8 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.experimental.SuperBuilder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @SuperBuilder
 @AllArgsConstructor
@@ -16,10 +18,13 @@ import lombok.experimental.SuperBuilder;
 @Setter
 @Entity(name = "colorEntity")
 @Table(name = "color_tbl")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @JsonView({Views.Product.class,Views.Category.class})
 public class Color extends Base{
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "color_seq")
+    @SequenceGenerator(name = "color_seq", sequenceName = "color_tbl_seq", allocationSize = 50)
     @Column(name = "id", nullable = false)
     private Long id;
 
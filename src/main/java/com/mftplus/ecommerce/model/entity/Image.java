@@ -18,7 +18,8 @@ import lombok.experimental.SuperBuilder;
 @JsonView({Views.Product.class,Views.Category.class})
 public class Image {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "image_seq")
+    @SequenceGenerator(name = "image_seq", sequenceName = "image_tbl_seq", allocationSize = 50)
     @Column(name = "id", nullable = false)
     private Long id;
 
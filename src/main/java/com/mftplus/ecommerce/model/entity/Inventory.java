@@ -4,11 +4,13 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonView;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Min;
+import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
 import lombok.experimental.SuperBuilder;
+import org.hibernate.annotations.ColumnDefault;
 
 @SuperBuilder
 @NoArgsConstructor
@@ -21,14 +23,24 @@ import lombok.experimental.SuperBuilder;
 public class Inventory extends Base{
     //todo : is this a proper way for the relations? (color and product)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "inventory_seq")
+    @SequenceGenerator(name = "inventory_seq", sequenceName = "inventory_tbl_seq", allocationSize = 50)
     @Column(name = "id", nullable = false)
     private Long id;
 
-    @Column(name = "i_quantity", nullable = false)
+    //quantity and reserved are written on insert only, afterwards they are changed by the delta updates of
+    //InventoryRepository : a save of a stale copy (price edit, product save) can not put old stock back
+    @Column(name = "i_quantity", nullable = false, updatable = false)
     @Min(value = 0, message = "Quantity must be equal or greater than 0.")
     private Integer quantity;
 
+    //taken out of quantity by reservations not committed or released yet
+    @JsonIgnore
+    @Builder.Default
+    @ColumnDefault("0")
+    @Column(name = "i_reserved", nullable = false, updatable = false)
+    private Integer reserved = 0;
+
     @JsonIgnore
     @ToString.Exclude
     @ManyToOne
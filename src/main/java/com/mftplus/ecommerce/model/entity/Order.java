@@ -1,12 +1,14 @@
 package com.mftplus.ecommerce.model.entity;
 
 import jakarta.persistence.*;
+import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
 import lombok.experimental.SuperBuilder;
 
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -16,12 +18,13 @@ import java.util.List;
 @Setter
 @ToString
 @Entity(name = "orderEntity")
-@Table(name = "order_tbl")
+@Table(name = "order_tbl", indexes = @Index(name = "order_user_id_idx", columnList = "user_id, id"))
 public class Order extends Base{
     //invoice
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_seq")
+    @SequenceGenerator(name = "order_seq", sequenceName = "order_tbl_seq", allocationSize = 50)
     @Column(name = "id", nullable = false)
     private Long id;
 
@@ -33,7 +36,12 @@ public class Order extends Base{
     @JoinColumn(name = "address_id", nullable = false)
     private Address address;
 
-    @OneToMany(mappedBy = "order", cascade = CascadeType.REMOVE, orphanRemoval = true)
+    //when was the order placed, null for the orders written before it was kept
+    @Column(name = "created_time_stamp")
+    private Timestamp createdTimeStamp;
+
+    @Builder.Default
+    @OneToMany(mappedBy = "order", cascade = {CascadeType.PERSIST, CascadeType.REMOVE}, orphanRemoval = true)
     private List<OrderQuantities> quantities = new ArrayList<>();
 
 }
\ No newline at end of file
@@ -19,7 +19,8 @@ public class OrderQuantities extends Base{
     //invoice item
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_quantities_seq")
+    @SequenceGenerator(name = "order_quantities_seq", sequenceName = "order_quantities_tbl_seq", allocationSize = 50)
     @Column(name = "id", nullable = false)
     private Long id;
 
@@ -27,9 +28,18 @@ public class OrderQuantities extends Base{
     @JoinColumn(name = "product_id", nullable = false)
     private Product product;
 
+    //null on the lines written before the color was kept
+    @ManyToOne
+    @JoinColumn(name = "color_id")
+    private Color color;
+
     @Column(name = "quantity", nullable = false)
     private Integer quantity;
 
+    //unit price with the off percent taken out, at the time of the order
+    @Column(name = "price")
+    private Integer price;
+
     @JsonIgnore
     @ManyToOne(optional = false)
     @JoinColumn(name = "order_id", nullable = false)
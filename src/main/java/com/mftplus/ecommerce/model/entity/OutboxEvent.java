@@ -0,0 +1,53 @@
+package com.mftplus.ecommerce.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.SuperBuilder;
+
+import java.sql.Timestamp;
+
+//transactional outbox : one row per event and handler, written in the transaction that made the change.
+//drained by OutboxDispatcher, the row is deleted once its handler took it.
+@SuperBuilder
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+@Entity(name = "outboxEventEntity")
+@Table(name = "outbox_event_tbl", indexes = @Index(name = "outbox_event_due_idx", columnList = "failed, next_attempt_time_stamp, id"))
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_event_seq")
+    @SequenceGenerator(name = "outbox_event_seq", sequenceName = "outbox_event_tbl_seq", allocationSize = 50)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    //OutboxHandler.name()
+    @Column(name = "handler", nullable = false, length = 100)
+    private String handler;
+
+    //the event as json
+    @Column(name = "payload", nullable = false, length = 10000)
+    private String payload;
+
+    @Column(name = "created_time_stamp", nullable = false)
+    private Timestamp createdTimeStamp;
+
+    //not taken before, moved on while a dispatcher holds the row and after every failed attempt
+    @Column(name = "next_attempt_time_stamp", nullable = false)
+    private Timestamp nextAttemptTimeStamp;
+
+    @Builder.Default
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+
+    //gave up after outbox.max-attempts, kept for a look by hand
+    @Builder.Default
+    @Column(name = "failed", nullable = false)
+    private boolean failed = false;
+}
@@ -20,7 +20,8 @@ import java.util.List;
 public class Product extends Base{
     @JsonView({Views.Product.class,Views.Category.class})
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "product_tbl_seq", allocationSize = 50)
     @Column(name = "id", nullable = false)
     private Long id;
 
@@ -0,0 +1,29 @@
+package com.mftplus.ecommerce.model.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+//single row : every hot stock journal segment up to this epoch is in inventory_tbl.
+//written in the same transaction as the flushed stock changes.
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Entity(name = "stockJournalCheckpointEntity")
+@Table(name = "stock_journal_checkpoint_tbl")
+public class StockJournalCheckpoint {
+    public static final Long ID = 1L;
+
+    @Id
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @Column(name = "last_epoch", nullable = false)
+    private Long lastEpoch;
+}
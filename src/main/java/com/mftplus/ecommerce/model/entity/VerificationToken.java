@@ -15,14 +15,9 @@ import java.sql.Timestamp;
 @Table(name = "verification_token_tbl")
 @Entity(name = "verificationTokenEntity")
 public class VerificationToken {
-//    @Id
-//    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "verification_token_seq")
-//    @SequenceGenerator(name = "verification_token_seq",sequenceName = "verification_token_seq",allocationSize = 1)
-//    @Column(name = "id", nullable = false)
-//    private Long id;
-
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "verification_token_seq")
+    @SequenceGenerator(name = "verification_token_seq", sequenceName = "verification_token_tbl_seq", allocationSize = 50)
     @Column(name = "id", nullable = false)
     private Long id;
 
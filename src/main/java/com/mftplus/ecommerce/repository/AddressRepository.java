@@ -10,4 +10,6 @@ import java.util.List;
 public interface AddressRepository extends JpaRepository<Address, Long> {
 
     List<Address> findByUser_Id(Long id);
+
+    boolean existsByIdAndUser_IdAndDeletedFalse(Long id, Long userId);
 }
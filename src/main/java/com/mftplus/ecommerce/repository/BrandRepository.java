@@ -1,9 +1,13 @@
 package com.mftplus.ecommerce.repository;
 
+import com.mftplus.ecommerce.api.dto.Suggestion;
 import com.mftplus.ecommerce.model.entity.Brand;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -12,12 +16,23 @@ import java.util.Optional;
 @Repository
 public interface BrandRepository extends JpaRepository<Brand, Long> {
 
+    //reference data : the lookups go through the query cache, invalidated by hibernate on every write to the table
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Brand> findByNameAndDeletedFalse(String name);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Brand> findAllByDeletedFalse();
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Brand> findByIdAndDeletedFalse(Long id);
 
+    //suggestion index rebuild, popularity is the ordered quantity of all the products of the brand
+    @Query("select new com.mftplus.ecommerce.api.dto.Suggestion(com.mftplus.ecommerce.api.dto.SuggestionType.BRAND," +
+            " b.id, b.name, coalesce(sum(oq.quantity), 0L)) from brandEntity b left join b.products p" +
+            " left join orderQuantitiesEntity oq on oq.product = p and oq.deleted = false" +
+            " where b.deleted = false group by b.id, b.name")
+    List<Suggestion> findSuggestions();
+
     @Modifying
     @Query("update brandEntity oo set oo.deleted=true where oo.id=:id")
     void logicalRemove(Long id);
@@ -0,0 +1,40 @@
+package com.mftplus.ecommerce.repository;
+
+import com.mftplus.ecommerce.model.entity.CategoryClosure;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CategoryClosureRepository extends JpaRepository<CategoryClosure, Long> {
+
+    //the category and all of its ancestors
+    @Query("select cc from categoryClosureEntity cc where cc.descendant.id = :categoryId")
+    List<CategoryClosure> findAncestorRows(Long categoryId);
+
+    //the category and all of its descendants
+    @Query("select cc from categoryClosureEntity cc where cc.ancestor.id = :categoryId")
+    List<CategoryClosure> findDescendantRows(Long categoryId);
+
+    long countByDepth(int depth);
+
+    //depth 1 : the parent of every category that has one
+    List<CategoryClosure> findByDepth(int depth);
+
+    //detaches a subtree from its old ancestors, the rows inside the subtree are kept
+    @Modifying
+    @Query("delete from categoryClosureEntity cc where cc.descendant.id in :subtreeIds and cc.ancestor.id not in :subtreeIds")
+    void unlinkSubtree(Collection<Long> subtreeIds);
+
+    @Modifying
+    @Query("delete from categoryClosureEntity cc where cc.ancestor.id = :categoryId or cc.descendant.id = :categoryId")
+    void deleteByCategoryId(Long categoryId);
+
+    @Modifying
+    @Query("delete from categoryClosureEntity cc")
+    void deleteAllRows();
+}
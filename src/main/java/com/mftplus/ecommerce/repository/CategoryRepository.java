@@ -1,23 +1,54 @@
 package com.mftplus.ecommerce.repository;
 
+import com.mftplus.ecommerce.api.dto.Suggestion;
 import com.mftplus.ecommerce.model.entity.Category;
+import com.mftplus.ecommerce.service.search.CategoryRow;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CategoryRepository extends JpaRepository<Category, Long> {
 
+    //reference data : the lookups go through the query cache, invalidated by hibernate on every write to the table
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Category> findByNameAndDeletedFalse(String name);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Category> findAllByDeletedFalse();
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Category> findByIdAndDeletedFalse(Long id);
 
+    //suggestion index rebuild, popularity is the ordered quantity of all the products of the category
+    @Query("select new com.mftplus.ecommerce.api.dto.Suggestion(com.mftplus.ecommerce.api.dto.SuggestionType.CATEGORY," +
+            " c.id, c.name, coalesce(sum(oq.quantity), 0L)) from categoryEntity c left join c.products p" +
+            " left join orderQuantitiesEntity oq on oq.product = p and oq.deleted = false" +
+            " where c.deleted = false group by c.id, c.name")
+    List<Suggestion> findSuggestions();
+
+    //category tree snapshot, every category with its parent id and the products of its subtree (closure table)
+    @Query("select new com.mftplus.ecommerce.service.search.CategoryRow(c.id, c.name, p.id, c.deleted," +
+            " (select count(distinct pr.id) from categoryClosureEntity cc join cc.descendant d join d.products pr" +
+            " where cc.ancestor = c and pr.deleted = false))" +
+            " from categoryEntity c left join c.parentCategory p")
+    List<CategoryRow> findRows();
+
+    //category tree : the children and products collections of a whole subtree, one query each
+    @Query("select distinct c from categoryEntity c left join fetch c.childCategories where c.id in :ids")
+    List<Category> fetchChildCategoriesByIdIn(Collection<Long> ids);
+
+    @Query("select distinct c from categoryEntity c left join fetch c.products where c.id in :ids")
+    List<Category> fetchProductsByIdIn(Collection<Long> ids);
+
     @Modifying
     @Query("update categoryEntity oo set oo.deleted=true where oo.id=:id")
     void logicalRemove(Long id);
@@ -1,11 +1,19 @@
 package com.mftplus.ecommerce.repository;
 
 import com.mftplus.ecommerce.model.entity.Inventory;
+import com.mftplus.ecommerce.service.search.InventoryRow;
+import com.mftplus.ecommerce.service.stock.InventoryPrice;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,8 +24,58 @@ public interface InventoryRepository extends JpaRepository<Inventory, Long> {
 
     List<Inventory> findAllByDeletedFalse();
 
+    //cart lookup : every product id with every color id, the pairs are picked by the caller
+    @Query("select new com.mftplus.ecommerce.service.stock.InventoryPrice(i.id, i.product.id, i.color.id, i.price, i.offPercent)" +
+            " from inventoryEntity i where i.deleted = false and i.product.id in :productIds and i.color.id in :colorIds")
+    List<InventoryPrice> findPricesByProductIdInAndColorIdInAndDeletedFalse(Collection<Long> productIds, Collection<Long> colorIds);
+
     Optional<Inventory> findByIdAndDeletedFalse(Long id);
 
+    //filter index rebuild and refresh
+    @Query("select new com.mftplus.ecommerce.service.search.InventoryRow(i.product.id, i.color.id, i.price, i.offPercent)" +
+            " from inventoryEntity i where i.deleted = false and i.product.id in :productIds")
+    List<InventoryRow> findFilterRowsByProductIdIn(Collection<Long> productIds);
+
+    //hot stock : the row is read under a lock when an inventory is switched to the in-memory counters,
+    //the counters write their net changes back with one update per inventory.
+    //no wait (0) : a locked row fails at once, a timeout in milliseconds is ignored by the mysql dialect
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "0"))
+    @Query("select i from inventoryEntity i where i.product.id = :productId and i.color.id = :colorId and i.deleted = false")
+    Optional<Inventory> lockByProductIdAndColorId(Long productId, Long colorId);
+
+    @Modifying
+    @Query("update inventoryEntity i set i.quantity = i.quantity + :quantityDelta, i.reserved = i.reserved + :reservedDelta" +
+            " where i.id = :id")
+    void applyStockDelta(Long id, long quantityDelta, long reservedDelta);
+
+    //stock reservation : single conditional updates, the row lock is held for one statement and
+    //an update that would take the stock (or the reservation) below zero changes no row
+    @Transactional
+    @Modifying
+    @Query("update inventoryEntity i set i.quantity = i.quantity - :quantity, i.reserved = i.reserved + :quantity" +
+            " where i.product.id = :productId and i.color.id = :colorId and i.deleted = false and i.quantity >= :quantity")
+    int reserve(Long productId, Long colorId, int quantity);
+
+    @Transactional
+    @Modifying
+    @Query("update inventoryEntity i set i.reserved = i.reserved - :quantity" +
+            " where i.product.id = :productId and i.color.id = :colorId and i.reserved >= :quantity")
+    int commitReservation(Long productId, Long colorId, int quantity);
+
+    @Transactional
+    @Modifying
+    @Query("update inventoryEntity i set i.quantity = i.quantity + :quantity, i.reserved = i.reserved - :quantity" +
+            " where i.product.id = :productId and i.color.id = :colorId and i.reserved >= :quantity")
+    int releaseReservation(Long productId, Long colorId, int quantity);
+
+    //restock (or a negative correction) : the stock can not go below zero
+    @Transactional
+    @Modifying
+    @Query("update inventoryEntity i set i.quantity = i.quantity + :quantity" +
+            " where i.product.id = :productId and i.color.id = :colorId and i.deleted = false and i.quantity + :quantity >= 0")
+    int restock(Long productId, Long colorId, int quantity);
+
     @Modifying
     @Query("update inventoryEntity oo set oo.deleted=true where oo.id=:id")
     void logicalRemove(Long id);
@@ -1,9 +1,18 @@
 package com.mftplus.ecommerce.repository;
 
+import com.mftplus.ecommerce.api.dto.OrderLine;
 import com.mftplus.ecommerce.model.entity.OrderQuantities;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface OrderQuantitiesRepository extends JpaRepository<OrderQuantities, Long> {
+
+    @Query("select new com.mftplus.ecommerce.api.dto.OrderLine(p.id, p.name, c.id, c.name, q.quantity, q.price)" +
+            " from orderQuantitiesEntity q join q.product p left join q.color c" +
+            " where q.order.id = :orderId and q.deleted = false order by q.id")
+    List<OrderLine> findLinesByOrderId(Long orderId);
 }
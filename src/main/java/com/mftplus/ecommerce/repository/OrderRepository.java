@@ -1,14 +1,30 @@
 package com.mftplus.ecommerce.repository;
 
+import com.mftplus.ecommerce.api.dto.OrderDetail;
+import com.mftplus.ecommerce.api.dto.OrderSummary;
 import com.mftplus.ecommerce.model.entity.Order;
-import com.mftplus.ecommerce.model.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
 
-    List<Order> findByUser(User user);
+    //order history, newest first, keyset paging on id over the (user_id, id) index
+    @Query("select new com.mftplus.ecommerce.api.dto.OrderSummary(o.id, o.createdTimeStamp, count(q)," +
+            " coalesce(sum(q.quantity * coalesce(q.price, 0)), 0L)) from orderEntity o" +
+            " left join o.quantities q on q.deleted = false" +
+            " where o.user.id = :userId and o.deleted = false and o.id < :id" +
+            " group by o.id, o.createdTimeStamp order by o.id desc")
+    List<OrderSummary> findSummariesByUserIdAndIdLessThan(Long userId, Long id, Pageable pageable);
+
+    //empty for the orders of other users
+    @Query("select new com.mftplus.ecommerce.api.dto.OrderDetail(o.id, o.createdTimeStamp, a.addressLine1, a.addressLine2," +
+            " a.city, a.country) from orderEntity o join o.address a" +
+            " where o.id = :id and o.user.id = :userId and o.deleted = false")
+    Optional<OrderDetail> findDetailByIdAndUserId(Long id, Long userId);
 }
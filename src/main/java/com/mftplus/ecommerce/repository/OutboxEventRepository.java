@@ -0,0 +1,26 @@
+package com.mftplus.ecommerce.repository;
+
+import com.mftplus.ecommerce.model.entity.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    //-2 is LockOptions.SKIP_LOCKED : rows held by the dispatcher of an other instance are left to it
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("select e from outboxEventEntity e where e.failed = false and e.nextAttemptTimeStamp <= :now order by e.id")
+    List<OutboxEvent> findDue(Timestamp now, Pageable pageable);
+
+    long countByFailedFalse();
+}
@@ -1,10 +1,17 @@
 package com.mftplus.ecommerce.repository;
 
+import com.mftplus.ecommerce.api.dto.Suggestion;
 import com.mftplus.ecommerce.model.entity.Product;
+import com.mftplus.ecommerce.service.search.ProductMembership;
+import com.mftplus.ecommerce.service.search.ProductText;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
@@ -13,4 +20,60 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     List<Product> findByBrandNameAndCategoriesName(String brandName, String categoryName);
 
     List<Product> findByCategoriesName(String name);
+
+    //text index rebuild, keyset paging on id
+    @Query("select new com.mftplus.ecommerce.service.search.ProductText(p.id, p.name)" +
+            " from productEntity p where p.deleted = false and p.id > :id order by p.id")
+    List<ProductText> findTextsByIdGreaterThan(Long id, Pageable pageable);
+
+    //suggestion index rebuild, popularity is the ordered quantity
+    @Query("select new com.mftplus.ecommerce.api.dto.Suggestion(com.mftplus.ecommerce.api.dto.SuggestionType.PRODUCT," +
+            " p.id, p.name, coalesce(sum(oq.quantity), 0L)) from productEntity p" +
+            " left join orderQuantitiesEntity oq on oq.product = p and oq.deleted = false" +
+            " where p.deleted = false and p.id > :id group by p.id, p.name order by p.id")
+    List<Suggestion> findSuggestionsByIdGreaterThan(Long id, Pageable pageable);
+
+    //filter index rebuild and refresh
+    @Query("select new com.mftplus.ecommerce.service.search.ProductMembership(p.id, p.brand.id)" +
+            " from productEntity p where p.deleted = false and p.id > :id order by p.id")
+    List<ProductMembership> findBrandMembershipsByIdGreaterThan(Long id, Pageable pageable);
+
+    @Query("select new com.mftplus.ecommerce.service.search.ProductMembership(p.id, p.brand.id)" +
+            " from productEntity p where p.deleted = false and p.id in :ids")
+    List<ProductMembership> findBrandMembershipsByIdIn(Collection<Long> ids);
+
+    @Query("select new com.mftplus.ecommerce.service.search.ProductMembership(p.id, c.id)" +
+            " from productEntity p join p.categories c where p.deleted = false and p.id in :ids")
+    List<ProductMembership> findCategoryMembershipsByIdIn(Collection<Long> ids);
+
+    //products of a category or of any of its descendants, one lookup on the category closure table
+    @Query("select distinct p.id from productEntity p join p.categories c" +
+            " join categoryClosureEntity cc on cc.descendant = c where cc.ancestor.id = :categoryId")
+    List<Long> findIdsInCategoryTree(Long categoryId);
+
+    //fetch plan for full products : to-one associations with the products, then one query per collection.
+    //must run in one transaction so every query fills the same persistence context.
+    @Query("select p from productEntity p left join fetch p.brand left join fetch p.mainImage where p.id in :ids")
+    List<Product> findAllWithBrandAndMainImageByIdIn(Collection<Long> ids);
+
+    @Query("select p from productEntity p left join fetch p.brand left join fetch p.mainImage where p.id = :id and p.deleted = false")
+    Optional<Product> findWithBrandAndMainImageByIdAndDeletedFalse(Long id);
+
+    @Query("select p from productEntity p left join fetch p.inventories i left join fetch i.color where p.id in :ids")
+    List<Product> fetchInventoriesByIdIn(Collection<Long> ids);
+
+    @Query("select p from productEntity p left join fetch p.categories c left join fetch c.parentCategory where p.id in :ids")
+    List<Product> fetchCategoriesByIdIn(Collection<Long> ids);
+
+    @Query("select p from productEntity p left join fetch p.images where p.id in :ids")
+    List<Product> fetchImagesByIdIn(Collection<Long> ids);
+
+    default void fetchAssociations(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        fetchInventoriesByIdIn(ids);
+        fetchCategoriesByIdIn(ids);
+        fetchImagesByIdIn(ids);
+    }
 }
@@ -1,114 +1,390 @@
 package com.mftplus.ecommerce.repository;
 
+import com.mftplus.ecommerce.api.dto.FacetCount;
+import com.mftplus.ecommerce.api.dto.PageCursor;
+import com.mftplus.ecommerce.api.dto.PriceBucket;
+import com.mftplus.ecommerce.api.dto.ProductFacets;
+import com.mftplus.ecommerce.api.dto.ProductSort;
+import com.mftplus.ecommerce.api.dto.ProductSummary;
 import com.mftplus.ecommerce.api.dto.SearchRequest;
 import com.mftplus.ecommerce.model.entity.Brand;
 import com.mftplus.ecommerce.model.entity.Category;
+import com.mftplus.ecommerce.model.entity.Image;
 import com.mftplus.ecommerce.model.entity.Inventory;
 import com.mftplus.ecommerce.model.entity.Product;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
 import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.*;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.function.Function;
 
 @Repository
 public class ProductSearchRepository {
 
+    private static final String FACET_TOTAL = "total";
+
+    private static final String FACET_ON_SALE = "onSale";
+
+    private static final String FACET_BRAND = "brand";
+
+    private static final String FACET_CATEGORY = "category";
+
+    private static final String FACET_PRICE = "price";
+
+    private static final Comparator<FacetCount> BY_COUNT =
+            Comparator.comparing(FacetCount::getCount).reversed().thenComparing(FacetCount::getValue);
+
     private final EntityManager entityManager;
 
     public ProductSearchRepository(EntityManager entityManager) {
         this.entityManager = entityManager;
     }
 
-    public List<Product> findAllByCriteria(SearchRequest request){
+    //read model for listings : flat rows built by a constructor query, no managed entities.
+    //candidateIds are the ids found by the in-memory indexes, null when no index was used
+    public List<ProductSummary> findSummariesByCriteria(SearchRequest request, Collection<Long> candidateIds){
+        return createSummaryQuery(request, candidateIds, null).getResultList();
+    }
 
-        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
-        CriteriaQuery<Product> criteriaQuery = criteriaBuilder.createQuery(Product.class);
+    //keyset pagination : only one page (+1 row to know if there is a next page) is read from the db
+    public List<ProductSummary> findPageSummariesByCriteria(SearchRequest request, Collection<Long> candidateIds,
+                                                            PageCursor cursor, int limit){
+        return createSummaryQuery(request, candidateIds, cursor)
+                .setMaxResults(limit + 1)
+                .getResultList();
+    }
 
-        List<Predicate> predicates = new ArrayList<>();
+    //a page already cut from the filter index, only the rows are read
+    public List<ProductSummary> findSummariesByIds(List<Long> ids, ProductSort sort){
+        SearchRequest request = new SearchRequest();
+        request.setSort(sort);
+        return createSummaryQuery(request, ids, null).getResultList();
+    }
+
+    private TypedQuery<ProductSummary> createSummaryQuery(SearchRequest request, Collection<Long> candidateIds,
+                                                          PageCursor cursor) {
+
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductSummary> criteriaQuery = criteriaBuilder.createQuery(ProductSummary.class);
 
-        //select from product
         Root<Product> root = criteriaQuery.from(Product.class);
 
-        //name
-        if (request.getName() != null) {
-            Predicate namePredicate = criteriaBuilder
-                    .like(root.get("name"), "%" + request.getName() + "%");
-            predicates.add(namePredicate);
-        }
+        List<Predicate> predicates = createPredicates(criteriaBuilder, criteriaQuery, root, request, candidateIds);
+
+        ProductSort sort = request.getSort() == null ? ProductSort.ID_ASC : request.getSort();
 
-        //categories
-        if (request.getCategoryNames() != null){
-            List<String> categoryNames = request.getCategoryNames();
+        //price and off percent as correlated scalar subqueries, so no group by (image path is a lob)
+        Subquery<Integer> minPrice = criteriaQuery.subquery(Integer.class);
+        Root<Inventory> priceInventory = minPrice.from(Inventory.class);
+        minPrice.select(criteriaBuilder.min(priceInventory.get("price")))
+                .where(criteriaBuilder.equal(priceInventory.get("product"), root),
+                        criteriaBuilder.isFalse(priceInventory.get("deleted")));
 
-            for(String categoryName : categoryNames) {
+        //the price sort key is computed per row, no index serves it : the keyset only saves the offset scan
+        Expression<Integer> sortPrice = criteriaBuilder.coalesce(minPrice, sort.noPrice());
 
-                Subquery<Long> subquery = criteriaQuery.subquery(Long.class);
-                Root<Product> subQueryProduct = subquery.from(Product.class);
-                Join<Category, Product> subQueryCategory = subQueryProduct.join("categories");
+        if (cursor != null) {
+            predicates.add(createKeysetPredicate(criteriaBuilder, root, sort, cursor, sortPrice));
+        }
 
-                subquery.select(subQueryProduct.get("id")).where(
-                        criteriaBuilder.equal(subQueryCategory.get("name"), categoryName));
+        Subquery<Integer> maxOffPercent = criteriaQuery.subquery(Integer.class);
+        Root<Inventory> offInventory = maxOffPercent.from(Inventory.class);
+        maxOffPercent.select(criteriaBuilder.max(offInventory.get("offPercent")))
+                .where(criteriaBuilder.equal(offInventory.get("product"), root),
+                        criteriaBuilder.isFalse(offInventory.get("deleted")));
+
+        //a subquery rather than an outer join, which would pin the join order to the product table
+        Subquery<String> mainImagePath = criteriaQuery.subquery(String.class);
+        Root<Image> mainImage = mainImagePath.from(Image.class);
+        mainImagePath.select(mainImage.get("filePath"))
+                .where(criteriaBuilder.equal(mainImage.get("id"), root.get("mainImage").get("id")));
+
+        criteriaQuery.select(criteriaBuilder.construct(ProductSummary.class,
+                        root.get("id"),
+                        root.get("name"),
+                        brandJoin(root, JoinType.LEFT).get("name"),
+                        minPrice,
+                        maxOffPercent,
+                        mainImagePath))
+                .where(criteriaBuilder.and(predicates.toArray(new Predicate[0])));
+        criteriaQuery.orderBy(createOrders(criteriaBuilder, root, sort, sortPrice));
+
+        return entityManager.createQuery(criteriaQuery);
+    }
 
-                predicates.add(criteriaBuilder.in(root.get("id")).value(subquery));
+    //all the facets in one round trip : a union all of one grouped select per facet, each row is (facet, value, count).
+    //rows are counted in the db and never loaded. every select keeps the filters of the request but its own.
+    public ProductFacets findFacets(SearchRequest request, Collection<Long> candidateIds, int[] priceBounds) {
+        HibernateCriteriaBuilder criteriaBuilder = (HibernateCriteriaBuilder) entityManager.getCriteriaBuilder();
+
+        SearchRequest withoutOff = request.copyFilters();
+        withoutOff.setEnableOff(false);
+        SearchRequest onSale = request.copyFilters();
+        onSale.setEnableOff(true);
+        SearchRequest withoutBrand = request.copyFilters();
+        withoutBrand.setBrandName(null);
+        SearchRequest withoutPrice = request.copyFilters();
+        withoutPrice.setMinPrice(null);
+        withoutPrice.setMaxPrice(null);
+
+        List<Tuple> rows = entityManager.createQuery(criteriaBuilder.unionAll(
+                countAll(criteriaBuilder, FACET_TOTAL, withoutOff, candidateIds),
+                countAll(criteriaBuilder, FACET_ON_SALE, onSale, candidateIds),
+                countByBrand(criteriaBuilder, withoutBrand, candidateIds),
+                //categories narrow down the result (and), so they keep their filter
+                countByCategory(criteriaBuilder, request, candidateIds),
+                countByPrice(criteriaBuilder, withoutPrice, candidateIds, priceBounds))).getResultList();
+
+        ProductFacets facets = new ProductFacets();
+        long[] buckets = new long[priceBounds.length + 1];
+        long total = 0;
+        for (Tuple row : rows) {
+            String value = row.get(1, String.class);
+            long count = row.get(2, Long.class);
+            switch (row.get(0, String.class)) {
+                case FACET_TOTAL -> total = count;
+                case FACET_ON_SALE -> facets.setOnSale(count);
+                case FACET_BRAND -> facets.getBrands().add(new FacetCount(value, count));
+                case FACET_CATEGORY -> facets.getCategories().add(new FacetCount(value, count));
+                default -> buckets[Integer.parseInt(value)] = count;
             }
         }
+        facets.setTotal(request.isEnableOff() ? facets.getOnSale() : total);
+        facets.getBrands().sort(BY_COUNT);
+        facets.getCategories().sort(BY_COUNT);
+        for (int i = 0; i <= priceBounds.length; i++) {
+            facets.getPrices().add(new PriceBucket(i == 0 ? 0 : priceBounds[i - 1],
+                    i < priceBounds.length ? priceBounds[i] : null, buckets[i]));
+        }
+        return facets;
+    }
 
-        //brands
-        if (request.getBrandName() != null){
-            String brandName = request.getBrandName();
+    private CriteriaQuery<Tuple> countAll(CriteriaBuilder criteriaBuilder, String facet, SearchRequest request,
+                                          Collection<Long> candidateIds) {
+        CriteriaQuery<Tuple> criteriaQuery = criteriaBuilder.createTupleQuery();
+        Root<Product> root = criteriaQuery.from(Product.class);
 
-            Subquery<Long> subquery = criteriaQuery.subquery(Long.class);
-            Root<Product> subQueryProduct = subquery.from(Product.class);
-            Join<Brand, Product> subQueryBrand = subQueryProduct.join("brand");
+        List<Predicate> predicates = createPredicates(criteriaBuilder, criteriaQuery, root, request, candidateIds);
+
+        return criteriaQuery.multiselect(criteriaBuilder.literal(facet), criteriaBuilder.nullLiteral(String.class),
+                        criteriaBuilder.count(root))
+                .where(criteriaBuilder.and(predicates.toArray(new Predicate[0])));
+    }
+
+    private CriteriaQuery<Tuple> countByBrand(CriteriaBuilder criteriaBuilder, SearchRequest request,
+                                              Collection<Long> candidateIds) {
+        CriteriaQuery<Tuple> criteriaQuery = criteriaBuilder.createTupleQuery();
+        Root<Product> root = criteriaQuery.from(Product.class);
+
+        List<Predicate> predicates = createPredicates(criteriaBuilder, criteriaQuery, root, request, candidateIds);
+
+        Join<Product, Brand> brand = brandJoin(root, JoinType.INNER);
+        predicates.add(criteriaBuilder.isFalse(brand.get("deleted")));
+        Path<String> name = brand.get("name");
+        return criteriaQuery.multiselect(criteriaBuilder.literal(FACET_BRAND), name, criteriaBuilder.count(root))
+                .where(criteriaBuilder.and(predicates.toArray(new Predicate[0])))
+                .groupBy(name);
+    }
+
+    private CriteriaQuery<Tuple> countByCategory(CriteriaBuilder criteriaBuilder, SearchRequest request,
+                                                 Collection<Long> candidateIds) {
+        CriteriaQuery<Tuple> criteriaQuery = criteriaBuilder.createTupleQuery();
+        Root<Product> root = criteriaQuery.from(Product.class);
+
+        List<Predicate> predicates = createPredicates(criteriaBuilder, criteriaQuery, root, request, candidateIds);
+
+        Join<Product, Category> category = root.join("categories");
+        predicates.add(criteriaBuilder.isFalse(category.get("deleted")));
+        Path<String> name = category.get("name");
+        return criteriaQuery.multiselect(criteriaBuilder.literal(FACET_CATEGORY), name, criteriaBuilder.count(root))
+                .where(criteriaBuilder.and(predicates.toArray(new Predicate[0])))
+                .groupBy(name);
+    }
+
+    //a row per bucket with products in it, the value is the index of the bucket. a product counts once per bucket
+    //however many of its inventories are priced in it.
+    private CriteriaQuery<Tuple> countByPrice(CriteriaBuilder criteriaBuilder, SearchRequest request,
+                                              Collection<Long> candidateIds, int[] priceBounds) {
+        CriteriaQuery<Tuple> criteriaQuery = criteriaBuilder.createTupleQuery();
+        Root<Product> root = criteriaQuery.from(Product.class);
 
-            subquery.select(subQueryProduct.get("id")).where(
-                    criteriaBuilder.equal(subQueryBrand.get("name"), brandName));
+        List<Predicate> predicates = createPredicates(criteriaBuilder, criteriaQuery, root, request, candidateIds);
 
-            predicates.add(criteriaBuilder.in(root.get("id")).value(subquery));
+        Join<Product, Inventory> inventory = root.join("inventories");
+        predicates.add(criteriaBuilder.isFalse(inventory.get("deleted")));
+        Path<Integer> price = inventory.get("price");
+        CriteriaBuilder.Case<String> bucket = criteriaBuilder.selectCase();
+        for (int i = 0; i < priceBounds.length; i++) {
+            bucket = bucket.when(criteriaBuilder.lessThan(price, criteriaBuilder.literal(priceBounds[i])),
+                    criteriaBuilder.literal(Integer.toString(i)));
         }
+        Expression<String> bucketIndex = bucket.otherwise(criteriaBuilder.literal(Integer.toString(priceBounds.length)));
+        predicates.add(criteriaBuilder.isNotNull(price));
 
-        //price between
-        if (request.getMinPrice() != null && request.getMaxPrice() != null){
-            Integer minPrice = request.getMinPrice();
-            Integer maxPrice = request.getMaxPrice();
+        return criteriaQuery.multiselect(criteriaBuilder.literal(FACET_PRICE), bucketIndex,
+                        criteriaBuilder.countDistinct(root.get("id")))
+                .where(criteriaBuilder.and(predicates.toArray(new Predicate[0])))
+                .groupBy(bucketIndex);
+    }
 
-            Subquery<Long> subquery = criteriaQuery.subquery(Long.class);
-            Root<Product> subQueryProduct = subquery.from(Product.class);
-            Join<Inventory, Product> subQueryInventory = subQueryProduct.join("inventories");
+    private Predicate createKeysetPredicate(CriteriaBuilder criteriaBuilder, Root<Product> root,
+                                            ProductSort sort, PageCursor cursor, Expression<Integer> sortPrice) {
+        Path<Long> id = root.get("id");
 
-            subquery.select(subQueryProduct.get("id")).where(
-                    criteriaBuilder.between(subQueryInventory.get("price"),minPrice,maxPrice)
-            );
+        if (sort.isByName()) {
+            return after(criteriaBuilder, root.<String>get("name"), cursor.getValue(), id, cursor.getId(), sort.isDescending());
+        }
+        if (sort.isByPrice()) {
+            return after(criteriaBuilder, sortPrice, cursor.getPrice(), id, cursor.getId(), sort.isDescending());
+        }
+        return sort.isDescending()
+                ? criteriaBuilder.lessThan(id, cursor.getId())
+                : criteriaBuilder.greaterThan(id, cursor.getId());
+    }
 
-            predicates.add(criteriaBuilder.in(root.get("id")).value(subquery));
+    //(key, id) > (lastKey, lastId)
+    private static <T extends Comparable<? super T>> Predicate after(CriteriaBuilder criteriaBuilder, Expression<T> key,
+                                                                     T lastKey, Path<Long> id, Long lastId,
+                                                                     boolean descending) {
+        if (descending) {
+            return criteriaBuilder.or(
+                    criteriaBuilder.lessThan(key, lastKey),
+                    criteriaBuilder.and(criteriaBuilder.equal(key, lastKey),
+                            criteriaBuilder.lessThan(id, lastId)));
+        }
+        return criteriaBuilder.or(
+                criteriaBuilder.greaterThan(key, lastKey),
+                criteriaBuilder.and(criteriaBuilder.equal(key, lastKey),
+                        criteriaBuilder.greaterThan(id, lastId)));
+    }
 
+    private List<Order> createOrders(CriteriaBuilder criteriaBuilder, Root<Product> root, ProductSort sort,
+                                     Expression<Integer> sortPrice) {
+        List<Order> orders = new ArrayList<>();
+        if (sort.isByName()) {
+            orders.add(sort.isDescending()
+                    ? criteriaBuilder.desc(root.get("name"))
+                    : criteriaBuilder.asc(root.get("name")));
+        } else if (sort.isByPrice()) {
+            orders.add(sort.isDescending()
+                    ? criteriaBuilder.desc(sortPrice)
+                    : criteriaBuilder.asc(sortPrice));
         }
+        //id is always the tie breaker so the keyset is unique
+        orders.add(sort.isDescending()
+                ? criteriaBuilder.desc(root.get("id"))
+                : criteriaBuilder.asc(root.get("id")));
+        return orders;
+    }
 
-        //enable off percent
-        if (request.isEnableOff()){
+    private List<Predicate> createPredicates(CriteriaBuilder criteriaBuilder, CriteriaQuery<?> criteriaQuery,
+                                             Root<Product> root, SearchRequest request, Collection<Long> candidateIds){
+
+        List<Predicate> predicates = new ArrayList<>();
+
+        //deleted products are never listed, nor matched or counted through a deleted inventory, brand or category :
+        //the same rule as the rebuilds of the in-memory indexes, so an index only narrows the result down
+        predicates.add(criteriaBuilder.isFalse(root.get("deleted")));
+
+        //candidates from the in-memory indexes
+        if (candidateIds != null) {
+            predicates.add(root.get("id").in(candidateIds));
+        }
+
+        //name : the text index candidates are only a superset, the like still decides
+        if (request.getName() != null) {
+            predicates.add(criteriaBuilder.like(root.get("name"), "%" + request.getName() + "%"));
+        }
+
+        //categories : one semi-join for all of them, the product must be in every category (AND)
+        List<String> categoryNames = request.getCategoryNames();
+        if (categoryNames != null && !categoryNames.isEmpty()){
+            List<String> distinctNames = categoryNames.stream().distinct().toList();
 
             Subquery<Long> subquery = criteriaQuery.subquery(Long.class);
-            Root<Product> subQueryProduct = subquery.from(Product.class);
-            Join<Inventory, Product> subQueryInventory = subQueryProduct.join("inventories");
+            Root<Product> subQueryProduct = subquery.correlate(root);
+            Join<Product, Category> subQueryCategory = subQueryProduct.join("categories");
+
+            subquery.select(subQueryProduct.get("id"))
+                    .where(subQueryCategory.get("name").in(distinctNames),
+                            criteriaBuilder.isFalse(subQueryCategory.get("deleted")));
+
+            if (distinctNames.size() > 1) {
+                subquery.groupBy(subQueryProduct.get("id"))
+                        .having(criteriaBuilder.equal(
+                                //by name : two categories of the same name are one requested category
+                                criteriaBuilder.countDistinct(subQueryCategory.get("name")),
+                                (long) distinctNames.size()));
+            }
+
+            predicates.add(criteriaBuilder.exists(subquery));
+        }
 
-            subquery.select(subQueryProduct.get("id")).where(
-                    criteriaBuilder.greaterThan(subQueryInventory.get("offPercent"),0)
-            );
+        //brand : plain join, product has only one brand
+        if (request.getBrandName() != null){
+            Join<Product, Brand> brand = brandJoin(root, JoinType.INNER);
+            predicates.add(criteriaBuilder.equal(brand.get("name"), request.getBrandName()));
+            predicates.add(criteriaBuilder.isFalse(brand.get("deleted")));
+        }
 
-            predicates.add(criteriaBuilder.in(root.get("id")).value(subquery));
+        //color : at least one inventory in that color
+        if (request.getColorId() != null){
+            Subquery<Long> subquery = createInventorySubquery(criteriaBuilder, criteriaQuery, root,
+                    inventory -> criteriaBuilder.equal(inventory.get("color").get("id"), request.getColorId()));
 
+            predicates.add(criteriaBuilder.exists(subquery));
         }
 
+        //price between : at least one inventory in range
+        if (request.getMinPrice() != null && request.getMaxPrice() != null){
+            Subquery<Long> subquery = createInventorySubquery(criteriaBuilder, criteriaQuery, root,
+                    inventory -> criteriaBuilder.between(inventory.get("price"),
+                            request.getMinPrice(), request.getMaxPrice()));
 
-        criteriaQuery.where(
-                criteriaBuilder.and(predicates.toArray(new Predicate[0]))
-        );
+            predicates.add(criteriaBuilder.exists(subquery));
+        }
 
-        TypedQuery<Product> typedQuery = entityManager.createQuery(criteriaQuery);
+        //enable off percent : at least one inventory on sale
+        if (request.isEnableOff()){
+            Subquery<Long> subquery = createInventorySubquery(criteriaBuilder, criteriaQuery, root,
+                    inventory -> criteriaBuilder.greaterThan(inventory.get("offPercent"), 0));
 
-        return typedQuery.getResultList();
+            predicates.add(criteriaBuilder.exists(subquery));
+        }
+
+        return predicates;
+    }
+
+    //the same join serves the brand filter and the brand name of the summaries,
+    //the filter makes it an inner join so the db can start from the brand
+    @SuppressWarnings("unchecked")
+    private Join<Product, Brand> brandJoin(Root<Product> root, JoinType joinType) {
+        for (Join<Product, ?> join : root.getJoins()) {
+            if (join.getAttribute().getName().equals("brand")) {
+                return (Join<Product, Brand>) join;
+            }
+        }
+        return root.join("brand", joinType);
+    }
+
+    //exists (select 1 from inventory i where i.product_id = p.id and i.deleted = false and <condition>)
+    private Subquery<Long> createInventorySubquery(CriteriaBuilder criteriaBuilder, CriteriaQuery<?> criteriaQuery,
+                                                   Root<Product> root, Function<Root<Inventory>, Predicate> condition) {
+        Subquery<Long> subquery = criteriaQuery.subquery(Long.class);
+        Root<Inventory> inventory = subquery.from(Inventory.class);
+
+        subquery.select(inventory.get("id")).where(
+                criteriaBuilder.equal(inventory.get("product"), root),
+                criteriaBuilder.isFalse(inventory.get("deleted")),
+                condition.apply(inventory)
+        );
+        return subquery;
     }
 }
@@ -0,0 +1,9 @@
+package com.mftplus.ecommerce.repository;
+
+import com.mftplus.ecommerce.model.entity.StockJournalCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StockJournalCheckpointRepository extends JpaRepository<StockJournalCheckpoint, Long> {
+}
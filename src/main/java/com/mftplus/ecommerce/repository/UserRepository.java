@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -23,4 +24,10 @@ public interface UserRepository extends JpaRepository<User,Long> {
     @Modifying
     @Query("update userEntity oo set oo.deleted=true where oo.id=:id")
     void logicalRemove(Long id);
+
+    //only while the hash is still the one that was checked, a password reset in between wins
+    @Transactional
+    @Modifying
+    @Query("update userEntity oo set oo.password=:newPassword where oo.id=:id and oo.password=:oldPassword")
+    int updatePassword(Long id, String oldPassword, String newPassword);
 }
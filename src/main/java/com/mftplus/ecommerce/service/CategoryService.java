@@ -18,6 +18,10 @@ public interface CategoryService {
 
     Category findByNameAndDeletedFalse(String name) throws NoContentException;
 
+    List<Category> findPathByNameAndDeletedFalse(String name) throws NoContentException;
+
+    Category findTreeByNameAndDeletedFalse(String name) throws NoContentException;
+
     Category findById(Long id) throws NoContentException;
 
     Category findByIdAndDeletedFalse(Long id) throws NoContentException;
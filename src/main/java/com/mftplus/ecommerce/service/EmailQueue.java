@@ -0,0 +1,23 @@
+package com.mftplus.ecommerce.service;
+
+import com.mftplus.ecommerce.service.event.EmailQueuedEvent;
+import com.mftplus.ecommerce.service.outbox.Outbox;
+import jakarta.transaction.Transactional;
+import org.springframework.stereotype.Service;
+
+//the request threads do not talk to the smtp server : the message is written to the outbox (with the caller's
+//transaction when there is one) and sent later by EmailDeliveryHandler, retried with backoff when it fails.
+@Service
+public class EmailQueue {
+
+    private final Outbox outbox;
+
+    public EmailQueue(Outbox outbox) {
+        this.outbox = outbox;
+    }
+
+    @Transactional
+    public void queue(EmailQueuedEvent email) {
+        outbox.publish(email);
+    }
+}
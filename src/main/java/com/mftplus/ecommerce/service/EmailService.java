@@ -1,59 +1,169 @@
 package com.mftplus.ecommerce.service;
 
-import com.mftplus.ecommerce.exception.EmailFailureException;
 import com.mftplus.ecommerce.model.entity.User;
 import com.mftplus.ecommerce.model.entity.VerificationToken;
+import com.mftplus.ecommerce.service.event.EmailQueuedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.mail.MailException;
-import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//builds the emails and sends them. the user facing flows hand the emails to EmailQueue, only the outbox
+//handlers call send. metrics : executor.* tagged name=email.sending
 @Service
 public class EmailService {
 
+    private static final Logger logger = LoggerFactory.getLogger(EmailService.class);
+
     @Value("${email.from}")
     private String fromAddress;
 
     @Value("${app.frontend.url}")
     private String url;
 
+    @Value("${email.workers}")
+    private int workers;
+
+    //messages sent over one smtp connection
+    @Value("${email.batch-size}")
+    private int batchSize;
+
     private final JavaMailSender javaMailSender;
 
-    public EmailService(JavaMailSender javaMailSender) {
+    private final EmailTemplates emailTemplates;
+
+    private final MeterRegistry meterRegistry;
+
+    private ExecutorService executor;
+
+    public EmailService(JavaMailSender javaMailSender, EmailTemplates emailTemplates, MeterRegistry meterRegistry) {
         this.javaMailSender = javaMailSender;
+        this.emailTemplates = emailTemplates;
+        this.meterRegistry = meterRegistry;
     }
 
-    private SimpleMailMessage makeMailMessage(){
-        SimpleMailMessage simpleMailMessage = new SimpleMailMessage();
-        simpleMailMessage.setFrom(fromAddress);
-        return simpleMailMessage;
+    @PostConstruct
+    public void postConstruct() {
+        AtomicInteger threads = new AtomicInteger();
+        executor = ExecutorServiceMetrics.monitor(meterRegistry, Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "email-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }), "email.sending");
     }
 
-    public void sendVerificationEmail(VerificationToken verificationToken) throws EmailFailureException {
-        SimpleMailMessage message = makeMailMessage();
-        message.setTo(verificationToken.getUser().getEmail());
-        message.setSubject("Verify your email to activate your account.");
-        message.setText("Please follow the link below to verify your email to activate your account.\n +" +
-                url + "/auth/verify?token=" + verificationToken.getToken());
-        try {
-            javaMailSender.send(message);
-        }catch (MailException exception){
-            throw new EmailFailureException();
+    @PreDestroy
+    public void preDestroy() {
+        executor.shutdownNow();
+    }
+
+    public EmailQueuedEvent verificationEmail(VerificationToken verificationToken) {
+        return verificationEmail(verificationToken, LocaleContextHolder.getLocale());
+    }
+
+    //for the threads that are not the request thread, the locale is read on the request thread
+    public EmailQueuedEvent verificationEmail(VerificationToken verificationToken, Locale locale) {
+        return new EmailQueuedEvent(verificationToken.getUser().getEmail(), "verification", locale.toLanguageTag(),
+                Map.of("link", url + "/auth/verify?token=" + verificationToken.getToken()));
+    }
+
+    public EmailQueuedEvent passwordResetEmail(User user, String token) {
+        return new EmailQueuedEvent(user.getEmail(), "passwordReset", locale(),
+                Map.of("link", url + "/auth/reset?token=" + token));
+    }
+
+    public EmailQueuedEvent orderPlacedEmail(String email, Long orderId, Long total) {
+        return new EmailQueuedEvent(email, "orderPlaced", null,
+                Map.of("orderId", orderId, "total", total, "link", url + "/order/" + orderId));
+    }
+
+    //html and text of the template, the mail clients show the one they can
+    public MimeMessage render(EmailQueuedEvent email) throws MessagingException {
+        EmailTemplates.Email rendered = emailTemplates.render(email.getTemplate(), email.getLocale(), email.getVariables());
+        MimeMessage message = javaMailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setFrom(fromAddress);
+        helper.setTo(email.getTo());
+        helper.setSubject(rendered.subject());
+        helper.setText(rendered.text(), rendered.html());
+        return message;
+    }
+
+    //renders the emails, then sends them in batches of email.batch-size, each one over a single smtp connection and
+    //the batches side by side on the workers. returns the keys of the emails that were not sent.
+    public <K> Set<K> send(Map<K, EmailQueuedEvent> emails) {
+        Set<K> failed = new HashSet<>();
+        Map<MimeMessage, K> keys = new IdentityHashMap<>();
+        List<MimeMessage> messages = new ArrayList<>();
+        emails.forEach((key, email) -> {
+            try {
+                MimeMessage message = render(email);
+                keys.put(message, key);
+                messages.add(message);
+            } catch (MessagingException | RuntimeException exception) {
+                logger.warn("Email {} to {} not rendered", email.getTemplate(), email.getTo(), exception);
+                failed.add(key);
+            }
+        });
+
+        List<CompletableFuture<List<MimeMessage>>> batches = new ArrayList<>();
+        for (int from = 0; from < messages.size(); from += batchSize) {
+            List<MimeMessage> batch = messages.subList(from, Math.min(from + batchSize, messages.size()));
+            batches.add(CompletableFuture.supplyAsync(() -> sendBatch(batch), executor));
         }
+        for (CompletableFuture<List<MimeMessage>> batch : batches) {
+            batch.join().forEach(message -> failed.add(keys.get(message)));
+        }
+        return failed;
+    }
+
+    //the request threads are answered in their own language, the other threads get the default one
+    private static String locale() {
+        return LocaleContextHolder.getLocale().toLanguageTag();
     }
 
-    public void sendPasswordResetEmail(User user, String token) throws EmailFailureException{
-        SimpleMailMessage message = makeMailMessage();
-        message.setTo(user.getEmail());
-        message.setSubject("Your password reset request link.");
-        message.setText("You requested a password reset in our website, " +
-                "Please find the link below to be able to reset your password.\n" + url +
-                "/auth/reset?token=" + token);
+    private List<MimeMessage> sendBatch(List<MimeMessage> batch) {
         try {
-            javaMailSender.send(message);
-        }catch (MailException exception){
-            throw new EmailFailureException();
+            javaMailSender.send(batch.toArray(new MimeMessage[0]));
+            return List.of();
+        } catch (MailSendException exception) {
+            //only the messages that were not sent are in the map, an empty one is a failure after the last message
+            List<MimeMessage> failed = new ArrayList<>();
+            for (MimeMessage message : batch) {
+                if (exception.getFailedMessages().containsKey(message)) {
+                    failed.add(message);
+                }
+            }
+            if (!failed.isEmpty()) {
+                logger.warn("{} of {} emails not sent", failed.size(), batch.size(), exception);
+            }
+            return failed;
+        } catch (MailException exception) {
+            logger.warn("{} emails not sent", batch.size(), exception);
+            return batch;
         }
     }
 }
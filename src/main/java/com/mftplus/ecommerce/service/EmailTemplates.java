@@ -0,0 +1,79 @@
+package com.mftplus.ecommerce.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.support.ResourceBundleMessageSource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.HtmlUtils;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+//an email is rendered from templates/email : <name>.html and <name>.txt, the two parts of one message, the subject is
+//the <title> of the html. their texts are in templates/email/messages[_<language>].properties, a language without
+//its file gets the default one. own engine, apart from the one of the web pages : a template is parsed once and
+//kept with its expressions compiled, all of them are parsed on start.
+@Component
+public class EmailTemplates {
+
+    static final List<String> NAMES = List.of("verification", "passwordReset", "orderPlaced");
+
+    private final SpringTemplateEngine templateEngine;
+
+    private final Locale defaultLocale;
+
+    public EmailTemplates(@Value("${email.templates.cache}") boolean cache,
+                          @Value("${email.default-locale}") String defaultLocale) {
+        this.defaultLocale = Locale.forLanguageTag(defaultLocale);
+
+        ClassLoaderTemplateResolver templateResolver = new ClassLoaderTemplateResolver();
+        templateResolver.setPrefix("templates/email/");
+        templateResolver.setTemplateMode(TemplateMode.HTML);
+        templateResolver.setTextTemplateModePatterns(Set.of("*.txt"));
+        templateResolver.setCharacterEncoding("UTF-8");
+        templateResolver.setCheckExistence(true);
+        templateResolver.setCacheable(cache);
+
+        ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+        messageSource.setBasename("templates/email/messages");
+        messageSource.setDefaultEncoding("UTF-8");
+        messageSource.setFallbackToSystemLocale(false);
+        messageSource.setCacheMillis(cache ? -1 : 0);
+
+        templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(templateResolver);
+        templateEngine.setTemplateEngineMessageSource(messageSource);
+        templateEngine.setEnableSpringELCompiler(true);
+
+        if (cache) {
+            for (String name : NAMES) {
+                render(name, null, Map.of());
+            }
+        }
+    }
+
+    //the locale is a language tag, null for the default one
+    public Email render(String name, String locale, Map<String, Object> variables) {
+        Context context = new Context(locale == null ? defaultLocale : Locale.forLanguageTag(locale), variables);
+        String html = templateEngine.process(name + ".html", context);
+        String text = templateEngine.process(name + ".txt", context);
+        return new Email(subject(html), text, html);
+    }
+
+    private static String subject(String html) {
+        int start = html.indexOf("<title>");
+        int end = html.indexOf("</title>", start);
+        if (start < 0 || end < 0) {
+            return "";
+        }
+        return HtmlUtils.htmlUnescape(html.substring(start + "<title>".length(), end)).strip();
+    }
+
+    public record Email(String subject, String text, String html) {
+    }
+}
@@ -1,28 +1,170 @@
 package com.mftplus.ecommerce.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.crypto.bcrypt.BCrypt;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+//bcrypt runs on its own bounded pool, not on the request threads : a login storm waits in (or is turned away by)
+//the hashing queue while the other endpoints keep their threads. a full queue throws RejectedExecutionException
+//at once, the controllers answer 429.
+//metrics : executor.* tagged name=password.hashing (queued is the queue depth), password.hash (latency, by operation)
+//and password.hash.rejected
+//every hash has its own random salt. the cost is measured on start : the highest one whose hash fits the budget,
+//never below encryption.salt.rounds. hashes of a lower cost are redone on the next login (needsRehash).
 @Service
 public class EncryptionService {
 
+    private static final Logger logger = LoggerFactory.getLogger(EncryptionService.class);
+
+    //minimum cost
     @Value("${encryption.salt.rounds}")
     private int saltRounds;
 
-    private String salt;
+    @Value("${encryption.salt.max-rounds}")
+    private int maxRounds;
+
+    //0 keeps the cost at encryption.salt.rounds
+    @Value("${encryption.hash-budget-ms}")
+    private long hashBudget;
+
+    @Value("${encryption.hash-pool.size}")
+    private int poolSize;
+
+    @Value("${encryption.hash-pool.queue-size}")
+    private int queueSize;
+
+    private final MeterRegistry meterRegistry;
+
+    private int cost;
+
+    private ThreadPoolExecutor executor;
+
+    private Timer encryptTimer;
+
+    private Timer verifyTimer;
+
+    private Counter rejected;
+
+    public EncryptionService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
 
     @PostConstruct
     public void postConstruct() {
-        salt = BCrypt.gensalt(saltRounds);
+        cost = tuneCost();
+
+        AtomicInteger threads = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "password.hashing");
+        encryptTimer = Timer.builder("password.hash").tag("operation", "encrypt").register(meterRegistry);
+        verifyTimer = Timer.builder("password.hash").tag("operation", "verify").register(meterRegistry);
+        rejected = Counter.builder("password.hash.rejected").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        executor.shutdownNow();
     }
 
+    public CompletableFuture<String> encryptPasswordAsync(String password) {
+        return submit(encryptTimer, () -> BCrypt.hashpw(password, BCrypt.gensalt(cost)));
+    }
+
+    public CompletableFuture<Boolean> verifyPasswordAsync(String password, String hash) {
+        return submit(verifyTimer, () -> BCrypt.checkpw(password, hash));
+    }
+
+    //hashed with a lower cost than the current one (or not a bcrypt hash we can read)
+    public boolean needsRehash(String hash) {
+        return costOf(hash) < cost;
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    //the calling thread waits, the pool still bounds how many hashes run at once
     public String encryptPassword(String password) {
-        return BCrypt.hashpw(password,salt);
+        return join(encryptPasswordAsync(password));
     }
 
     public boolean verifyPassword(String password, String hash) {
-        return BCrypt.checkpw(password, hash);
+        return join(verifyPasswordAsync(password, hash));
+    }
+
+    //each step up doubles the time, the measure is the best of a few runs
+    private int tuneCost() {
+        if (hashBudget <= 0) {
+            return saltRounds;
+        }
+        long nanos = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            BCrypt.hashpw("cost-factor-measure", BCrypt.gensalt(saltRounds));
+            nanos = Math.min(nanos, System.nanoTime() - start);
+        }
+        int tuned = saltRounds;
+        long budget = TimeUnit.MILLISECONDS.toNanos(hashBudget);
+        while (tuned < maxRounds && nanos * 2 <= budget) {
+            tuned++;
+            nanos *= 2;
+        }
+        logger.info("Password hash cost {}, about {} ms a hash", tuned, TimeUnit.NANOSECONDS.toMillis(nanos));
+        return tuned;
+    }
+
+    //$2a$10$... , -1 when unreadable
+    static int costOf(String hash) {
+        if (hash == null || hash.length() < 7 || hash.charAt(0) != '$' || hash.charAt(3) != '$' || hash.charAt(6) != '$') {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(hash.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    //a rejection is a failed future, callers handle it with the other failures
+    private <T> CompletableFuture<T> submit(Timer timer, Supplier<T> hashing) {
+        try {
+            return CompletableFuture.supplyAsync(() -> timer.record(hashing), executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
     }
 }
@@ -1,9 +1,13 @@
 package com.mftplus.ecommerce.service;
 
 import com.mftplus.ecommerce.exception.NoContentException;
+import com.mftplus.ecommerce.exception.OutOfStockException;
 import com.mftplus.ecommerce.model.entity.Inventory;
+import com.mftplus.ecommerce.service.stock.InventoryPrice;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface InventoryService {
@@ -24,5 +28,17 @@ public interface InventoryService {
 
     List<Inventory> findAllByDeletedFalse();
 
-    Optional<Inventory> findByProductIdAndColorIdAndDeletedFalse(Long productId, Long colorId);
+    Optional<InventoryPrice> findByProductIdAndColorIdAndDeletedFalse(Long productId, Long colorId);
+
+    Map<Long, InventoryPrice> findAllByProductIdAndColorIdAndDeletedFalse(Collection<Long> keys);
+
+    //true when the reservation is held by hot stock : the rollback of the calling transaction does not undo it
+    boolean reserve(Long productId, Long colorId, int quantity) throws OutOfStockException;
+
+    void commitReservation(Long productId, Long colorId, int quantity) throws NoContentException;
+
+    void releaseReservation(Long productId, Long colorId, int quantity) throws NoContentException;
+
+    //the only way to change the stock of a saved inventory, save leaves it as it is and update refuses a new quantity
+    void restock(Long productId, Long colorId, int quantity) throws NoContentException, OutOfStockException;
 }
@@ -1,13 +1,17 @@
 package com.mftplus.ecommerce.service;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTDecodeException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import com.mftplus.ecommerce.model.entity.User;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.util.Date;
 
 @Service
@@ -25,6 +29,15 @@ public class JWTService {
 
     private Algorithm algorithm;
 
+    //immutable and thread safe, built once per purpose : signature, issuer and the claim of that purpose, so a token
+    //signed for an other purpose is rejected here, before its claim is used to look a user up
+    private JWTVerifier loginVerifier;
+
+    private JWTVerifier resetPasswordVerifier;
+
+    //far above the tokens we sign, a bigger one is not worth decoding
+    private static final int MAX_TOKEN_LENGTH = 4096;
+
     private static final String USERNAME_KEY = "USERNAME";
 
     private static final String VERIFICATION_EMAIL_KEY = "VERIFICATION_EMAIL";
@@ -34,6 +47,8 @@ public class JWTService {
     @PostConstruct
     public void postConstruct(){
         algorithm = Algorithm.HMAC256(algorithmKey);
+        loginVerifier = JWT.require(algorithm).withIssuer(issuer).withClaimPresence(USERNAME_KEY).build();
+        resetPasswordVerifier = JWT.require(algorithm).withIssuer(issuer).withClaimPresence(RESET_PASSWORD_EMAIL_KEY).build();
     }
 
     public String generateJWT(User user){
@@ -62,17 +77,40 @@ public class JWTService {
 
     public String getResetPasswordEmail(String token){
 
-        DecodedJWT jwt = JWT.require(algorithm).withIssuer(issuer).build().verify(token);
+        DecodedJWT jwt = resetPasswordVerifier.verify(decode(token));
 
         return jwt.getClaim(RESET_PASSWORD_EMAIL_KEY).asString();
     }
 
     public String getUsername(String token){
 
-        DecodedJWT jwt = JWT.require(algorithm).withIssuer(issuer).build().verify(token);
+        DecodedJWT jwt = loginVerifier.verify(decode(token));
 
         //getting the username from token
-        // .decode throws jwtDecodeException
         return jwt.getClaim(USERNAME_KEY).asString();
     }
+
+    //decoded once and handed to the verifier, malformed and expired tokens are rejected before the signature is computed.
+    //throws jwtDecodeException, TokenExpiredException
+    private static DecodedJWT decode(String token){
+        if (token.length() > MAX_TOKEN_LENGTH || dots(token) != 2) {
+            throw new JWTDecodeException("The token was expected to have 3 parts.");
+        }
+        DecodedJWT jwt = JWT.decode(token);
+        Instant expiresAt = jwt.getExpiresAtAsInstant();
+        if (expiresAt != null && expiresAt.isBefore(Instant.now())) {
+            throw new TokenExpiredException("The Token has expired on " + expiresAt + ".", expiresAt);
+        }
+        return jwt;
+    }
+
+    private static int dots(String token){
+        int dots = 0;
+        for (int i = 0; i < token.length(); i++) {
+            if (token.charAt(i) == '.') {
+                dots++;
+            }
+        }
+        return dots;
+    }
 }
@@ -1,22 +1,212 @@
 package com.mftplus.ecommerce.service;
 
+import com.mftplus.ecommerce.api.dto.OrderBody;
+import com.mftplus.ecommerce.api.dto.OrderDetail;
+import com.mftplus.ecommerce.api.dto.OrderLine;
+import com.mftplus.ecommerce.api.dto.OrderLineBody;
+import com.mftplus.ecommerce.api.dto.OrderPage;
+import com.mftplus.ecommerce.api.dto.OrderSummary;
+import com.mftplus.ecommerce.api.dto.PageCursor;
+import com.mftplus.ecommerce.exception.NoContentException;
+import com.mftplus.ecommerce.exception.OutOfStockException;
+import com.mftplus.ecommerce.exception.TemplateException;
 import com.mftplus.ecommerce.model.entity.Order;
+import com.mftplus.ecommerce.model.entity.OrderQuantities;
 import com.mftplus.ecommerce.model.entity.User;
+import com.mftplus.ecommerce.repository.AddressRepository;
+import com.mftplus.ecommerce.repository.ColorRepository;
+import com.mftplus.ecommerce.repository.OrderQuantitiesRepository;
 import com.mftplus.ecommerce.repository.OrderRepository;
+import com.mftplus.ecommerce.repository.ProductRepository;
+import com.mftplus.ecommerce.repository.UserRepository;
+import com.mftplus.ecommerce.service.event.OrderPlacedEvent;
+import com.mftplus.ecommerce.service.outbox.Outbox;
+import com.mftplus.ecommerce.service.stock.InventoryLookup;
+import com.mftplus.ecommerce.service.stock.InventoryPrice;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class OrderService {
 
+    private static final Logger logger = LoggerFactory.getLogger(OrderService.class);
+
     private final OrderRepository orderRepository;
+    private final OrderQuantitiesRepository orderQuantitiesRepository;
+    private final AddressRepository addressRepository;
+    private final ProductRepository productRepository;
+    private final ColorRepository colorRepository;
+    private final UserRepository userRepository;
+    private final InventoryService inventoryService;
+    private final Outbox outbox;
+
+    @Value("${order.max-lines}")
+    private int maxLines;
+
+    @Value("${order.history.default-page-size}")
+    private int defaultPageSize;
 
-    public OrderService(OrderRepository orderRepository) {
+    @Value("${order.history.max-page-size}")
+    private int maxPageSize;
+
+    public OrderService(OrderRepository orderRepository, OrderQuantitiesRepository orderQuantitiesRepository,
+                        AddressRepository addressRepository,
+                        ProductRepository productRepository, ColorRepository colorRepository,
+                        UserRepository userRepository, InventoryService inventoryService, Outbox outbox) {
         this.orderRepository = orderRepository;
+        this.orderQuantitiesRepository = orderQuantitiesRepository;
+        this.addressRepository = addressRepository;
+        this.productRepository = productRepository;
+        this.colorRepository = colorRepository;
+        this.userRepository = userRepository;
+        this.inventoryService = inventoryService;
+        this.outbox = outbox;
+    }
+
+    //one query per page, throws IllegalArgumentException for a cursor we did not create
+    public OrderPage findPageByUser(User user, Integer limit, String cursor) {
+        int size = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+        PageCursor after = PageCursor.decode(cursor);
+        long beforeId = after == null ? Long.MAX_VALUE : after.getId();
+
+        //one more row tells if there is a next page
+        List<OrderSummary> orders = new ArrayList<>(orderRepository.findSummariesByUserIdAndIdLessThan(
+                user.getId(), beforeId, PageRequest.of(0, size + 1)));
+        String nextCursor = null;
+        if (orders.size() > size) {
+            orders.remove(size);
+            nextCursor = new PageCursor(null, orders.get(size - 1).getId()).encode();
+        }
+        return new OrderPage(orders, nextCursor);
+    }
+
+    //two queries : the order with its address, then the lines with their product and color
+    public OrderDetail findDetailByUser(User user, Long id) throws NoContentException {
+        OrderDetail detail = orderRepository.findDetailByIdAndUserId(id, user.getId()).orElseThrow(
+                () -> new NoContentException("No Active Order Found with id : " + id)
+        );
+        detail.setLines(orderQuantitiesRepository.findLinesByOrderId(id));
+        long total = 0;
+        for (OrderLine line : detail.getLines()) {
+            total += (long) line.getQuantity() * (line.getPrice() == null ? 0 : line.getPrice());
+        }
+        detail.setTotal(total);
+        return detail;
+    }
+
+    //checkout : the inventories of the whole cart are read with one query (or from the lookup cache), every line
+    //is reserved, then the order and its lines are written with batched inserts, all in one transaction.
+    //a line out of stock rolls back the reservations already made.
+    //emails, websocket updates and the like are left to the outbox rows written with the order.
+    @Transactional(rollbackOn = TemplateException.class)
+    public Order placeOrder(User user, OrderBody body) throws NoContentException, OutOfStockException {
+        //the same product + color twice is one line
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (OrderLineBody line : body.getLines()) {
+            long key = InventoryLookup.key(line.getProductId(), line.getColorId());
+            if (key < 0 || line.getQuantity() == null || line.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Invalid order line for product : " + line.getProductId());
+            }
+            quantities.merge(key, line.getQuantity(), Math::addExact);
+        }
+        if (quantities.size() > maxLines) {
+            throw new IllegalArgumentException("An order can not have more than " + maxLines + " lines.");
+        }
+
+        if (!addressRepository.existsByIdAndUser_IdAndDeletedFalse(body.getAddressId(), user.getId())) {
+            throw new NoContentException("No Active Address Found with id : " + body.getAddressId());
+        }
+
+        Map<Long, InventoryPrice> inventories = inventoryService.findAllByProductIdAndColorIdAndDeletedFalse(quantities.keySet());
+        for (long key : quantities.keySet()) {
+            if (!inventories.containsKey(key)) {
+                throw new NoContentException("No Active Inventory Found for product : " + InventoryLookup.productIdOf(key)
+                        + ", color : " + InventoryLookup.colorIdOf(key));
+            }
+        }
+
+        //reserved in inventory id order, two carts sharing rows lock them in the same order
+        List<InventoryPrice> lines = new ArrayList<>(inventories.values());
+        lines.sort(Comparator.comparing(InventoryPrice::getId));
+
+        //references only, the order insert needs nothing but their ids
+        Order order = Order.builder()
+                .user(userRepository.getReferenceById(user.getId()))
+                .address(addressRepository.getReferenceById(body.getAddressId()))
+                .createdTimeStamp(new Timestamp(System.currentTimeMillis()))
+                .build();
+        //the reservations in the database go with the transaction, hot stock ones are given back if it rolls back,
+        //whatever the reason (a line out of stock, a failed insert, the commit itself, an outer transaction)
+        Map<Long, Integer> hotReservations = new LinkedHashMap<>();
+        releaseOnRollback(hotReservations);
+        for (InventoryPrice inventory : lines) {
+            long key = InventoryLookup.key(inventory.getProductId(), inventory.getColorId());
+            int quantity = quantities.get(key);
+            if (inventoryService.reserve(inventory.getProductId(), inventory.getColorId(), quantity)) {
+                hotReservations.put(key, quantity);
+            }
+
+            order.getQuantities().add(OrderQuantities.builder()
+                    .order(order)
+                    .product(productRepository.getReferenceById(inventory.getProductId()))
+                    .color(colorRepository.getReferenceById(inventory.getColorId()))
+                    .quantity(quantity)
+                    .price(unitPrice(inventory))
+                    .build());
+        }
+        //the id comes from the sequence on save, the outbox rows go out in the same flush
+        orderRepository.save(order);
+        outbox.publish(placedEvent(user, order));
+        orderRepository.flush();
+        return order;
+    }
+
+    private void releaseOnRollback(Map<Long, Integer> hotReservations) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_ROLLED_BACK) {
+                    return;
+                }
+                hotReservations.forEach((key, quantity) -> {
+                    try {
+                        inventoryService.releaseReservation(InventoryLookup.productIdOf(key), InventoryLookup.colorIdOf(key), quantity);
+                    } catch (NoContentException | RuntimeException e) {
+                        logger.error("Hot stock reservation of product {}, color {} ({}) not released",
+                                InventoryLookup.productIdOf(key), InventoryLookup.colorIdOf(key), quantity, e);
+                    }
+                });
+            }
+        });
+    }
+
+    private static OrderPlacedEvent placedEvent(User user, Order order) {
+        Map<Long, Integer> productQuantities = new LinkedHashMap<>();
+        long total = 0;
+        for (OrderQuantities line : order.getQuantities()) {
+            productQuantities.merge(line.getProduct().getId(), line.getQuantity(), Integer::sum);
+            total += (long) line.getQuantity() * line.getPrice();
+        }
+        return new OrderPlacedEvent(order.getId(), user.getId(), user.getEmail(), order.getCreatedTimeStamp(),
+                productQuantities, (long) order.getQuantities().size(), total);
     }
 
-    public List<Order> findOrdersByUser(User user) {
-        return orderRepository.findByUser(user);
+    private static int unitPrice(InventoryPrice inventory) {
+        int price = inventory.getPrice() == null ? 0 : inventory.getPrice();
+        int offPercent = inventory.getOffPercent() == null ? 0 : inventory.getOffPercent();
+        return price * (100 - offPercent) / 100;
     }
 }
@@ -1,6 +1,10 @@
 package com.mftplus.ecommerce.service;
 
+import com.mftplus.ecommerce.api.dto.ProductPage;
+import com.mftplus.ecommerce.api.dto.ProductSummary;
 import com.mftplus.ecommerce.api.dto.SearchRequest;
+import com.mftplus.ecommerce.api.dto.Suggestion;
+import com.mftplus.ecommerce.exception.NoContentException;
 import com.mftplus.ecommerce.model.entity.Product;
 
 import java.util.List;
@@ -8,5 +12,8 @@ import java.util.List;
 public interface ProductService {
 
     Product save(Product product);
-    List<Product> findAllByCriteria(SearchRequest request);
+    List<ProductSummary> findAllByCriteria(SearchRequest request);
+    ProductPage findPageByCriteria(SearchRequest request);
+    Product findByIdAndDeletedFalse(Long id) throws NoContentException;
+    List<Suggestion> suggest(String prefix, Integer limit);
 }
@@ -1,7 +1,6 @@
 package com.mftplus.ecommerce.service;
 
 import com.mftplus.ecommerce.api.dto.RegistrationBody;
-import com.mftplus.ecommerce.exception.EmailFailureException;
 import com.mftplus.ecommerce.exception.NoContentException;
 import com.mftplus.ecommerce.exception.UserAlreadyExistsException;
 import com.mftplus.ecommerce.model.entity.User;
@@ -10,7 +9,7 @@ import java.util.List;
 
 public interface UserService {
 
-    User save(RegistrationBody registrationBody) throws UserAlreadyExistsException , EmailFailureException;
+    User save(RegistrationBody registrationBody) throws UserAlreadyExistsException;
 
     void update(User user) throws NoContentException;
 
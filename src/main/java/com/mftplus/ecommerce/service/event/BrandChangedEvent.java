@@ -0,0 +1,17 @@
+package com.mftplus.ecommerce.service.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//published by BrandServiceImpl, listeners run after the transaction commits
+@Getter
+@AllArgsConstructor
+public class BrandChangedEvent {
+
+    private Long brandId;
+
+    //null when removed
+    private String name;
+
+    private boolean deleted;
+}
@@ -0,0 +1,24 @@
+package com.mftplus.ecommerce.service.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+//written to the outbox by EmailQueue, one per message. rendered by EmailTemplates when it is sent.
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailQueuedEvent {
+
+    private String to;
+
+    //a template of templates/email
+    private String template;
+
+    //language tag, null for email.default-locale
+    private String locale;
+
+    private Map<String, Object> variables;
+}
@@ -0,0 +1,12 @@
+package com.mftplus.ecommerce.service.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//published by InventoryServiceImpl, listeners run after the transaction commits
+@Getter
+@AllArgsConstructor
+public class InventoryChangedEvent {
+
+    private Long productId;
+}
@@ -0,0 +1,30 @@
+package com.mftplus.ecommerce.service.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+import java.util.Map;
+
+//written to the outbox by OrderService.placeOrder, carries what the handlers need so they do not read the order back
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderPlacedEvent {
+
+    private Long orderId;
+
+    private Long userId;
+
+    private String email;
+
+    private Timestamp createdTimeStamp;
+
+    //product id -> ordered quantity
+    private Map<Long, Integer> productQuantities;
+
+    private Long lineCount;
+
+    private Long total;
+}
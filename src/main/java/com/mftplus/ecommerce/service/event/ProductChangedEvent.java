@@ -0,0 +1,16 @@
+package com.mftplus.ecommerce.service.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//published by ProductServiceImpl, listeners run after the transaction commits
+@Getter
+@AllArgsConstructor
+public class ProductChangedEvent {
+
+    private Long productId;
+
+    private String name;
+
+    private boolean deleted;
+}
@@ -0,0 +1,13 @@
+package com.mftplus.ecommerce.service.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//published by UserServiceImpl when a user is updated, removed or its password is reset,
+//listeners run after the transaction commits
+@Getter
+@AllArgsConstructor
+public class UserChangedEvent {
+
+    private Long userId;
+}
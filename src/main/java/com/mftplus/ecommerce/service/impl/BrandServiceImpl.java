@@ -4,6 +4,9 @@ import com.mftplus.ecommerce.exception.NoContentException;
 import com.mftplus.ecommerce.model.entity.Brand;
 import com.mftplus.ecommerce.repository.BrandRepository;
 import com.mftplus.ecommerce.service.BrandService;
+import com.mftplus.ecommerce.service.event.BrandChangedEvent;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -12,14 +15,21 @@ import java.util.List;
 public class BrandServiceImpl implements BrandService {
 
     private final BrandRepository brandRepository;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public BrandServiceImpl(BrandRepository brandRepository) {
+    public BrandServiceImpl(BrandRepository brandRepository, ApplicationEventPublisher eventPublisher, EntityManagerFactory entityManagerFactory) {
         this.brandRepository = brandRepository;
+        this.entityManagerFactory = entityManagerFactory;
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
     public Brand save(Brand brand) {
-        return brandRepository.save(brand);
+        Brand saved = brandRepository.save(brand);
+        evict(saved.getId());
+        eventPublisher.publishEvent(new BrandChangedEvent(saved.getId(), saved.getName(), saved.isDeleted()));
+        return saved;
     }
 
     @Override
@@ -27,7 +37,10 @@ public class BrandServiceImpl implements BrandService {
         brandRepository.findByIdAndDeletedFalse(brand.getId()).orElseThrow(
                 () -> new NoContentException("No Active Brand Found with id : " + brand.getId())
         );
-        return brandRepository.save(brand);
+        Brand saved = brandRepository.save(brand);
+        evict(saved.getId());
+        eventPublisher.publishEvent(new BrandChangedEvent(saved.getId(), saved.getName(), saved.isDeleted()));
+        return saved;
     }
 
     @Override
@@ -36,6 +49,8 @@ public class BrandServiceImpl implements BrandService {
                 () -> new NoContentException("No Active Brand Found with id : " + id)
         );
         brandRepository.logicalRemove(id);
+        evict(id);
+        eventPublisher.publishEvent(new BrandChangedEvent(id, null, true));
     }
 
     @Override
@@ -44,6 +59,8 @@ public class BrandServiceImpl implements BrandService {
                 () -> new NoContentException("No Brand Found with id : " + id)
         );
         brandRepository.deleteById(id);
+        evict(id);
+        eventPublisher.publishEvent(new BrandChangedEvent(id, null, true));
     }
 
     @Override
@@ -76,4 +93,8 @@ public class BrandServiceImpl implements BrandService {
     public List<Brand> findAllByDeletedFalse() {
         return brandRepository.findAllByDeletedFalse();
     }
+
+    private void evict(Long id) {
+        entityManagerFactory.getCache().evict(Brand.class, id);
+    }
 }
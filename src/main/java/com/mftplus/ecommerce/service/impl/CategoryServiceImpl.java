@@ -1,35 +1,80 @@
 package com.mftplus.ecommerce.service.impl;
 
+import com.mftplus.ecommerce.api.dto.CategoryMenu;
 import com.mftplus.ecommerce.exception.NoContentException;
 import com.mftplus.ecommerce.model.entity.Category;
+import com.mftplus.ecommerce.model.entity.CategoryClosure;
+import com.mftplus.ecommerce.repository.CategoryClosureRepository;
 import com.mftplus.ecommerce.repository.CategoryRepository;
+import com.mftplus.ecommerce.repository.ProductRepository;
 import com.mftplus.ecommerce.service.CategoryService;
+import com.mftplus.ecommerce.service.event.CategoryChangedEvent;
+import com.mftplus.ecommerce.service.search.CategoryTree;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Objects;
 
 @Service
 public class CategoryServiceImpl implements CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ProductRepository productRepository;
+    private final CategoryClosureRepository categoryClosureRepository;
+    private final CategoryTree categoryTree;
 
-    public CategoryServiceImpl(CategoryRepository categoryRepository) {
+    @Value("${category.tree.default-depth}")
+    private int defaultTreeDepth;
+
+    @Value("${category.tree.max-depth}")
+    private int maxTreeDepth;
+
+    public CategoryServiceImpl(CategoryRepository categoryRepository, ProductRepository productRepository,
+                               ApplicationEventPublisher eventPublisher, EntityManagerFactory entityManagerFactory,
+                               CategoryClosureRepository categoryClosureRepository, CategoryTree categoryTree) {
         this.categoryRepository = categoryRepository;
+        this.categoryClosureRepository = categoryClosureRepository;
+        this.categoryTree = categoryTree;
+        this.entityManagerFactory = entityManagerFactory;
+        this.productRepository = productRepository;
+        this.eventPublisher = eventPublisher;
     }
 
 
     @Override
+    @Transactional
     public Category save(Category category) {
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        link(saved);
+        evict(saved.getId());
+        eventPublisher.publishEvent(new CategoryChangedEvent(saved.getId(), saved.getName(), saved.isDeleted()));
+        return saved;
     }
 
     @Override
+    @Transactional
     public Category update(Category category) throws NoContentException {
         categoryRepository.findByIdAndDeletedFalse(category.getId()).orElseThrow(
                 () -> new NoContentException("No Active Category Found with id : " + category.getId())
         );
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        link(saved);
+        evict(saved.getId());
+        eventPublisher.publishEvent(new CategoryChangedEvent(saved.getId(), saved.getName(), saved.isDeleted()));
+        return saved;
     }
 
     @Override
@@ -38,14 +83,20 @@ public class CategoryServiceImpl implements CategoryService {
                 () -> new NoContentException("No Active Category Found with id : " + id)
         );
         categoryRepository.logicalRemove(id);
+        evict(id);
+        eventPublisher.publishEvent(new CategoryChangedEvent(id, null, true));
     }
 
     @Override
+    @Transactional
     public void remove(Long id) throws NoContentException {
         categoryRepository.findById(id).orElseThrow(
                 () -> new NoContentException("No Category Found with id : " + id)
         );
+        categoryClosureRepository.deleteByCategoryId(id);
         categoryRepository.deleteById(id);
+        evict(id);
+        eventPublisher.publishEvent(new CategoryChangedEvent(id, null, true));
     }
 
     @Override
@@ -55,6 +106,62 @@ public class CategoryServiceImpl implements CategoryService {
         );
     }
 
+    //the category first, then its ancestors up to the root : the path comes from the tree snapshot,
+    //the categories are loaded with one query
+    @Override
+    public List<Category> findPathByNameAndDeletedFalse(String name) throws NoContentException {
+        CategoryTree.Node node = categoryTree.current().findByName(name);
+        if (node == null) {
+            throw new NoContentException("No Category Found with name : " + name);
+        }
+        for (CategoryTree.Node ancestor : node.getPath()) {
+            if (ancestor.isDeleted()) {
+                throw new NoContentException("No Category Found with name : " + ancestor.getName());
+            }
+        }
+
+        List<Long> ids = node.getPath().stream().map(CategoryTree.Node::getId).toList();
+        Map<Long, Category> categories = new HashMap<>();
+        categoryRepository.findAllById(ids).forEach(category -> categories.put(category.getId(), category));
+        return ids.stream().map(categories::get).toList();
+    }
+
+    //the subtree with its children and products collections (descendants from the tree snapshot), the products
+    //of the whole subtree in one closure table lookup, then the product fetch plan : a fixed number of queries
+    //whatever the depth of the tree
+    @Override
+    @Transactional
+    public Category findTreeByNameAndDeletedFalse(String name) throws NoContentException {
+        Category category = findByNameAndDeletedFalse(name);
+
+        CategoryTree.Node node = categoryTree.current().findById(category.getId());
+        List<Long> subtreeIds = node != null ? node.getDescendantIds() : List.of(category.getId());
+        categoryRepository.fetchChildCategoriesByIdIn(subtreeIds);
+        categoryRepository.fetchProductsByIdIn(subtreeIds);
+
+        List<Long> productIds = productRepository.findIdsInCategoryTree(category.getId());
+        if (!productIds.isEmpty()) {
+            productRepository.findAllWithBrandAndMainImageByIdIn(productIds);
+            productRepository.fetchAssociations(productIds);
+        }
+        return category;
+    }
+
+    //browse tree (mega menu) : cut from the category tree snapshot, no query
+    public CategoryMenu findMenu(String name, Integer depth) throws NoContentException {
+        CategoryTree.Snapshot snapshot = categoryTree.current();
+        int levels = depth == null ? defaultTreeDepth : Math.max(0, Math.min(depth, maxTreeDepth));
+
+        CategoryTree.Node root = null;
+        if (name != null) {
+            root = snapshot.findByName(name);
+            if (root == null || root.isDeleted()) {
+                throw new NoContentException("No Category Found with name : " + name);
+            }
+        }
+        return new CategoryMenu(snapshot.getVersion(), snapshot.menu(root, levels));
+    }
+
     @Override
     public Category findById(Long id) throws NoContentException {
         return categoryRepository.findById(id).orElseThrow(
@@ -78,4 +185,91 @@ public class CategoryServiceImpl implements CategoryService {
     public List<Category> findAllByDeletedFalse() {
         return categoryRepository.findAllByDeletedFalse();
     }
+
+    private void evict(Long id) {
+        entityManagerFactory.getCache().evict(Category.class, id);
+    }
+
+    //closure rows written before this table existed, or by data loaded behind the service, are rebuilt on startup,
+    //once IdSequenceMigration has moved the id sequences
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    @Transactional
+    public void rebuildClosureIfStale() {
+        CategoryTree.Snapshot snapshot = categoryTree.rebuild();
+        if (closureMatches(snapshot)) {
+            return;
+        }
+        categoryClosureRepository.deleteAllRows();
+        List<CategoryClosure> rows = new ArrayList<>();
+        for (CategoryTree.Node node : snapshot.nodes()) {
+            Category descendant = categoryRepository.getReferenceById(node.getId());
+            List<CategoryTree.Node> path = node.getPath();
+            for (int depth = 0; depth < path.size(); depth++) {
+                rows.add(new CategoryClosure(categoryRepository.getReferenceById(path.get(depth).getId()), descendant, depth));
+            }
+        }
+        categoryClosureRepository.saveAll(rows);
+    }
+
+    //a row for every category and ancestor, and the parent edges (depth 1) the same as the parent column : a category
+    //moved behind the service keeps the count of its rows but not its parent
+    private boolean closureMatches(CategoryTree.Snapshot snapshot) {
+        long expectedRows = snapshot.nodes().stream().mapToLong(node -> node.getPath().size()).sum();
+        if (categoryClosureRepository.countByDepth(0) != snapshot.size() || categoryClosureRepository.count() != expectedRows) {
+            return false;
+        }
+        Map<Long, Long> parents = new HashMap<>();
+        for (CategoryClosure row : categoryClosureRepository.findByDepth(1)) {
+            parents.put(row.getDescendant().getId(), row.getAncestor().getId());
+        }
+        for (CategoryTree.Node node : snapshot.nodes()) {
+            Long parentId = node.getPath().size() > 1 ? node.getPath().get(1).getId() : null;
+            if (!Objects.equals(parents.remove(node.getId()), parentId)) {
+                return false;
+            }
+        }
+        return parents.isEmpty();
+    }
+
+    //keeps the closure table in line with the parent of a saved category : a new category gets a row for
+    //itself and one for every ancestor of its parent, a moved one has its whole subtree relinked under the new parent
+    private void link(Category category) {
+        Long parentId = category.getParentCategory() != null ? category.getParentCategory().getId() : null;
+        List<CategoryClosure> ancestors = categoryClosureRepository.findAncestorRows(category.getId());
+
+        List<CategoryClosure> subtree;
+        if (ancestors.isEmpty()) {
+            CategoryClosure self = new CategoryClosure(category, category, 0);
+            categoryClosureRepository.save(self);
+            subtree = List.of(self);
+        } else {
+            Long currentParentId = ancestors.stream().filter(row -> row.getDepth() == 1)
+                    .map(row -> row.getAncestor().getId()).findFirst().orElse(null);
+            if (Objects.equals(currentParentId, parentId)) {
+                return;
+            }
+            subtree = categoryClosureRepository.findDescendantRows(category.getId());
+        }
+
+        List<Long> subtreeIds = subtree.stream().map(row -> row.getDescendant().getId()).toList();
+        if (parentId != null && subtreeIds.contains(parentId)) {
+            throw new IllegalArgumentException("Category can not be moved under its own subtree : " + category.getId());
+        }
+        if (!ancestors.isEmpty()) {
+            categoryClosureRepository.unlinkSubtree(subtreeIds);
+        }
+        if (parentId == null) {
+            return;
+        }
+
+        List<CategoryClosure> rows = new ArrayList<>();
+        for (CategoryClosure ancestor : categoryClosureRepository.findAncestorRows(parentId)) {
+            for (CategoryClosure descendant : subtree) {
+                rows.add(new CategoryClosure(ancestor.getAncestor(), descendant.getDescendant(),
+                        ancestor.getDepth() + descendant.getDepth() + 1));
+            }
+        }
+        categoryClosureRepository.saveAll(rows);
+    }
 }
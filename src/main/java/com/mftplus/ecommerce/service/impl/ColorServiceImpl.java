@@ -4,6 +4,7 @@ import com.mftplus.ecommerce.exception.NoContentException;
 import com.mftplus.ecommerce.model.entity.Color;
 import com.mftplus.ecommerce.repository.ColorRepository;
 import com.mftplus.ecommerce.service.ColorService;
+import jakarta.persistence.EntityManagerFactory;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -12,14 +13,18 @@ import java.util.List;
 public class ColorServiceImpl implements ColorService {
 
     private final ColorRepository colorRepository;
+    private final EntityManagerFactory entityManagerFactory;
 
-    public ColorServiceImpl(ColorRepository colorRepository) {
+    public ColorServiceImpl(ColorRepository colorRepository, EntityManagerFactory entityManagerFactory) {
         this.colorRepository = colorRepository;
+        this.entityManagerFactory = entityManagerFactory;
     }
 
     @Override
     public Color save(Color color) {
-        return colorRepository.save(color);
+        Color saved = colorRepository.save(color);
+        evict(saved.getId());
+        return saved;
     }
 
     @Override
@@ -27,7 +32,9 @@ public class ColorServiceImpl implements ColorService {
         colorRepository.findByIdAndDeletedFalse(color.getId()).orElseThrow(
                 () -> new NoContentException("No Active Color Found with id : " + color.getId())
         );
-        return colorRepository.save(color);
+        Color saved = colorRepository.save(color);
+        evict(saved.getId());
+        return saved;
     }
 
     @Override
@@ -36,6 +43,7 @@ public class ColorServiceImpl implements ColorService {
                 () -> new NoContentException("No Active Color Found with id : " + id)
         );
         colorRepository.logicalRemove(id);
+        evict(id);
     }
 
     @Override
@@ -44,6 +52,7 @@ public class ColorServiceImpl implements ColorService {
                 () -> new NoContentException("No Color Found with id : " + id)
         );
         colorRepository.deleteById(id);
+        evict(id);
     }
 
     @Override
@@ -76,4 +85,8 @@ public class ColorServiceImpl implements ColorService {
     public List<Color> findAllByDeletedFalse() {
         return colorRepository.findAllByDeletedFalse();
     }
+
+    private void evict(Long id) {
+        entityManagerFactory.getCache().evict(Color.class, id);
+    }
 }
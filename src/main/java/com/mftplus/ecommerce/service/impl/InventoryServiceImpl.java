@@ -1,50 +1,75 @@
 package com.mftplus.ecommerce.service.impl;
 
 import com.mftplus.ecommerce.exception.NoContentException;
+import com.mftplus.ecommerce.exception.OutOfStockException;
 import com.mftplus.ecommerce.model.entity.Inventory;
 import com.mftplus.ecommerce.repository.InventoryRepository;
 import com.mftplus.ecommerce.service.InventoryService;
+import com.mftplus.ecommerce.service.event.InventoryChangedEvent;
+import com.mftplus.ecommerce.service.stock.HotStock;
+import com.mftplus.ecommerce.service.stock.InventoryLookup;
+import com.mftplus.ecommerce.service.stock.InventoryPrice;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class InventoryServiceImpl implements InventoryService {
 
     private final InventoryRepository inventoryRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final HotStock hotStock;
+    private final InventoryLookup inventoryLookup;
 
-    public InventoryServiceImpl(InventoryRepository inventoryRepository) {
+    public InventoryServiceImpl(InventoryRepository inventoryRepository, ApplicationEventPublisher eventPublisher,
+                                HotStock hotStock, InventoryLookup inventoryLookup) {
         this.inventoryRepository = inventoryRepository;
+        this.eventPublisher = eventPublisher;
+        this.hotStock = hotStock;
+        this.inventoryLookup = inventoryLookup;
     }
 
     @Override
     public Inventory save(Inventory inventory) {
-        return inventoryRepository.save(inventory);
+        Inventory saved = inventoryRepository.save(inventory);
+        eventPublisher.publishEvent(new InventoryChangedEvent(saved.getProduct().getId()));
+        return saved;
     }
 
+    //the stock is not written by update, a changed quantity is refused instead of being dropped : see restock
     @Override
     public Inventory update(Inventory inventory) throws NoContentException {
-        inventoryRepository.findByIdAndDeletedFalse(inventory.getId()).orElseThrow(
+        Inventory current = inventoryRepository.findByIdAndDeletedFalse(inventory.getId()).orElseThrow(
                 () -> new NoContentException("No Active Inventory Found with id : " + inventory.getId())
         );
-        return inventoryRepository.save(inventory);
+        if (inventory.getQuantity() != null && !inventory.getQuantity().equals(current.getQuantity())) {
+            throw new IllegalArgumentException("Quantity of inventory " + inventory.getId() + " is changed with restock.");
+        }
+        Inventory saved = inventoryRepository.save(inventory);
+        eventPublisher.publishEvent(new InventoryChangedEvent(saved.getProduct().getId()));
+        return saved;
     }
 
     @Override
     public void logicalRemove(Long id) throws NoContentException {
-        inventoryRepository.findByIdAndDeletedFalse(id).orElseThrow(
+        Inventory inventory = inventoryRepository.findByIdAndDeletedFalse(id).orElseThrow(
                 () -> new NoContentException("No Active Inventory Found with id : " + id)
         );
         inventoryRepository.logicalRemove(id);
+        eventPublisher.publishEvent(new InventoryChangedEvent(inventory.getProduct().getId()));
     }
 
     @Override
     public void remove(Long id) throws NoContentException {
-        inventoryRepository.findById(id).orElseThrow(
+        Inventory inventory = inventoryRepository.findById(id).orElseThrow(
                 () -> new NoContentException("No Inventory Found with id : " + id)
         );
         inventoryRepository.deleteById(id);
+        eventPublisher.publishEvent(new InventoryChangedEvent(inventory.getProduct().getId()));
     }
 
     @Override
@@ -71,8 +96,72 @@ public class InventoryServiceImpl implements InventoryService {
         return inventoryRepository.findAllByDeletedFalse();
     }
 
+    //cached, see InventoryLookup
     @Override
-    public Optional<Inventory> findByProductIdAndColorIdAndDeletedFalse(Long productId, Long colorId) {
-        return Optional.empty();
+    public Optional<InventoryPrice> findByProductIdAndColorIdAndDeletedFalse(Long productId, Long colorId) {
+        return inventoryLookup.find(productId, colorId);
+    }
+
+    //keys are InventoryLookup.key(productId, colorId), the pairs not cached are read with one query
+    @Override
+    public Map<Long, InventoryPrice> findAllByProductIdAndColorIdAndDeletedFalse(Collection<Long> keys) {
+        return inventoryLookup.findAll(keys);
+    }
+
+    //takes the quantity out of the stock of one product + color, fails instead of overselling.
+    //the check and the decrement are one conditional update (or one hot stock counter change), so concurrent
+    //checkouts of the last unit can not both succeed and no row is locked longer than the statement
+    //(plus the calling transaction).
+    @Override
+    public boolean reserve(Long productId, Long colorId, int quantity) throws OutOfStockException {
+        checkQuantity(quantity);
+        //hot stock calls the db only for an inventory that is not hot
+        boolean[] db = new boolean[1];
+        if (!hotStock.reserve(productId, colorId, quantity, () -> {
+            db[0] = true;
+            return inventoryRepository.reserve(productId, colorId, quantity) > 0;
+        })) {
+            throw new OutOfStockException("Not Enough Stock for product : " + productId + ", color : " + colorId);
+        }
+        return !db[0];
+    }
+
+    //the reserved quantity is sold
+    @Override
+    public void commitReservation(Long productId, Long colorId, int quantity) throws NoContentException {
+        checkQuantity(quantity);
+        if (!hotStock.commit(productId, colorId, quantity,
+                () -> inventoryRepository.commitReservation(productId, colorId, quantity) > 0)) {
+            throw new NoContentException("No Reserved Stock Found for product : " + productId + ", color : " + colorId);
+        }
+    }
+
+    //the reserved quantity goes back to the stock
+    @Override
+    public void releaseReservation(Long productId, Long colorId, int quantity) throws NoContentException {
+        checkQuantity(quantity);
+        if (!hotStock.release(productId, colorId, quantity,
+                () -> inventoryRepository.releaseReservation(productId, colorId, quantity) > 0)) {
+            throw new NoContentException("No Reserved Stock Found for product : " + productId + ", color : " + colorId);
+        }
+    }
+
+    //adds the quantity to the stock, a negative quantity takes it out of the stock not reserved
+    @Override
+    public void restock(Long productId, Long colorId, int quantity) throws NoContentException, OutOfStockException {
+        if (!hotStock.restock(productId, colorId, quantity,
+                () -> inventoryRepository.restock(productId, colorId, quantity) > 0)) {
+            //the update matched no row : either there is no such inventory or the stock would go below zero
+            if (inventoryRepository.findByProductIdAndColorIdAndDeletedFalse(productId, colorId).isEmpty()) {
+                throw new NoContentException("No Active Inventory Found for product : " + productId + ", color : " + colorId);
+            }
+            throw new OutOfStockException("Not Enough Stock for product : " + productId + ", color : " + colorId);
+        }
+    }
+
+    private void checkQuantity(int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be greater than 0.");
+        }
     }
 }
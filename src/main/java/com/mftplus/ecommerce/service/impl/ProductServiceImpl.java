@@ -1,12 +1,31 @@
 package com.mftplus.ecommerce.service.impl;
 
+import com.mftplus.ecommerce.api.dto.PageCursor;
+import com.mftplus.ecommerce.api.dto.PriceBucket;
+import com.mftplus.ecommerce.api.dto.ProductFacets;
+import com.mftplus.ecommerce.api.dto.ProductPage;
+import com.mftplus.ecommerce.api.dto.ProductSort;
+import com.mftplus.ecommerce.api.dto.ProductSummary;
 import com.mftplus.ecommerce.api.dto.SearchRequest;
+import com.mftplus.ecommerce.api.dto.Suggestion;
+import com.mftplus.ecommerce.exception.NoContentException;
 import com.mftplus.ecommerce.model.entity.Product;
 import com.mftplus.ecommerce.repository.ProductRepository;
 import com.mftplus.ecommerce.repository.ProductSearchRepository;
 import com.mftplus.ecommerce.service.ProductService;
+import com.mftplus.ecommerce.service.event.ProductChangedEvent;
+import com.mftplus.ecommerce.service.search.CatalogFilterIndex;
+import com.mftplus.ecommerce.service.search.ProductTextIndex;
+import com.mftplus.ecommerce.service.search.SuggestionIndex;
+import jakarta.transaction.Transactional;
+import org.roaringbitmap.longlong.LongIterator;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 @Service
@@ -14,19 +33,177 @@ public class ProductServiceImpl implements ProductService {
 
     private final ProductRepository productRepository;
     private final ProductSearchRepository productSearchRepository;
+    private final ProductTextIndex productTextIndex;
+    private final SuggestionIndex suggestionIndex;
+    private final CatalogFilterIndex catalogFilterIndex;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public ProductServiceImpl(ProductRepository productRepository, ProductSearchRepository productSearchRepository) {
+    @Value("${product.search.default-page-size}")
+    private int defaultPageSize;
+
+    @Value("${product.search.max-page-size}")
+    private int maxPageSize;
+
+    //upper bounds of the price facet buckets, the last bucket is open ended
+    @Value("${product.search.facets.price-bounds}")
+    private int[] priceBounds;
+
+    //above this, the filter index result is not sent to the db as an IN list
+    @Value("${product.search.filter-index.max-candidates}")
+    private int maxFilterCandidates;
+
+    public ProductServiceImpl(ProductRepository productRepository, ProductSearchRepository productSearchRepository,
+                              ProductTextIndex productTextIndex, SuggestionIndex suggestionIndex,
+                              CatalogFilterIndex catalogFilterIndex, ApplicationEventPublisher eventPublisher) {
         this.productRepository = productRepository;
         this.productSearchRepository = productSearchRepository;
+        this.productTextIndex = productTextIndex;
+        this.suggestionIndex = suggestionIndex;
+        this.catalogFilterIndex = catalogFilterIndex;
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
     public Product save(Product product) {
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(saved.getId(), saved.getName(), saved.isDeleted()));
+        return saved;
+    }
+
+    @Override
+    public List<ProductSummary> findAllByCriteria(SearchRequest request) {
+        long[] candidates = productTextIndex.findCandidates(request.getName());
+        if (candidates != null && candidates.length == 0) {
+            return new ArrayList<>();
+        }
+        Roaring64Bitmap matches = catalogFilterIndex.filter(request, candidates);
+        if (matches != null && matches.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return productSearchRepository.findSummariesByCriteria(narrow(request, matches), candidateIds(matches, candidates));
+    }
+
+    @Override
+    public ProductPage findPageByCriteria(SearchRequest request) {
+        int limit = request.getLimit() == null ? defaultPageSize
+                : Math.max(1, Math.min(request.getLimit(), maxPageSize));
+        ProductSort sort = request.getSort() == null ? ProductSort.ID_ASC : request.getSort();
+        //decoded here so a bad cursor is not translated into a data access exception
+        PageCursor cursor = PageCursor.decode(request.getCursor(), sort);
+
+        //null when the text index can not answer, empty when it knows that no product matches the name
+        long[] candidates = productTextIndex.findCandidates(request.getName());
+        if (candidates != null && candidates.length == 0) {
+            return emptyPage(request);
+        }
+        Roaring64Bitmap matches = catalogFilterIndex.filter(request, candidates);
+
+        List<ProductSummary> products;
+        if (matches != null && matches.isEmpty()) {
+            //the facets that leave a filter out can still count products
+            products = new ArrayList<>();
+        } else if (matches != null && request.getName() == null && sort.isById()) {
+            //the page is cut from the bitmap, the db only reads its rows
+            products = productSearchRepository.findSummariesByIds(pageOf(matches, sort, cursor, limit + 1), sort);
+        } else {
+            products = productSearchRepository.findPageSummariesByCriteria(narrow(request, matches),
+                    candidateIds(matches, candidates), cursor, limit);
+        }
+
+        String nextCursor = null;
+        if (products.size() > limit) {
+            products = new ArrayList<>(products.subList(0, limit));
+            ProductSummary last = products.get(limit - 1);
+            nextCursor = new PageCursor(sortValue(last, sort), last.getId()).encode();
+        }
+        ProductPage page = new ProductPage(products, nextCursor);
+        if (request.isFacets()) {
+            //the filter index can not count the name filter without text index candidates
+            ProductFacets facets = request.getName() == null || candidates != null
+                    ? catalogFilterIndex.facets(request, candidates, priceBounds) : null;
+            page.setFacets(facets != null ? facets
+                    : productSearchRepository.findFacets(request, candidateIds(null, candidates), priceBounds));
+        }
+        return page;
+    }
+
+    @Override
+    @Transactional
+    public Product findByIdAndDeletedFalse(Long id) throws NoContentException {
+        Product product = productRepository.findWithBrandAndMainImageByIdAndDeletedFalse(id).orElseThrow(
+                () -> new NoContentException("No Active Product Found with id : " + id)
+        );
+        productRepository.fetchAssociations(List.of(id));
+        return product;
     }
 
     @Override
-    public List<Product> findAllByCriteria(SearchRequest request) {
-        return productSearchRepository.findAllByCriteria(request);
+    public List<Suggestion> suggest(String prefix, Integer limit) {
+        int size = limit == null ? suggestionIndex.getMaxSize()
+                : Math.max(1, Math.min(limit, suggestionIndex.getMaxSize()));
+        return suggestionIndex.suggest(prefix.strip(), size);
+    }
+
+    private static String sortValue(ProductSummary summary, ProductSort sort) {
+        if (sort.isByName()) {
+            return summary.getName();
+        }
+        if (sort.isByPrice()) {
+            return Integer.toString(summary.getMinPrice() == null ? sort.noPrice() : summary.getMinPrice());
+        }
+        return null;
+    }
+
+    private ProductPage emptyPage(SearchRequest request) {
+        ProductPage page = new ProductPage(new ArrayList<>(), null);
+        if (request.isFacets()) {
+            ProductFacets facets = new ProductFacets();
+            for (int i = 0; i <= priceBounds.length; i++) {
+                facets.getPrices().add(new PriceBucket(i == 0 ? 0 : priceBounds[i - 1],
+                        i < priceBounds.length ? priceBounds[i] : null, 0L));
+            }
+            page.setFacets(facets);
+        }
+        return page;
+    }
+
+    //the structured filters are already applied by the bitmap when its ids are sent, the db keeps the name and the sort
+    private SearchRequest narrow(SearchRequest request, Roaring64Bitmap matches) {
+        if (!sendMatches(matches)) {
+            return request;
+        }
+        SearchRequest narrowed = new SearchRequest();
+        narrowed.setName(request.getName());
+        narrowed.setSort(request.getSort());
+        return narrowed;
+    }
+
+    //the ids the db query is limited to : the bitmap result when it is small enough, else the text index candidates
+    private List<Long> candidateIds(Roaring64Bitmap matches, long[] candidates) {
+        if (sendMatches(matches)) {
+            return Arrays.stream(matches.toArray()).boxed().toList();
+        }
+        return candidates == null ? null : Arrays.stream(candidates).boxed().toList();
+    }
+
+    private boolean sendMatches(Roaring64Bitmap matches) {
+        return matches != null && matches.getLongCardinality() <= maxFilterCandidates;
+    }
+
+    //ids after the cursor in id order, read straight from the bitmap
+    private static List<Long> pageOf(Roaring64Bitmap matches, ProductSort sort, PageCursor cursor, int size) {
+        LongIterator iterator;
+        if (sort.isDescending()) {
+            iterator = cursor == null ? matches.getReverseLongIterator()
+                    : matches.getReverseLongIteratorFrom(cursor.getId() - 1);
+        } else {
+            iterator = cursor == null ? matches.getLongIterator()
+                    : matches.getLongIteratorFrom(cursor.getId() + 1);
+        }
+        List<Long> ids = new ArrayList<>(size);
+        while (iterator.hasNext() && ids.size() < size) {
+            ids.add(iterator.next());
+        }
+        return ids;
     }
 }
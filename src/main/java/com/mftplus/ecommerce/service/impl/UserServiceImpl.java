@@ -8,16 +8,33 @@ import com.mftplus.ecommerce.model.entity.User;
 import com.mftplus.ecommerce.model.entity.VerificationToken;
 import com.mftplus.ecommerce.repository.UserRepository;
 import com.mftplus.ecommerce.repository.VerificationTokenRepository;
+import com.mftplus.ecommerce.service.EmailQueue;
 import com.mftplus.ecommerce.service.EmailService;
 import com.mftplus.ecommerce.service.EncryptionService;
 import com.mftplus.ecommerce.service.JWTService;
 import com.mftplus.ecommerce.service.UserService;
+import com.mftplus.ecommerce.service.event.UserChangedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.transaction.Transactional;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.sql.Timestamp;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class UserServiceImpl implements UserService {
@@ -25,33 +42,90 @@ public class UserServiceImpl implements UserService {
     private final EncryptionService encryptionService;
     private final JWTService jwtService;
     private final EmailService emailService;
+    private final EmailQueue emailQueue;
     private final VerificationTokenRepository verificationTokenRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
 
-    public UserServiceImpl(UserRepository userRepository, EncryptionService encryptionService, JWTService jwtService, EmailService emailService, VerificationTokenRepository verificationTokenRepository) {
+    //the async login leaves the hashing pool as soon as bcrypt is done and goes on here
+    @Value("${user.login-workers}")
+    private int loginWorkers;
+
+    private ExecutorService loginExecutor;
+
+    public UserServiceImpl(UserRepository userRepository, EncryptionService encryptionService, JWTService jwtService, EmailService emailService, EmailQueue emailQueue, VerificationTokenRepository verificationTokenRepository, ApplicationEventPublisher eventPublisher,
+                           PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
         this.userRepository = userRepository;
         this.encryptionService = encryptionService;
         this.jwtService = jwtService;
         this.emailService = emailService;
+        this.emailQueue = emailQueue;
         this.verificationTokenRepository = verificationTokenRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void postConstruct() {
+        AtomicInteger threads = new AtomicInteger();
+        loginExecutor = ExecutorServiceMetrics.monitor(meterRegistry, Executors.newFixedThreadPool(loginWorkers, runnable -> {
+            Thread thread = new Thread(runnable, "login-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }), "user.login");
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        loginExecutor.shutdownNow();
     }
 
 //todo : default user role
+    //the verification email is queued with the user, it is sent after the commit
+    @Transactional
     @Override
-    public User save(RegistrationBody registrationBody) throws UserAlreadyExistsException, EmailFailureException {
-        if (userRepository.findByEmailIgnoreCaseAndDeletedFalse(registrationBody.getEmail()).isPresent()
-        || userRepository.findByUsernameIgnoreCaseAndDeletedFalse(registrationBody.getUsername()).isPresent()){
+    public User save(RegistrationBody registrationBody) throws UserAlreadyExistsException {
+        if (isRegistered(registrationBody)){
             throw new UserAlreadyExistsException();
         }
+        return register(registrationBody, encryptionService.encryptPassword(registrationBody.getPassword()),
+                LocaleContextHolder.getLocale());
+    }
+
+    //bcrypt runs on the hashing pool and the user is written on the login workers, the request thread is let go.
+    //fails with UserAlreadyExistsException or RejectedExecutionException when the hashing pool is full.
+    public CompletableFuture<User> saveAsync(RegistrationBody registrationBody) {
+        if (isRegistered(registrationBody)){
+            return CompletableFuture.failedFuture(new UserAlreadyExistsException());
+        }
+        Locale locale = LocaleContextHolder.getLocale();
+        return encryptionService.encryptPasswordAsync(registrationBody.getPassword()).thenComposeAsync(hash -> {
+            //checked again, the username or email can be taken while hashing
+            User user = transactionTemplate.execute(status ->
+                    isRegistered(registrationBody) ? null : register(registrationBody, hash, locale));
+            return user == null ? CompletableFuture.failedFuture(new UserAlreadyExistsException())
+                    : CompletableFuture.completedFuture(user);
+        }, loginExecutor);
+    }
+
+    private boolean isRegistered(RegistrationBody registrationBody) {
+        return userRepository.findByEmailIgnoreCaseAndDeletedFalse(registrationBody.getEmail()).isPresent()
+                || userRepository.findByUsernameIgnoreCaseAndDeletedFalse(registrationBody.getUsername()).isPresent();
+    }
+
+    private User register(RegistrationBody registrationBody, String hash, Locale locale) {
         User user = new User();
         user.setUsername(registrationBody.getUsername());
-        user.setPassword(encryptionService.encryptPassword(registrationBody.getPassword()));
+        user.setPassword(hash);
         user.setEmail(registrationBody.getEmail());
         user.setFirstName(registrationBody.getFirstName());
         user.setLastName(registrationBody.getLastName());
         user.setPhoneNumber(registrationBody.getPhoneNumber());
 
         VerificationToken verificationToken = createVerificationToken(user);
-        emailService.sendVerificationEmail(verificationToken);
+        emailQueue.queue(emailService.verificationEmail(verificationToken, locale));
 
         return userRepository.save(user);
     }
@@ -62,6 +136,7 @@ public class UserServiceImpl implements UserService {
                 () -> new NoContentException("No Active User Found with id : " + user.getId())
         );
         userRepository.save(user);
+        eventPublisher.publishEvent(new UserChangedEvent(user.getId()));
     }
 
     @Transactional
@@ -71,6 +146,7 @@ public class UserServiceImpl implements UserService {
                 () -> new NoContentException("No Active User Found with id : " + id)
         );
         userRepository.logicalRemove(id);
+        eventPublisher.publishEvent(new UserChangedEvent(id));
     }
 
     @Override
@@ -79,6 +155,7 @@ public class UserServiceImpl implements UserService {
                 () -> new NoContentException("No User Found with id : " + id)
         );
         userRepository.deleteById(id);
+        eventPublisher.publishEvent(new UserChangedEvent(id));
     }
 
     @Override
@@ -130,31 +207,76 @@ public class UserServiceImpl implements UserService {
         return verificationToken;
     }
 
-    public String loginUser(LoginBody loginBody) throws UserNotVerifiedException, EmailFailureException {
+    public String loginUser(LoginBody loginBody) throws UserNotVerifiedException {
         Optional<User> optionalUser = userRepository.findByUsernameIgnoreCaseAndDeletedFalse(loginBody.getUsername());
         if (optionalUser.isPresent()){
             User user = optionalUser.get();
             if (encryptionService.verifyPassword(loginBody.getPassword(), user.getPassword())){
-                //is user verified?
-                if (user.getEmailVerified()) {
-                    return jwtService.generateJWT(user);
-                } else {
-                    List<VerificationToken> verificationTokens = user.getVerificationTokens();
-                    boolean resend = verificationTokens.size() == 0 ||
-                            verificationTokens.get(0).getCreatedTimeStamp().before(new Timestamp(System.currentTimeMillis() - (60 * 60 * 1000)));
-                    if (resend){
-                        VerificationToken verificationToken = createVerificationToken(user);
-                        verificationTokenRepository.save(verificationToken);
-                        emailService.sendVerificationEmail(verificationToken);
-                    }
-
-                    throw new UserNotVerifiedException(resend);
-                }
+                rehashIfOutdated(user, loginBody.getPassword());
+                return passwordMatched(user, LocaleContextHolder.getLocale());
             }
         }
         return null;
     }
 
+    //only bcrypt runs on the hashing pool, the rest of the login goes on the login workers and the request thread
+    //is let go. the locale of the request is read here for the verification email.
+    //completes with null for a wrong username or password, fails with UserNotVerifiedException
+    //or RejectedExecutionException when the hashing pool is full.
+    public CompletableFuture<String> loginUserAsync(LoginBody loginBody) {
+        Locale locale = LocaleContextHolder.getLocale();
+        Optional<User> optionalUser = userRepository.findByUsernameIgnoreCaseAndDeletedFalse(loginBody.getUsername());
+        if (optionalUser.isEmpty()){
+            return CompletableFuture.completedFuture(null);
+        }
+        User user = optionalUser.get();
+        if (!user.getEmailVerified()) {
+            //read while the session of the request is open
+            Hibernate.initialize(user.getVerificationTokens());
+        }
+        return encryptionService.verifyPasswordAsync(loginBody.getPassword(), user.getPassword()).thenComposeAsync(matches -> {
+            if (matches) {
+                rehashIfOutdated(user, loginBody.getPassword());
+            }
+            try {
+                return CompletableFuture.completedFuture(matches ? passwordMatched(user, locale) : null);
+            } catch (UserNotVerifiedException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }, loginExecutor);
+    }
+
+    //the plain password is only known at login : a hash of an older cost is redone then, on the hashing pool
+    //and without holding up the login. a full pool or a failed update leaves it for the next login.
+    private void rehashIfOutdated(User user, String password) {
+        String oldHash = user.getPassword();
+        if (encryptionService.needsRehash(oldHash)) {
+            encryptionService.encryptPasswordAsync(password)
+                    .thenAcceptAsync(newHash -> userRepository.updatePassword(user.getId(), oldHash, newHash), loginExecutor);
+        }
+    }
+
+    private String passwordMatched(User user, Locale locale) throws UserNotVerifiedException {
+        //is user verified?
+        if (user.getEmailVerified()) {
+            return jwtService.generateJWT(user);
+        } else {
+            List<VerificationToken> verificationTokens = user.getVerificationTokens();
+            boolean resend = verificationTokens.size() == 0 ||
+                    verificationTokens.get(0).getCreatedTimeStamp().before(new Timestamp(System.currentTimeMillis() - (60 * 60 * 1000)));
+            if (resend){
+                //the token and its email are written together or not at all
+                transactionTemplate.executeWithoutResult(status -> {
+                    VerificationToken verificationToken = createVerificationToken(user);
+                    verificationTokenRepository.save(verificationToken);
+                    emailQueue.queue(emailService.verificationEmail(verificationToken, locale));
+                });
+            }
+
+            throw new UserNotVerifiedException(resend);
+        }
+    }
+
     //because we are changing data not querying
     @Transactional
     public boolean verifyUser(String token){
@@ -174,13 +296,14 @@ public class UserServiceImpl implements UserService {
         return false;
     }
 
-    public void forgotPassword(String email) throws EmailNotFoundException, EmailFailureException {
+    @Transactional
+    public void forgotPassword(String email) throws EmailNotFoundException {
         Optional<User> optionalUser = userRepository.findByEmailIgnoreCaseAndDeletedFalse(email);
 
         if (optionalUser.isPresent()){
             User user = optionalUser.get();
             String token = jwtService.generatePasswordResetJwt(user);
-            emailService.sendPasswordResetEmail(user, token);
+            emailQueue.queue(emailService.passwordResetEmail(user, token));
 
         } else {
             throw new EmailNotFoundException();
@@ -197,6 +320,7 @@ public class UserServiceImpl implements UserService {
 
             user.setPassword(encryptionService.encryptPassword(body.getPassword()));
             userRepository.save(user);
+            eventPublisher.publishEvent(new UserChangedEvent(user.getId()));
         }
     }
 
@@ -0,0 +1,34 @@
+package com.mftplus.ecommerce.service.outbox;
+
+import com.mftplus.ecommerce.service.EmailService;
+import com.mftplus.ecommerce.service.event.EmailQueuedEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+
+//the emails of EmailQueue, the due ones of a poll are sent together. a message that was not sent is retried alone.
+@Component
+public class EmailDeliveryHandler implements OutboxHandler<EmailQueuedEvent> {
+
+    private final EmailService emailService;
+
+    public EmailDeliveryHandler(EmailService emailService) {
+        this.emailService = emailService;
+    }
+
+    @Override
+    public String name() {
+        return "email";
+    }
+
+    @Override
+    public Class<EmailQueuedEvent> eventType() {
+        return EmailQueuedEvent.class;
+    }
+
+    @Override
+    public Set<Long> handle(Map<Long, EmailQueuedEvent> events) {
+        return emailService.send(events);
+    }
+}
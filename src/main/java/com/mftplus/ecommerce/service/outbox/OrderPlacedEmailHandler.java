@@ -0,0 +1,38 @@
+package com.mftplus.ecommerce.service.outbox;
+
+import com.mftplus.ecommerce.service.EmailService;
+import com.mftplus.ecommerce.service.event.EmailQueuedEvent;
+import com.mftplus.ecommerce.service.event.OrderPlacedEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+//order confirmation email, one message per order, sent in batches. a failed send is retried alone
+@Component
+public class OrderPlacedEmailHandler implements OutboxHandler<OrderPlacedEvent> {
+
+    private final EmailService emailService;
+
+    public OrderPlacedEmailHandler(EmailService emailService) {
+        this.emailService = emailService;
+    }
+
+    @Override
+    public String name() {
+        return "order-placed-email";
+    }
+
+    @Override
+    public Class<OrderPlacedEvent> eventType() {
+        return OrderPlacedEvent.class;
+    }
+
+    @Override
+    public Set<Long> handle(Map<Long, OrderPlacedEvent> events) {
+        Map<Long, EmailQueuedEvent> emails = new LinkedHashMap<>();
+        events.forEach((id, event) -> emails.put(id, emailService.orderPlacedEmail(event.getEmail(), event.getOrderId(), event.getTotal())));
+        return emailService.send(emails);
+    }
+}
@@ -0,0 +1,41 @@
+package com.mftplus.ecommerce.service.outbox;
+
+import com.mftplus.ecommerce.api.dto.DataChange;
+import com.mftplus.ecommerce.api.dto.OrderSummary;
+import com.mftplus.ecommerce.service.event.OrderPlacedEvent;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+
+//the new order as an order history row on the websocket topic of its user
+@Component
+public class OrderPlacedNotificationHandler implements OutboxHandler<OrderPlacedEvent> {
+
+    private final SimpMessagingTemplate simpMessagingTemplate;
+
+    public OrderPlacedNotificationHandler(SimpMessagingTemplate simpMessagingTemplate) {
+        this.simpMessagingTemplate = simpMessagingTemplate;
+    }
+
+    @Override
+    public String name() {
+        return "order-placed-notification";
+    }
+
+    @Override
+    public Class<OrderPlacedEvent> eventType() {
+        return OrderPlacedEvent.class;
+    }
+
+    @Override
+    public Set<Long> handle(Map<Long, OrderPlacedEvent> events) {
+        for (OrderPlacedEvent event : events.values()) {
+            simpMessagingTemplate.convertAndSend("/topic/user/" + event.getUserId() + "/order",
+                    new DataChange<>(DataChange.ChangeType.INSERT, new OrderSummary(event.getOrderId(),
+                            event.getCreatedTimeStamp(), event.getLineCount(), event.getTotal())));
+        }
+        return Set.of();
+    }
+}
@@ -0,0 +1,35 @@
+package com.mftplus.ecommerce.service.outbox;
+
+import com.mftplus.ecommerce.service.event.OrderPlacedEvent;
+import com.mftplus.ecommerce.service.search.SuggestionIndex;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+
+//ordered quantities into the suggestion ranking, the whole batch in one pass over the trie
+@Component
+public class OrderPlacedPopularityHandler implements OutboxHandler<OrderPlacedEvent> {
+
+    private final SuggestionIndex suggestionIndex;
+
+    public OrderPlacedPopularityHandler(SuggestionIndex suggestionIndex) {
+        this.suggestionIndex = suggestionIndex;
+    }
+
+    @Override
+    public String name() {
+        return "order-placed-popularity";
+    }
+
+    @Override
+    public Class<OrderPlacedEvent> eventType() {
+        return OrderPlacedEvent.class;
+    }
+
+    @Override
+    public Set<Long> handle(Map<Long, OrderPlacedEvent> events) {
+        suggestionIndex.onOrdersPlaced(events.values());
+        return Set.of();
+    }
+}
@@ -0,0 +1,61 @@
+package com.mftplus.ecommerce.service.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mftplus.ecommerce.model.entity.OutboxEvent;
+import com.mftplus.ecommerce.repository.OutboxEventRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+//write side of the outbox, the rows are inserted (in one batch) with the caller's transaction
+@Component
+public class Outbox {
+
+    private final OutboxEventRepository outboxEventRepository;
+
+    //looked up on the first publish : the handlers reach beans (websocket, users) that publish themselves
+    private final ObjectProvider<OutboxHandler<?>> handlerProvider;
+
+    private volatile List<OutboxHandler<?>> handlers;
+
+    private final ObjectMapper objectMapper;
+
+    public Outbox(OutboxEventRepository outboxEventRepository, ObjectProvider<OutboxHandler<?>> handlerProvider, ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.handlerProvider = handlerProvider;
+        this.objectMapper = objectMapper;
+    }
+
+    //one row per handler of the event, so a failing handler is retried alone
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void publish(Object event) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<OutboxEvent> rows = new ArrayList<>();
+        if (handlers == null) {
+            handlers = handlerProvider.orderedStream().toList();
+        }
+        for (OutboxHandler<?> handler : handlers) {
+            if (handler.eventType().isInstance(event)) {
+                rows.add(OutboxEvent.builder()
+                        .handler(handler.name())
+                        .payload(payload)
+                        .createdTimeStamp(now)
+                        .nextAttemptTimeStamp(now)
+                        .build());
+            }
+        }
+        outboxEventRepository.saveAll(rows);
+    }
+}
@@ -0,0 +1,113 @@
+package com.mftplus.ecommerce.service.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mftplus.ecommerce.model.entity.OutboxEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//read side of the outbox : polls the due rows in batches and hands them to their handlers, off the request threads
+@Component
+public class OutboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    private final OutboxStore store;
+
+    private final Map<String, OutboxHandler<?>> handlers = new HashMap<>();
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${outbox.enabled}")
+    private boolean enabled;
+
+    @Value("${outbox.batch-size}")
+    private int batchSize;
+
+    public OutboxDispatcher(OutboxStore store, List<OutboxHandler<?>> handlers, ObjectMapper objectMapper) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        for (OutboxHandler<?> handler : handlers) {
+            if (this.handlers.put(handler.name(), handler) != null) {
+                throw new IllegalStateException("Two outbox handlers named : " + handler.name());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.poll-interval-ms}")
+    public void poll() {
+        if (enabled) {
+            drain();
+        }
+    }
+
+    //batch after batch until one comes back short, returns the number of handled events
+    public synchronized int drain() {
+        int handled = 0;
+        List<OutboxEvent> batch;
+        do {
+            batch = store.claim(batchSize);
+            if (!batch.isEmpty()) {
+                handled += dispatch(batch);
+            }
+        } while (batch.size() == batchSize);
+        return handled;
+    }
+
+    private int dispatch(List<OutboxEvent> batch) {
+        Map<String, List<OutboxEvent>> byHandler = new LinkedHashMap<>();
+        for (OutboxEvent event : batch) {
+            byHandler.computeIfAbsent(event.getHandler(), name -> new ArrayList<>()).add(event);
+        }
+
+        List<Long> handled = new ArrayList<>();
+        List<Long> retried = new ArrayList<>();
+        byHandler.forEach((name, events) -> {
+            OutboxHandler<?> handler = handlers.get(name);
+            if (handler == null) {
+                logger.warn("No outbox handler named {}, {} events left", name, events.size());
+                events.forEach(event -> retried.add(event.getId()));
+                return;
+            }
+            dispatch(handler, events, handled, retried);
+        });
+        store.complete(handled, retried);
+        return handled.size();
+    }
+
+    private <T> void dispatch(OutboxHandler<T> handler, List<OutboxEvent> rows, List<Long> handled, List<Long> retried) {
+        Map<Long, T> events = new LinkedHashMap<>();
+        for (OutboxEvent row : rows) {
+            try {
+                events.put(row.getId(), objectMapper.readValue(row.getPayload(), handler.eventType()));
+            } catch (JsonProcessingException e) {
+                logger.warn("Unreadable outbox event {} for {}", row.getId(), handler.name(), e);
+                retried.add(row.getId());
+            }
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+
+        Set<Long> failed;
+        try {
+            failed = handler.handle(events);
+        } catch (RuntimeException e) {
+            logger.warn("Outbox handler {} failed on {} events", handler.name(), events.size(), e);
+            failed = events.keySet();
+        }
+        for (Long id : events.keySet()) {
+            (failed.contains(id) ? retried : handled).add(id);
+        }
+    }
+}
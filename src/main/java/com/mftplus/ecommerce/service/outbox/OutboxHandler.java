@@ -0,0 +1,17 @@
+package com.mftplus.ecommerce.service.outbox;
+
+import java.util.Map;
+import java.util.Set;
+
+//consumer of one event type, gets the due events of a poll together
+public interface OutboxHandler<T> {
+
+    //written on the outbox rows, not to be changed while rows for it are waiting
+    String name();
+
+    Class<T> eventType();
+
+    //outbox row id -> event, returns the ids to retry. throwing retries the whole batch.
+    //an event may be handled more than once (a crash before the row is deleted), handlers should tolerate it.
+    Set<Long> handle(Map<Long, T> events);
+}
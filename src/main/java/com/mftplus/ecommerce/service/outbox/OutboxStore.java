@@ -0,0 +1,70 @@
+package com.mftplus.ecommerce.service.outbox;
+
+import com.mftplus.ecommerce.model.entity.OutboxEvent;
+import com.mftplus.ecommerce.repository.OutboxEventRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+//db side of the dispatcher, each call is a short transaction : no lock is held while the handlers run
+@Component
+public class OutboxStore {
+
+    private final OutboxEventRepository outboxEventRepository;
+
+    @Value("${outbox.lease-seconds}")
+    private long leaseSeconds;
+
+    @Value("${outbox.max-attempts}")
+    private int maxAttempts;
+
+    @Value("${outbox.retry-base-delay-ms}")
+    private long retryBaseDelay;
+
+    @Value("${outbox.retry-max-delay-ms}")
+    private long retryMaxDelay;
+
+    public OutboxStore(OutboxEventRepository outboxEventRepository) {
+        this.outboxEventRepository = outboxEventRepository;
+    }
+
+    //the due rows are leased : moved out of reach of the other dispatchers until the lease is over,
+    //so a dispatcher dying in the middle of a batch only delays it
+    @Transactional
+    public List<OutboxEvent> claim(int limit) {
+        long now = System.currentTimeMillis();
+        List<OutboxEvent> events = outboxEventRepository.findDue(new Timestamp(now), PageRequest.of(0, limit));
+        Timestamp leasedUntil = new Timestamp(now + leaseSeconds * 1000);
+        for (OutboxEvent event : events) {
+            event.setNextAttemptTimeStamp(leasedUntil);
+        }
+        return events;
+    }
+
+    //the handled rows are deleted, the others wait base delay * 2^(attempts - 1) before the next attempt
+    @Transactional
+    public void complete(Collection<Long> handled, Collection<Long> retried) {
+        if (!handled.isEmpty()) {
+            outboxEventRepository.deleteAllByIdInBatch(handled);
+        }
+        if (retried.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (OutboxEvent event : outboxEventRepository.findAllById(retried)) {
+            int attempts = event.getAttempts() + 1;
+            event.setAttempts(attempts);
+            if (attempts >= maxAttempts) {
+                event.setFailed(true);
+            } else {
+                long delay = retryBaseDelay << Math.min(attempts - 1, 30);
+                event.setNextAttemptTimeStamp(new Timestamp(now + Math.min(delay, retryMaxDelay)));
+            }
+        }
+    }
+}
@@ -0,0 +1,531 @@
+package com.mftplus.ecommerce.service.search;
+
+import com.mftplus.ecommerce.api.dto.FacetCount;
+import com.mftplus.ecommerce.api.dto.PriceBucket;
+import com.mftplus.ecommerce.api.dto.ProductFacets;
+import com.mftplus.ecommerce.api.dto.SearchRequest;
+import com.mftplus.ecommerce.model.entity.Brand;
+import com.mftplus.ecommerce.model.entity.Category;
+import com.mftplus.ecommerce.repository.BrandRepository;
+import com.mftplus.ecommerce.repository.CategoryRepository;
+import com.mftplus.ecommerce.repository.InventoryRepository;
+import com.mftplus.ecommerce.repository.ProductRepository;
+import com.mftplus.ecommerce.service.event.BrandChangedEvent;
+import com.mftplus.ecommerce.service.event.CategoryChangedEvent;
+import com.mftplus.ecommerce.service.event.InventoryChangedEvent;
+import com.mftplus.ecommerce.service.event.ProductChangedEvent;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//optional in-memory filter engine (product.search.filter-index.enabled).
+//category, brand, color and on sale memberships are compressed bitmaps of product ids and prices a sorted
+//array, so a search request is answered with bitmap and/or before the db is asked for the page.
+//the name filter is not handled here, it stays with the text index and the db.
+@Component
+public class CatalogFilterIndex {
+
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    private final ProductRepository productRepository;
+
+    private final InventoryRepository inventoryRepository;
+
+    private final BrandRepository brandRepository;
+
+    private final CategoryRepository categoryRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Value("${product.search.filter-index.enabled}")
+    private boolean enabled;
+
+    //swapped by the rebuild, read without the lock by refreshPrices
+    private volatile Catalog catalog = new Catalog();
+
+    //changes committed while a rebuild is reading the db, replayed on the rebuilt catalog
+    private List<Object> pendingChanges;
+
+    private volatile boolean ready;
+
+    public CatalogFilterIndex(ProductRepository productRepository, InventoryRepository inventoryRepository,
+                              BrandRepository brandRepository, CategoryRepository categoryRepository) {
+        this.productRepository = productRepository;
+        this.inventoryRepository = inventoryRepository;
+        this.brandRepository = brandRepository;
+        this.categoryRepository = categoryRepository;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    //turned off, the index is dropped until it is turned on and rebuilt
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            ready = false;
+        }
+    }
+
+    //null when the index is disabled or not built yet. candidates are the text index ids, null for every product
+    public Roaring64Bitmap filter(SearchRequest request, long[] candidates) {
+        if (!ready) {
+            return null;
+        }
+        refreshPrices();
+        Roaring64Bitmap candidateBitmap = bitmapOf(candidates);
+        lock.readLock().lock();
+        try {
+            return catalog.filter(request, candidateBitmap);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //same counts as ProductSearchRepository.findFacets, from the bitmaps
+    public ProductFacets facets(SearchRequest request, long[] candidates, int[] priceBounds) {
+        if (!ready) {
+            return null;
+        }
+        refreshPrices();
+        Roaring64Bitmap candidateBitmap = bitmapOf(candidates);
+        lock.readLock().lock();
+        try {
+            return catalog.facets(request, candidateBitmap, priceBounds);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Roaring64Bitmap bitmapOf(long[] ids) {
+        if (ids == null) {
+            return null;
+        }
+        Roaring64Bitmap bitmap = new Roaring64Bitmap();
+        bitmap.add(ids);
+        return bitmap;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        refresh(event.getProductId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onInventoryChanged(InventoryChangedEvent event) {
+        refresh(event.getProductId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBrandChanged(BrandChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (pendingChanges != null) {
+                pendingChanges.add(event);
+            }
+            catalog.brands.rename(event.getBrandId(), event.isDeleted() ? null : event.getName());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (pendingChanges != null) {
+                pendingChanges.add(event);
+            }
+            catalog.categories.rename(event.getCategoryId(), event.isDeleted() ? null : event.getName());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //reads the catalog page by page (keyset on product id) into a new catalog, then swaps it in
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            pendingChanges = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Catalog newCatalog = new Catalog();
+        for (Brand brand : brandRepository.findAllByDeletedFalse()) {
+            newCatalog.brands.rename(brand.getId(), brand.getName());
+        }
+        for (Category category : categoryRepository.findAllByDeletedFalse()) {
+            newCatalog.categories.rename(category.getId(), category.getName());
+        }
+
+        long lastId = 0;
+        List<ProductMembership> page;
+        do {
+            page = productRepository.findBrandMembershipsByIdGreaterThan(lastId, PageRequest.of(0, REBUILD_PAGE_SIZE));
+            if (!page.isEmpty()) {
+                lastId = page.get(page.size() - 1).getProductId();
+                load(page).forEach(newCatalog::add);
+            }
+        } while (page.size() == REBUILD_PAGE_SIZE);
+
+        //the products changed meanwhile are read outside the lock, in rounds until no new change came in. a row
+        //read here is never older than the change that queued it, a product queued twice keeps its last read.
+        Map<Long, ProductEntry> changedProducts = new HashMap<>();
+        int replayed = 0;
+        while (true) {
+            Set<Long> productIds = new LinkedHashSet<>();
+            lock.writeLock().lock();
+            try {
+                for (Object change : pendingChanges.subList(replayed, pendingChanges.size())) {
+                    if (change instanceof Long productId) {
+                        productIds.add(productId);
+                    }
+                }
+                replayed = pendingChanges.size();
+                if (productIds.isEmpty()) {
+                    swap(newCatalog, changedProducts);
+                    return;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            Map<Long, ProductEntry> entries = load(productRepository.findBrandMembershipsByIdIn(productIds));
+            for (Long productId : productIds) {
+                changedProducts.put(productId, entries.get(productId));
+            }
+        }
+    }
+
+    //under the write lock, with no change left unread
+    private void swap(Catalog newCatalog, Map<Long, ProductEntry> changedProducts) {
+        catalog = newCatalog;
+        List<Object> changes = pendingChanges;
+        pendingChanges = null;
+        ready = true;
+        for (Object change : changes) {
+            if (change instanceof BrandChangedEvent event) {
+                onBrandChanged(event);
+            } else if (change instanceof CategoryChangedEvent event) {
+                onCategoryChanged(event);
+            }
+        }
+        changedProducts.forEach((productId, entry) -> {
+            catalog.remove(productId);
+            if (entry != null) {
+                catalog.add(productId, entry);
+            }
+        });
+    }
+
+    //reloads the memberships of one product, deleted or missing products are removed
+    private void refresh(Long productId) {
+        if (!enabled) {
+            return;
+        }
+        ProductEntry entry = load(productRepository.findBrandMembershipsByIdIn(List.of(productId))).get(productId);
+
+        lock.writeLock().lock();
+        try {
+            if (pendingChanges != null) {
+                pendingChanges.add(productId);
+            }
+            catalog.remove(productId);
+            if (entry != null) {
+                catalog.add(productId, entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Map<Long, ProductEntry> load(List<ProductMembership> brands) {
+        Map<Long, ProductEntry> entries = new HashMap<>();
+        for (ProductMembership membership : brands) {
+            entries.put(membership.getProductId(), new ProductEntry(membership.getMemberId()));
+        }
+        if (entries.isEmpty()) {
+            return entries;
+        }
+        for (ProductMembership membership : productRepository.findCategoryMembershipsByIdIn(entries.keySet())) {
+            entries.get(membership.getProductId()).categoryIds.add(membership.getMemberId());
+        }
+        for (InventoryRow row : inventoryRepository.findFilterRowsByProductIdIn(entries.keySet())) {
+            entries.get(row.getProductId()).inventories.add(row);
+        }
+        return entries;
+    }
+
+    //price arrays are rebuilt lazily, once for a burst of inventory writes
+    private void refreshPrices() {
+        if (!catalog.pricesDirty) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            catalog.sortPrices();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static final class ProductEntry {
+
+        private final Long brandId;
+
+        private final List<Long> categoryIds = new ArrayList<>();
+
+        private final List<InventoryRow> inventories = new ArrayList<>();
+
+        private ProductEntry(Long brandId) {
+            this.brandId = brandId;
+        }
+    }
+
+    //id <-> name of the brands or categories, the request filters by name. names are not unique in the db,
+    //so a name is every id that has it
+    private static final class Names {
+
+        private final Map<Long, String> byId = new HashMap<>();
+
+        private final Map<String, Set<Long>> byName = new HashMap<>();
+
+        private void rename(Long id, String name) {
+            String old = byId.remove(id);
+            if (old != null) {
+                Set<Long> ids = byName.get(old);
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    byName.remove(old);
+                }
+            }
+            if (name != null) {
+                byId.put(id, name);
+                byName.computeIfAbsent(name, key -> new HashSet<>()).add(id);
+            }
+        }
+
+        private Set<Long> ids(String name) {
+            return byName.getOrDefault(name, Set.of());
+        }
+    }
+
+    private static final class Catalog {
+
+        private static final Roaring64Bitmap EMPTY = new Roaring64Bitmap();
+
+        private final Roaring64Bitmap all = new Roaring64Bitmap();
+
+        private final Map<Long, Roaring64Bitmap> byBrand = new HashMap<>();
+
+        private final Map<Long, Roaring64Bitmap> byCategory = new HashMap<>();
+
+        private final Map<Long, Roaring64Bitmap> byColor = new HashMap<>();
+
+        private final Roaring64Bitmap onSale = new Roaring64Bitmap();
+
+        private final Names brands = new Names();
+
+        private final Names categories = new Names();
+
+        private final Map<Long, ProductEntry> products = new HashMap<>();
+
+        //every inventory price in ascending order, with the product of each price at the same index
+        private int[] prices = new int[0];
+
+        private long[] priceProducts = new long[0];
+
+        private volatile boolean pricesDirty;
+
+        private void add(Long productId, ProductEntry entry) {
+            products.put(productId, entry);
+            all.addLong(productId);
+            if (entry.brandId != null) {
+                byBrand.computeIfAbsent(entry.brandId, id -> new Roaring64Bitmap()).addLong(productId);
+            }
+            for (Long categoryId : entry.categoryIds) {
+                byCategory.computeIfAbsent(categoryId, id -> new Roaring64Bitmap()).addLong(productId);
+            }
+            for (InventoryRow inventory : entry.inventories) {
+                if (inventory.getColorId() != null) {
+                    byColor.computeIfAbsent(inventory.getColorId(), id -> new Roaring64Bitmap()).addLong(productId);
+                }
+                if (inventory.getOffPercent() != null && inventory.getOffPercent() > 0) {
+                    onSale.addLong(productId);
+                }
+            }
+            pricesDirty = true;
+        }
+
+        private void remove(Long productId) {
+            ProductEntry entry = products.remove(productId);
+            if (entry == null) {
+                return;
+            }
+            all.removeLong(productId);
+            if (entry.brandId != null) {
+                byBrand.get(entry.brandId).removeLong(productId);
+            }
+            for (Long categoryId : entry.categoryIds) {
+                byCategory.get(categoryId).removeLong(productId);
+            }
+            for (InventoryRow inventory : entry.inventories) {
+                if (inventory.getColorId() != null) {
+                    byColor.get(inventory.getColorId()).removeLong(productId);
+                }
+            }
+            onSale.removeLong(productId);
+            pricesDirty = true;
+        }
+
+        private void sortPrices() {
+            if (!pricesDirty) {
+                return;
+            }
+            List<long[]> rows = new ArrayList<>();
+            products.forEach((productId, entry) -> {
+                for (InventoryRow inventory : entry.inventories) {
+                    if (inventory.getPrice() != null) {
+                        rows.add(new long[]{inventory.getPrice(), productId});
+                    }
+                }
+            });
+            rows.sort(Comparator.comparingLong(row -> row[0]));
+
+            int[] newPrices = new int[rows.size()];
+            long[] newPriceProducts = new long[rows.size()];
+            for (int i = 0; i < rows.size(); i++) {
+                newPrices[i] = (int) rows.get(i)[0];
+                newPriceProducts[i] = rows.get(i)[1];
+            }
+            prices = newPrices;
+            priceProducts = newPriceProducts;
+            pricesDirty = false;
+        }
+
+        private Roaring64Bitmap filter(SearchRequest request, Roaring64Bitmap candidates) {
+            Roaring64Bitmap result = all.clone();
+
+            List<String> categoryNames = request.getCategoryNames();
+            if (categoryNames != null) {
+                for (String categoryName : categoryNames) {
+                    result.and(member(byCategory, categories.ids(categoryName)));
+                }
+            }
+            if (request.getBrandName() != null) {
+                result.and(member(byBrand, brands.ids(request.getBrandName())));
+            }
+            if (request.getColorId() != null) {
+                result.and(member(byColor, Set.of(request.getColorId())));
+            }
+            if (request.getMinPrice() != null && request.getMaxPrice() != null) {
+                result.and(priceRange(request.getMinPrice(), request.getMaxPrice()));
+            }
+            if (request.isEnableOff()) {
+                result.and(onSale);
+            }
+            if (candidates != null) {
+                result.and(candidates);
+            }
+            return result;
+        }
+
+        private ProductFacets facets(SearchRequest request, Roaring64Bitmap candidates, int[] priceBounds) {
+            ProductFacets facets = new ProductFacets();
+
+            SearchRequest withoutOff = request.copyFilters();
+            withoutOff.setEnableOff(false);
+            Roaring64Bitmap withoutOffResult = filter(withoutOff, candidates);
+            facets.setOnSale(Roaring64Bitmap.andCardinality(withoutOffResult, onSale));
+            facets.setTotal(request.isEnableOff() ? facets.getOnSale() : withoutOffResult.getLongCardinality());
+
+            SearchRequest withoutBrand = request.copyFilters();
+            withoutBrand.setBrandName(null);
+            facets.setBrands(count(filter(withoutBrand, candidates), byBrand, brands));
+
+            facets.setCategories(count(filter(request, candidates), byCategory, categories));
+
+            SearchRequest withoutPrice = request.copyFilters();
+            withoutPrice.setMinPrice(null);
+            withoutPrice.setMaxPrice(null);
+            Roaring64Bitmap withoutPriceResult = filter(withoutPrice, candidates);
+            for (int i = 0; i <= priceBounds.length; i++) {
+                int from = i == 0 ? 0 : priceBounds[i - 1];
+                Integer to = i < priceBounds.length ? priceBounds[i] : null;
+                Roaring64Bitmap bucket = priceRange(from, to == null ? Integer.MAX_VALUE : to - 1);
+                facets.getPrices().add(new PriceBucket(from, to,
+                        Roaring64Bitmap.andCardinality(withoutPriceResult, bucket)));
+            }
+            return facets;
+        }
+
+        //products with at least one inventory priced in [min, max]
+        private Roaring64Bitmap priceRange(int min, int max) {
+            int low = 0;
+            int high = prices.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (prices[middle] < min) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            Roaring64Bitmap result = new Roaring64Bitmap();
+            for (int i = low; i < prices.length && prices[i] <= max; i++) {
+                result.addLong(priceProducts[i]);
+            }
+            return result;
+        }
+
+        //one count per name, like the group by of the db
+        private static List<FacetCount> count(Roaring64Bitmap result, Map<Long, Roaring64Bitmap> members, Names names) {
+            Map<String, Long> byName = new HashMap<>();
+            members.forEach((id, bitmap) -> {
+                String name = names.byId.get(id);
+                long count = Roaring64Bitmap.andCardinality(result, bitmap);
+                if (name != null && count > 0) {
+                    byName.merge(name, count, Long::sum);
+                }
+            });
+            List<FacetCount> counts = new ArrayList<>();
+            byName.forEach((name, count) -> counts.add(new FacetCount(name, count)));
+            counts.sort(Comparator.comparing(FacetCount::getCount).reversed().thenComparing(FacetCount::getValue));
+            return counts;
+        }
+
+        //products of any of the ids, unknown names match nothing
+        private static Roaring64Bitmap member(Map<Long, Roaring64Bitmap> members, Set<Long> ids) {
+            if (ids.size() == 1) {
+                Roaring64Bitmap bitmap = members.get(ids.iterator().next());
+                return bitmap == null ? EMPTY : bitmap;
+            }
+            Roaring64Bitmap union = new Roaring64Bitmap();
+            for (Long id : ids) {
+                Roaring64Bitmap bitmap = members.get(id);
+                if (bitmap != null) {
+                    union.or(bitmap);
+                }
+            }
+            return union;
+        }
+    }
+}
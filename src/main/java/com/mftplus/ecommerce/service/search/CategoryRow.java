@@ -0,0 +1,25 @@
+package com.mftplus.ecommerce.service.search;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+//a category without its associations, read for the category tree snapshot.
+//equal rows give an equal tree, a reload that finds the same rows keeps the snapshot and its version.
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class CategoryRow {
+
+    private Long id;
+
+    private String name;
+
+    //null for the roots
+    private Long parentId;
+
+    private boolean deleted;
+
+    //active products in the category or under it
+    private Long productCount;
+}
@@ -0,0 +1,260 @@
+package com.mftplus.ecommerce.service.search;
+
+import com.mftplus.ecommerce.api.dto.CategoryNode;
+import com.mftplus.ecommerce.repository.CategoryRepository;
+import com.mftplus.ecommerce.service.event.CategoryChangedEvent;
+import com.mftplus.ecommerce.service.event.ProductChangedEvent;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+//immutable snapshot of the whole category tree with the ancestor path, the descendants and the product count
+//of every category precomputed. readers take no lock, a category write reloads the snapshot (one query) and
+//swaps it in under a new version. product writes only move the counts : they mark the snapshot stale and one
+//reload every count-refresh-interval-ms covers all of them. a reload that reads the same rows keeps the
+//snapshot, so the version (the ETag of the menus) only changes with the tree or its counts.
+@Component
+public class CategoryTree {
+
+    private final CategoryRepository categoryRepository;
+
+    //versions restart with the application, the start time keeps them apart
+    private final String versionPrefix = Long.toString(System.currentTimeMillis(), 36) + "-";
+
+    private final AtomicLong versions = new AtomicLong();
+
+    private volatile Snapshot snapshot;
+
+    private final AtomicBoolean countsStale = new AtomicBoolean();
+
+    //rebuilds are numbered before their query, the rows of an older one never replace those of a newer one
+    private final AtomicLong loads = new AtomicLong();
+
+    //guarded by this
+    private long appliedLoad;
+
+    public CategoryTree(CategoryRepository categoryRepository) {
+        this.categoryRepository = categoryRepository;
+    }
+
+    public Snapshot current() {
+        Snapshot current = snapshot;
+        return current != null ? current : rebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        rebuild();
+    }
+
+    //product counts
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        countsStale.set(true);
+    }
+
+    @Scheduled(fixedDelayString = "${category.tree.count-refresh-interval-ms}")
+    public void refreshCounts() {
+        if (countsStale.getAndSet(false)) {
+            rebuild();
+        }
+    }
+
+    //after the closure table is checked by CategoryServiceImpl, the counts are read from it
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    //the query runs outside the lock, only the compare and the swap are under it
+    public Snapshot rebuild() {
+        long load = loads.incrementAndGet();
+        List<CategoryRow> rows = categoryRepository.findRows();
+        Set<CategoryRow> rowSet = new HashSet<>(rows);
+        synchronized (this) {
+            if (load < appliedLoad) {
+                return snapshot;
+            }
+            appliedLoad = load;
+            Snapshot current = snapshot;
+            if (current == null || !current.rows.equals(rowSet)) {
+                snapshot = new Snapshot(versionPrefix + versions.incrementAndGet(), rows);
+            }
+            return snapshot;
+        }
+    }
+
+    public static class Snapshot {
+
+        private static final Comparator<Node> BY_NAME = Comparator.comparing(Node::getName);
+
+        private final String version;
+
+        private final Set<CategoryRow> rows;
+
+        private final Map<Long, Node> byId = new HashMap<>();
+
+        private final Map<String, Node> byName = new HashMap<>();
+
+        private final List<Node> roots = new ArrayList<>();
+
+        //root id (0 for all the roots) + depth -> browse tree, cut once per snapshot
+        private final Map<String, List<CategoryNode>> menus = new ConcurrentHashMap<>();
+
+        Snapshot(String version, List<CategoryRow> rows) {
+            this.version = version;
+            this.rows = new HashSet<>(rows);
+            for (CategoryRow row : rows) {
+                Node node = new Node(row.getId(), row.getName(), row.getParentId(), row.isDeleted(),
+                        row.getProductCount() == null ? 0 : row.getProductCount());
+                byId.put(node.id, node);
+                byName.put(node.name, node);
+            }
+            Map<Long, List<Node>> children = new HashMap<>();
+            for (Node node : byId.values()) {
+                if (node.parentId != null && byId.containsKey(node.parentId)) {
+                    children.computeIfAbsent(node.parentId, id -> new ArrayList<>()).add(node);
+                } else {
+                    roots.add(node);
+                }
+            }
+            children.values().forEach(list -> list.sort(BY_NAME));
+            roots.sort(BY_NAME);
+            for (Node root : roots) {
+                fill(root, List.of(), children);
+            }
+            for (Node node : byId.values()) {
+                if (node.path == null) {
+                    fill(node, List.of(), children);
+                }
+            }
+        }
+
+        //depth first from a root, a path never repeats a category so a broken (cyclic) parent chain stops here
+        private void fill(Node node, List<Node> parentPath, Map<Long, List<Node>> children) {
+            List<Node> path = new ArrayList<>(parentPath.size() + 1);
+            path.add(node);
+            path.addAll(parentPath);
+            node.path = Collections.unmodifiableList(path);
+
+            List<Long> descendantIds = new ArrayList<>();
+            List<Node> filled = new ArrayList<>();
+            descendantIds.add(node.id);
+            for (Node child : children.getOrDefault(node.id, List.of())) {
+                if (child.path == null) {
+                    fill(child, path, children);
+                    descendantIds.addAll(child.descendantIds);
+                    filled.add(child);
+                }
+            }
+            node.descendantIds = Collections.unmodifiableList(descendantIds);
+            node.children = Collections.unmodifiableList(filled);
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public Node findById(Long id) {
+            return byId.get(id);
+        }
+
+        public Node findByName(String name) {
+            return byName.get(name);
+        }
+
+        public int size() {
+            return byId.size();
+        }
+
+        public Collection<Node> nodes() {
+            return Collections.unmodifiableCollection(byId.values());
+        }
+
+        //active categories only, depth 0 is the category without its children.
+        //the lists are shared by every caller of the same snapshot and must not be modified.
+        public List<CategoryNode> menu(Node root, int depth) {
+            String key = (root == null ? 0L : root.id) + "/" + depth;
+            return menus.computeIfAbsent(key, ignored -> {
+                if (root != null) {
+                    return root.deleted ? List.of() : List.of(menuNode(root, depth));
+                }
+                return roots.stream().filter(node -> !node.deleted).map(node -> menuNode(node, depth)).toList();
+            });
+        }
+
+        private CategoryNode menuNode(Node node, int depth) {
+            List<Node> activeChildren = node.children.stream().filter(child -> !child.deleted).toList();
+            List<CategoryNode> children = depth == 0 ? List.of()
+                    : activeChildren.stream().map(child -> menuNode(child, depth - 1)).toList();
+            return new CategoryNode(node.id, node.name, node.productCount, activeChildren.isEmpty(), children);
+        }
+    }
+
+    public static class Node {
+
+        private final Long id;
+
+        private final String name;
+
+        private final Long parentId;
+
+        private final boolean deleted;
+
+        private final long productCount;
+
+        //the category first, then its parent up to the root
+        private List<Node> path;
+
+        //the category and everything under it
+        private List<Long> descendantIds;
+
+        private List<Node> children;
+
+        private Node(Long id, String name, Long parentId, boolean deleted, long productCount) {
+            this.id = id;
+            this.name = name;
+            this.parentId = parentId;
+            this.deleted = deleted;
+            this.productCount = productCount;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Long getParentId() {
+            return parentId;
+        }
+
+        public boolean isDeleted() {
+            return deleted;
+        }
+
+        public long getProductCount() {
+            return productCount;
+        }
+
+        public List<Node> getPath() {
+            return path;
+        }
+
+        public List<Long> getDescendantIds() {
+            return descendantIds;
+        }
+
+        public List<Node> getChildren() {
+            return children;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.mftplus.ecommerce.service.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//the filtered columns of an inventory, read for the filter index
+@Getter
+@AllArgsConstructor
+public class InventoryRow {
+
+    private Long productId;
+
+    private Long colorId;
+
+    private Integer price;
+
+    private Integer offPercent;
+}
@@ -0,0 +1,15 @@
+package com.mftplus.ecommerce.service.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//product -> brand or category row, read for the filter index
+@Getter
+@AllArgsConstructor
+public class ProductMembership {
+
+    private Long productId;
+
+    //null when the product has no brand
+    private Long memberId;
+}
@@ -0,0 +1,14 @@
+package com.mftplus.ecommerce.service.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//the indexed columns of a product, read without loading the entity
+@Getter
+@AllArgsConstructor
+public class ProductText {
+
+    private Long id;
+
+    private String name;
+}
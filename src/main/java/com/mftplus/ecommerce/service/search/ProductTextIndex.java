@@ -0,0 +1,180 @@
+package com.mftplus.ecommerce.service.search;
+
+import com.mftplus.ecommerce.repository.ProductRepository;
+import com.mftplus.ecommerce.service.event.ProductChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//in memory trigram index over the product names.
+//it only narrows the search down to candidate ids, the db still checks the like, so a gram
+//collision or a case mismatch can never return a wrong product.
+//the name filter has always matched the name only : the descriptions are not indexed, indexing them would
+//make the candidates a superset the like then throws away (and the index several times larger).
+@Component
+public class ProductTextIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    private final ProductRepository productRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    //above this, an IN list costs more than the scan it replaces
+    @Value("${product.search.text-index.max-candidates}")
+    private int maxCandidates;
+
+    //gram -> sorted product ids
+    private Map<Long, PostingList> postings = new HashMap<>();
+
+    //product id -> its grams, to unindex the old text on update
+    private Map<Long, long[]> documents = new HashMap<>();
+
+    //changes committed while a rebuild is reading the db, replayed on the rebuilt index
+    private List<ProductChangedEvent> pendingChanges;
+
+    private volatile boolean ready;
+
+    public ProductTextIndex(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    void setMaxCandidates(int maxCandidates) {
+        this.maxCandidates = maxCandidates;
+    }
+
+    //null when the index can not answer (not built yet, text shorter than a gram, too many candidates),
+    //the caller then falls back to the like scan
+    public long[] findCandidates(String text) {
+        if (!ready || text == null) {
+            return null;
+        }
+        long[] grams = grams(text);
+        if (grams.length == 0) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            PostingList[] lists = new PostingList[grams.length];
+            for (int i = 0; i < grams.length; i++) {
+                lists[i] = postings.get(grams[i]);
+                if (lists[i] == null) {
+                    return new long[0];
+                }
+            }
+            Arrays.sort(lists, Comparator.comparingInt(PostingList::size));
+            if (lists[0].size() > maxCandidates) {
+                return null;
+            }
+
+            //intersection driven by the smallest list
+            long[] candidates = new long[lists[0].size()];
+            int count = 0;
+            next:
+            for (int i = 0; i < lists[0].size(); i++) {
+                long id = lists[0].get(i);
+                for (int j = 1; j < lists.length; j++) {
+                    if (!lists[j].contains(id)) {
+                        continue next;
+                    }
+                }
+                candidates[count++] = id;
+            }
+            return Arrays.copyOf(candidates, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (pendingChanges != null) {
+                pendingChanges.add(event);
+            }
+            apply(postings, documents, event);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //reads the catalog page by page (keyset on id) into a new index, then swaps it in
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            pendingChanges = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Map<Long, PostingList> newPostings = new HashMap<>();
+        Map<Long, long[]> newDocuments = new HashMap<>();
+        long lastId = 0;
+        List<ProductText> page;
+        do {
+            page = productRepository.findTextsByIdGreaterThan(lastId, PageRequest.of(0, REBUILD_PAGE_SIZE));
+            for (ProductText text : page) {
+                add(newPostings, newDocuments, text.getId(),
+                        grams(text.getName()));
+                lastId = text.getId();
+            }
+        } while (page.size() == REBUILD_PAGE_SIZE);
+
+        lock.writeLock().lock();
+        try {
+            pendingChanges.forEach(event -> apply(newPostings, newDocuments, event));
+            pendingChanges = null;
+            postings = newPostings;
+            documents = newDocuments;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void apply(Map<Long, PostingList> postings, Map<Long, long[]> documents, ProductChangedEvent event) {
+        long[] oldGrams = documents.remove(event.getProductId());
+        if (oldGrams != null) {
+            for (long gram : oldGrams) {
+                PostingList list = postings.get(gram);
+                list.remove(event.getProductId());
+                if (list.size() == 0) {
+                    postings.remove(gram);
+                }
+            }
+        }
+        if (!event.isDeleted()) {
+            add(postings, documents, event.getProductId(),
+                    grams(event.getName()));
+        }
+    }
+
+    private static void add(Map<Long, PostingList> postings, Map<Long, long[]> documents, long id, long[] grams) {
+        for (long gram : grams) {
+            postings.computeIfAbsent(gram, key -> new PostingList()).add(id);
+        }
+        documents.put(id, grams);
+    }
+
+    //distinct grams of the lower cased text, three chars packed in a long.
+    static long[] grams(String value) {
+        String text = value == null ? "" : value.toLowerCase(Locale.ROOT);
+
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            grams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return grams.stream().mapToLong(Long::longValue).toArray();
+    }
+}
@@ -0,0 +1,340 @@
+package com.mftplus.ecommerce.service.search;
+
+import com.mftplus.ecommerce.api.dto.Suggestion;
+import com.mftplus.ecommerce.api.dto.SuggestionType;
+import com.mftplus.ecommerce.repository.BrandRepository;
+import com.mftplus.ecommerce.repository.CategoryRepository;
+import com.mftplus.ecommerce.repository.ProductRepository;
+import com.mftplus.ecommerce.service.event.BrandChangedEvent;
+import com.mftplus.ecommerce.service.event.CategoryChangedEvent;
+import com.mftplus.ecommerce.service.event.OrderPlacedEvent;
+import com.mftplus.ecommerce.service.event.ProductChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+
+//prefix trie over product, brand and category names, every word of a name is a prefix entry point.
+//each node keeps its best suggestions ready, so a lookup is a walk down the trie and returns
+//a shared immutable list. readers take no lock, writers copy on write under the monitor.
+@Component
+public class SuggestionIndex {
+
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    private static final Comparator<Suggestion> RANKING = Comparator
+            .comparingLong(Suggestion::getPopularity).reversed()
+            .thenComparingInt(suggestion -> suggestion.getText().length())
+            .thenComparing(Suggestion::getText);
+
+    private final ProductRepository productRepository;
+
+    private final BrandRepository brandRepository;
+
+    private final CategoryRepository categoryRepository;
+
+    @Value("${product.suggest.max-size}")
+    private int maxSize;
+
+    private volatile Node root = new Node('\0');
+
+    //type + id -> indexed suggestion, guarded by this
+    private Map<String, Suggestion> entries = new HashMap<>();
+
+    //changes committed while a rebuild is reading the db, guarded by this
+    private List<Object> pendingChanges;
+
+    //orders placed before it are in the popularity read by the last rebuild, guarded by this
+    private long rebuildStartedAt;
+
+    public SuggestionIndex(ProductRepository productRepository, BrandRepository brandRepository,
+                           CategoryRepository categoryRepository) {
+        this.productRepository = productRepository;
+        this.brandRepository = brandRepository;
+        this.categoryRepository = categoryRepository;
+    }
+
+    public List<Suggestion> suggest(String prefix, int limit) {
+        //lower cased the way the names are, a char by char lower case differs for some letters (the dotted capital I)
+        String lowerCase = prefix.toLowerCase(Locale.ROOT);
+        Node node = root;
+        for (int i = 0; i < lowerCase.length() && node != null; i++) {
+            node = node.child(lowerCase.charAt(i));
+        }
+        if (node == null || prefix.isEmpty()) {
+            return List.of();
+        }
+        List<Suggestion> top = node.top;
+        return top.size() <= limit ? top : top.subList(0, limit);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductChanged(ProductChangedEvent event) {
+        change(event, SuggestionType.PRODUCT, event.getProductId(), event.getName(), event.isDeleted());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onBrandChanged(BrandChangedEvent event) {
+        change(event, SuggestionType.BRAND, event.getBrandId(), event.getName(), event.isDeleted());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onCategoryChanged(CategoryChangedEvent event) {
+        change(event, SuggestionType.CATEGORY, event.getCategoryId(), event.getName(), event.isDeleted());
+    }
+
+    //from the outbox, a batch of orders at once. an order placed just before a rebuild started but committed
+    //after it read the quantities is missed until the next rebuild.
+    public synchronized void onOrdersPlaced(Collection<OrderPlacedEvent> events) {
+        if (pendingChanges != null) {
+            pendingChanges.add(new OrdersPlaced(events));
+            return;
+        }
+        Map<Long, Long> quantities = new HashMap<>();
+        for (OrderPlacedEvent event : events) {
+            if (event.getCreatedTimeStamp().getTime() >= rebuildStartedAt) {
+                event.getProductQuantities().forEach((productId, quantity) -> quantities.merge(productId, (long) quantity, Long::sum));
+            }
+        }
+        quantities.forEach((productId, quantity) -> {
+            String key = key(SuggestionType.PRODUCT, productId);
+            Suggestion old = entries.get(key);
+            if (old != null) {
+                Suggestion suggestion = new Suggestion(SuggestionType.PRODUCT, productId, old.getText(), old.getPopularity() + quantity);
+                unlink(old);
+                entries.put(key, suggestion);
+                link(suggestion);
+            }
+        });
+    }
+
+    //popularity comes from the order quantities, orders placed later are added by onOrdersPlaced
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        synchronized (this) {
+            pendingChanges = new ArrayList<>();
+            rebuildStartedAt = System.currentTimeMillis();
+        }
+
+        List<Suggestion> suggestions = new ArrayList<>();
+        long lastId = 0;
+        List<Suggestion> page;
+        do {
+            page = productRepository.findSuggestionsByIdGreaterThan(lastId, PageRequest.of(0, REBUILD_PAGE_SIZE));
+            suggestions.addAll(page);
+            lastId = page.isEmpty() ? lastId : page.get(page.size() - 1).getId();
+        } while (page.size() == REBUILD_PAGE_SIZE);
+        suggestions.addAll(brandRepository.findSuggestions());
+        suggestions.addAll(categoryRepository.findSuggestions());
+
+        Node newRoot = new Node('\0');
+        Map<String, Suggestion> newEntries = new HashMap<>();
+        for (Suggestion suggestion : suggestions) {
+            newEntries.put(key(suggestion.getType(), suggestion.getId()), suggestion);
+            for (String suffix : suffixes(suggestion.getText())) {
+                Node node = newRoot;
+                for (int i = 0; i < suffix.length(); i++) {
+                    node = node.childOrCreate(suffix.charAt(i));
+                }
+                node.terminals.add(suggestion);
+            }
+        }
+        rank(newRoot);
+
+        synchronized (this) {
+            root = newRoot;
+            entries = newEntries;
+            List<Object> changes = pendingChanges;
+            pendingChanges = null;
+            for (Object change : changes) {
+                if (change instanceof ProductChangedEvent event) {
+                    onProductChanged(event);
+                } else if (change instanceof BrandChangedEvent event) {
+                    onBrandChanged(event);
+                } else if (change instanceof CategoryChangedEvent event) {
+                    onCategoryChanged(event);
+                } else if (change instanceof OrdersPlaced ordersPlaced) {
+                    onOrdersPlaced(ordersPlaced.events());
+                }
+            }
+        }
+    }
+
+    private void change(Object event, SuggestionType type, Long id, String name, boolean deleted) {
+        if (pendingChanges != null) {
+            pendingChanges.add(event);
+        }
+        String key = key(type, id);
+        Suggestion old = entries.remove(key);
+        if (old != null) {
+            unlink(old);
+        }
+        if (!deleted && name != null) {
+            Suggestion suggestion = new Suggestion(type, id, name, old == null ? 0 : old.getPopularity());
+            entries.put(key, suggestion);
+            link(suggestion);
+        }
+    }
+
+    private void link(Suggestion suggestion) {
+        for (String suffix : suffixes(suggestion.getText())) {
+            Node[] path = new Node[suffix.length() + 1];
+            path[0] = root;
+            for (int i = 0; i < suffix.length(); i++) {
+                path[i + 1] = path[i].childOrCreate(suffix.charAt(i));
+            }
+            path[suffix.length()].terminals.add(suggestion);
+            rankPath(path);
+        }
+    }
+
+    private void unlink(Suggestion suggestion) {
+        for (String suffix : suffixes(suggestion.getText())) {
+            Node[] path = new Node[suffix.length() + 1];
+            path[0] = root;
+            for (int i = 0; i < suffix.length(); i++) {
+                path[i + 1] = path[i].child(suffix.charAt(i));
+            }
+            path[suffix.length()].terminals.remove(suggestion);
+            rankPath(path);
+        }
+    }
+
+    //bottom up, a node only needs the ranking of its children. empty nodes are pruned.
+    private void rankPath(Node[] path) {
+        for (int i = path.length - 1; i >= 0; i--) {
+            Node node = path[i];
+            if (i > 0 && node.terminals.isEmpty() && node.children.length == 0) {
+                path[i - 1].removeChild(node.key);
+                node.top = List.of();
+            } else {
+                node.top = topOf(node);
+            }
+        }
+    }
+
+    private void rank(Node node) {
+        for (Node child : node.children) {
+            rank(child);
+        }
+        node.top = topOf(node);
+    }
+
+    private List<Suggestion> topOf(Node node) {
+        List<Suggestion> candidates = new ArrayList<>(node.terminals);
+        for (Node child : node.children) {
+            candidates.addAll(child.top);
+        }
+        candidates.sort(RANKING);
+
+        List<Suggestion> top = new ArrayList<>(Math.min(maxSize, candidates.size()));
+        for (Suggestion candidate : candidates) {
+            if (top.size() == maxSize) {
+                break;
+            }
+            //a name with a repeated word reaches a node through two suffixes
+            if (!top.contains(candidate)) {
+                top.add(candidate);
+            }
+        }
+        return Collections.unmodifiableList(top);
+    }
+
+    //the lower cased name from the start of each of its words
+    private static List<String> suffixes(String text) {
+        String lowerCase = text.toLowerCase(Locale.ROOT);
+        List<String> suffixes = new ArrayList<>();
+        for (int i = 0; i < lowerCase.length(); i++) {
+            if (Character.isLetterOrDigit(lowerCase.charAt(i))
+                    && (i == 0 || !Character.isLetterOrDigit(lowerCase.charAt(i - 1)))) {
+                suffixes.add(lowerCase.substring(i));
+            }
+        }
+        return suffixes;
+    }
+
+    private static String key(SuggestionType type, Long id) {
+        return type.name() + id;
+    }
+
+    private record OrdersPlaced(Collection<OrderPlacedEvent> events) {
+    }
+
+    private static final class Node {
+
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        private final char key;
+
+        //sorted by key, replaced on write so readers never see a half updated array
+        private volatile Node[] children = NO_CHILDREN;
+
+        //suggestions whose name (or word suffix) ends on this node, writer only
+        private final List<Suggestion> terminals = new ArrayList<>();
+
+        private volatile List<Suggestion> top = List.of();
+
+        private Node(char key) {
+            this.key = key;
+        }
+
+        private Node child(char key) {
+            Node[] current = children;
+            int index = indexOf(current, key);
+            return index >= 0 ? current[index] : null;
+        }
+
+        private Node childOrCreate(char key) {
+            Node[] current = children;
+            int index = indexOf(current, key);
+            if (index >= 0) {
+                return current[index];
+            }
+            index = -index - 1;
+            Node child = new Node(key);
+            Node[] updated = new Node[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            updated[index] = child;
+            System.arraycopy(current, index, updated, index + 1, current.length - index);
+            children = updated;
+            return child;
+        }
+
+        private void removeChild(char key) {
+            Node[] current = children;
+            int index = indexOf(current, key);
+            if (index < 0) {
+                return;
+            }
+            Node[] updated = new Node[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+            children = updated;
+        }
+
+        private static int indexOf(Node[] nodes, char key) {
+            int low = 0;
+            int high = nodes.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                char middleKey = nodes[middle].key;
+                if (middleKey < key) {
+                    low = middle + 1;
+                } else if (middleKey > key) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+}
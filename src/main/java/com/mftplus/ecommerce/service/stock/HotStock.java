@@ -0,0 +1,473 @@
+package com.mftplus.ecommerce.service.stock;
+
+import com.mftplus.ecommerce.api.dto.HotStockStatus;
+import com.mftplus.ecommerce.exception.NoContentException;
+import com.mftplus.ecommerce.model.entity.Inventory;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+//hot-SKU mode for flash sales. the stock of the inventories switched here is held in memory, split over
+//striped counters : a reservation locks the stripe of its thread, checks the floor and appends the change to
+//the journal of that stripe before it is acknowledged. only when its own stripe is short it locks every stripe.
+//the net changes are written to inventory_tbl (one update per inventory) every flush interval, journal
+//segments not flushed yet are replayed on startup. the switch is per inventory, at runtime, and is not
+//kept over a restart. one application instance must own the writes of a hot inventory.
+@Component
+public class HotStock {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotStock.class);
+
+    private enum Result { DONE, SHORT, NOT_HOT }
+
+    private static final long SWITCH_RETRY_MILLIS = 20;
+
+    private final HotStockStore store;
+
+    @Value("${inventory.hot-stock.stripes}")
+    private int stripeCount;
+
+    @Value("${inventory.hot-stock.journal-dir}")
+    private String journalDir;
+
+    @Value("${inventory.hot-stock.journal-fsync}")
+    private boolean fsync;
+
+    //how long enable tries to lock the row before it gives up
+    @Value("${inventory.hot-stock.switch-timeout-ms}")
+    private long switchTimeoutMillis;
+
+    private Stripe[] stripes;
+
+    //product id + color id -> hot inventory
+    private final Map<String, Sku> skus = new ConcurrentHashMap<>();
+
+    //product id + color id -> switch lock. switching an inventory waits for the db reservations running on it
+    //and keeps new ones out, the other inventories are not fenced. one lock per inventory ever reserved.
+    private final Map<String, ReentrantReadWriteLock> switchLocks = new ConcurrentHashMap<>();
+
+    //guarded by this
+    private long epoch;
+
+    //net changes of a failed flush and their segments, written with the next one. guarded by this
+    private Map<Long, long[]> unflushed = new HashMap<>();
+
+    private List<Path> unflushedSegments = new ArrayList<>();
+
+    private volatile boolean ready;
+
+    public HotStock(HotStockStore store) {
+        this.store = store;
+    }
+
+    public boolean reserve(Long productId, Long colorId, int quantity, BooleanSupplier db) {
+        return change(productId, colorId, -quantity, quantity, db);
+    }
+
+    public boolean commit(Long productId, Long colorId, int quantity, BooleanSupplier db) {
+        return change(productId, colorId, 0, -quantity, db);
+    }
+
+    public boolean release(Long productId, Long colorId, int quantity, BooleanSupplier db) {
+        return change(productId, colorId, quantity, -quantity, db);
+    }
+
+    public boolean restock(Long productId, Long colorId, int quantity, BooleanSupplier db) {
+        return change(productId, colorId, quantity, 0, db);
+    }
+
+    //from memory when the inventory is hot, otherwise db is called while no switch can run
+    private boolean change(Long productId, Long colorId, long quantityDelta, long reservedDelta, BooleanSupplier db) {
+        String key = key(productId, colorId);
+        Sku sku = skus.get(key);
+        if (sku != null) {
+            Result result = change(sku, quantityDelta, reservedDelta);
+            if (result != Result.NOT_HOT) {
+                return result == Result.DONE;
+            }
+        }
+        ReentrantReadWriteLock switchLock = switchLock(key);
+        switchLock.readLock().lock();
+        try {
+            sku = skus.get(key);
+            if (sku != null) {
+                return change(sku, quantityDelta, reservedDelta) == Result.DONE;
+            }
+            return db.getAsBoolean();
+        } finally {
+            switchLock.readLock().unlock();
+        }
+    }
+
+    private Result change(Sku sku, long quantityDelta, long reservedDelta) {
+        int home = (int) (Thread.currentThread().getId() % stripes.length);
+        Stripe stripe = stripes[home];
+        stripe.lock.lock();
+        try {
+            if (sku.removed) {
+                return Result.NOT_HOT;
+            }
+            if (sku.quantity[home] + quantityDelta >= 0 && sku.reserved[home] + reservedDelta >= 0) {
+                stripe.record(sku, quantityDelta, reservedDelta);
+                sku.quantity[home] += quantityDelta;
+                sku.reserved[home] += reservedDelta;
+                return Result.DONE;
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        //short on the home stripe : take from all of them
+        lockAll();
+        try {
+            if (sku.removed) {
+                return Result.NOT_HOT;
+            }
+            if (sum(sku.quantity) + quantityDelta < 0 || sum(sku.reserved) + reservedDelta < 0) {
+                return Result.SHORT;
+            }
+            stripe.record(sku, quantityDelta, reservedDelta);
+            take(sku.quantity, home, quantityDelta);
+            take(sku.reserved, home, reservedDelta);
+            return Result.DONE;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    //the counters start from the committed row and the db path is closed for this inventory.
+    //the row lock does not wait (a transaction holding the row could be waiting for the switch lock), it is
+    //tried again until the switch timeout, then the PessimisticLockingFailureException is thrown.
+    public HotStockStatus enable(Long productId, Long colorId) throws NoContentException {
+        checkReady();
+        String key = key(productId, colorId);
+        ReentrantReadWriteLock switchLock = switchLock(key);
+        switchLock.writeLock().lock();
+        try {
+            if (!skus.containsKey(key)) {
+                Inventory inventory = lockRow(productId, colorId);
+                Sku sku = new Sku(inventory.getId(), productId, colorId, stripes.length);
+                spread(sku.quantity, inventory.getQuantity());
+                spread(sku.reserved, inventory.getReserved());
+                skus.put(key, sku);
+            }
+            return status(skus.get(key));
+        } finally {
+            switchLock.writeLock().unlock();
+        }
+    }
+
+    //the inventory is flushed before the db path opens again
+    public void disable(Long productId, Long colorId) throws NoContentException {
+        checkReady();
+        String key = key(productId, colorId);
+        ReentrantReadWriteLock switchLock = switchLock(key);
+        switchLock.writeLock().lock();
+        try {
+            if (!skus.containsKey(key)) {
+                throw new NoContentException("No Hot Stock Found for product : " + productId + ", color : " + colorId);
+            }
+            flush(key);
+        } finally {
+            switchLock.writeLock().unlock();
+        }
+    }
+
+    private Inventory lockRow(Long productId, Long colorId) throws NoContentException {
+        long deadline = System.currentTimeMillis() + switchTimeoutMillis;
+        while (true) {
+            try {
+                return store.lock(productId, colorId);
+            } catch (PessimisticLockingFailureException e) {
+                if (System.currentTimeMillis() >= deadline) {
+                    throw e;
+                }
+            }
+            try {
+                Thread.sleep(SWITCH_RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while switching product : " + productId + ", color : " + colorId, e);
+            }
+        }
+    }
+
+    public List<HotStockStatus> findAll() {
+        return skus.values().stream().map(this::status).toList();
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.hot-stock.flush-interval-ms}")
+    public synchronized void flush() {
+        if (ready && !skus.isEmpty()) {
+            flush(null);
+        }
+    }
+
+    //a clean stop writes the acknowledged changes to the db, so nothing is left to replay on the next start.
+    //when that fails the segments stay on disk and are replayed as after a crash.
+    @PreDestroy
+    public synchronized void close() {
+        if (!ready) {
+            return;
+        }
+        ready = false;
+        try {
+            flush(null);
+        } catch (RuntimeException e) {
+            logger.error("Could not flush hot stock on shutdown, the journal will be replayed on start", e);
+        }
+        for (Stripe stripe : stripes) {
+            try {
+                stripe.journal.close();
+            } catch (IOException e) {
+                logger.warn("Could not close hot stock journal of stripe {}", stripe.index, e);
+            }
+        }
+    }
+
+    //every stripe moves to the journal segment of the next epoch while all of them are locked, so the
+    //collected changes are exactly the ones journaled in the closed segments
+    private synchronized void flush(String removedKey) {
+        long flushedEpoch = epoch;
+        Map<Long, long[]> deltas = unflushed;
+        List<Path> closedSegments = unflushedSegments;
+        Sku removed = null;
+
+        lockAll();
+        try {
+            if (removedKey != null) {
+                removed = skus.remove(removedKey);
+                removed.removed = true;
+            }
+            collect(deltas, skus.values());
+            if (removed != null) {
+                collect(deltas, List.of(removed));
+            }
+            for (Stripe stripe : stripes) {
+                closedSegments.add(stripe.journal.rotate(flushedEpoch + 1));
+            }
+            epoch = flushedEpoch + 1;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            unlockAll();
+        }
+
+        try {
+            if (deltas.values().stream().anyMatch(delta -> delta[0] != 0 || delta[1] != 0)) {
+                store.apply(deltas, flushedEpoch);
+            }
+            unflushed = new HashMap<>();
+            unflushedSegments = new ArrayList<>();
+        } catch (RuntimeException e) {
+            //the closed segments stay on disk, a later checkpoint covers them
+            unflushed = deltas;
+            unflushedSegments = closedSegments;
+            if (removed != null) {
+                removed.removed = false;
+                skus.put(removedKey, removed);
+            }
+            throw e;
+        }
+        for (Path segment : closedSegments) {
+            delete(segment);
+        }
+    }
+
+    //segments newer than the checkpoint were acknowledged but not flushed before a crash
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public synchronized void recover() throws IOException {
+        Path directory = Paths.get(journalDir);
+        Files.createDirectories(directory);
+        long checkpoint = store.lastFlushedEpoch();
+
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.filter(file -> StockJournal.epochOf(file) >= 0).toList();
+        }
+        Map<Long, long[]> deltas = new HashMap<>();
+        long lastEpoch = checkpoint;
+        for (Path segment : segments) {
+            long segmentEpoch = StockJournal.epochOf(segment);
+            if (segmentEpoch > checkpoint) {
+                StockJournal.read(segment, deltas);
+                lastEpoch = Math.max(lastEpoch, segmentEpoch);
+            }
+        }
+        if (lastEpoch > checkpoint) {
+            logger.warn("Replaying hot stock journal up to epoch {} for {} inventories", lastEpoch, deltas.size());
+            store.apply(deltas, lastEpoch);
+        }
+        segments.forEach(this::delete);
+
+        epoch = lastEpoch + 1;
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(i, new StockJournal(directory, i, fsync, epoch));
+        }
+        ready = true;
+    }
+
+    private void collect(Map<Long, long[]> deltas, Collection<Sku> from) {
+        for (Sku sku : from) {
+            long[] delta = deltas.computeIfAbsent(sku.inventoryId, id -> new long[2]);
+            for (int i = 0; i < stripes.length; i++) {
+                delta[0] += sku.pendingQuantity[i];
+                delta[1] += sku.pendingReserved[i];
+                sku.pendingQuantity[i] = 0;
+                sku.pendingReserved[i] = 0;
+            }
+        }
+    }
+
+    private HotStockStatus status(Sku sku) {
+        lockAll();
+        try {
+            return new HotStockStatus(sku.inventoryId, sku.productId, sku.colorId, sum(sku.quantity), sum(sku.reserved));
+        } finally {
+            unlockAll();
+        }
+    }
+
+    private void checkReady() {
+        if (!ready) {
+            throw new IllegalStateException("Hot stock journal is not recovered yet.");
+        }
+    }
+
+    private void delete(Path segment) {
+        try {
+            Files.deleteIfExists(segment);
+        } catch (IOException e) {
+            logger.warn("Could not delete flushed hot stock journal segment {}", segment, e);
+        }
+    }
+
+    //always in stripe order
+    private void lockAll() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].lock.unlock();
+        }
+    }
+
+    private ReentrantReadWriteLock switchLock(String key) {
+        return switchLocks.computeIfAbsent(key, k -> new ReentrantReadWriteLock());
+    }
+
+    private static String key(Long productId, Long colorId) {
+        return productId + ":" + colorId;
+    }
+
+    private static long sum(long[] counters) {
+        long sum = 0;
+        for (long counter : counters) {
+            sum += counter;
+        }
+        return sum;
+    }
+
+    private static void spread(long[] counters, long total) {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = total / counters.length + (i < total % counters.length ? 1 : 0);
+        }
+    }
+
+    //adds to the home stripe, takes from the home stripe first then from the others
+    private static void take(long[] counters, int home, long delta) {
+        if (delta >= 0) {
+            counters[home] += delta;
+            return;
+        }
+        long missing = -delta;
+        for (int i = 0; missing > 0; i++) {
+            int index = (home + i) % counters.length;
+            long taken = Math.min(missing, counters[index]);
+            counters[index] -= taken;
+            missing -= taken;
+        }
+    }
+
+    private static class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final StockJournal journal;
+
+        private final int index;
+
+        private Stripe(int index, StockJournal journal) {
+            this.index = index;
+            this.journal = journal;
+        }
+
+        //journaled first : a change that can not be written is not made
+        private void record(Sku sku, long quantityDelta, long reservedDelta) {
+            try {
+                journal.append(sku.inventoryId, quantityDelta, reservedDelta);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            sku.pendingQuantity[index] += quantityDelta;
+            sku.pendingReserved[index] += reservedDelta;
+        }
+    }
+
+    //every array is indexed by stripe, a slot is guarded by the lock of its stripe
+    private static class Sku {
+
+        private final long inventoryId;
+
+        private final Long productId;
+
+        private final Long colorId;
+
+        private final long[] quantity;
+
+        private final long[] reserved;
+
+        //changes not written to the db yet
+        private final long[] pendingQuantity;
+
+        private final long[] pendingReserved;
+
+        //set once flushed out of the counters, the caller goes back to the db
+        private volatile boolean removed;
+
+        private Sku(long inventoryId, Long productId, Long colorId, int stripes) {
+            this.inventoryId = inventoryId;
+            this.productId = productId;
+            this.colorId = colorId;
+            this.quantity = new long[stripes];
+            this.reserved = new long[stripes];
+            this.pendingQuantity = new long[stripes];
+            this.pendingReserved = new long[stripes];
+        }
+    }
+}
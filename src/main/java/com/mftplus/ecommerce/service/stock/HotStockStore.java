@@ -0,0 +1,48 @@
+package com.mftplus.ecommerce.service.stock;
+
+import com.mftplus.ecommerce.exception.NoContentException;
+import com.mftplus.ecommerce.model.entity.Inventory;
+import com.mftplus.ecommerce.model.entity.StockJournalCheckpoint;
+import com.mftplus.ecommerce.repository.InventoryRepository;
+import com.mftplus.ecommerce.repository.StockJournalCheckpointRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+//db side of the hot stock counters
+@Component
+public class HotStockStore {
+
+    private final InventoryRepository inventoryRepository;
+
+    private final StockJournalCheckpointRepository checkpointRepository;
+
+    public HotStockStore(InventoryRepository inventoryRepository, StockJournalCheckpointRepository checkpointRepository) {
+        this.inventoryRepository = inventoryRepository;
+        this.checkpointRepository = checkpointRepository;
+    }
+
+    //waits for the reservations still running on the row, so the counters start from the committed stock
+    @Transactional
+    public Inventory lock(Long productId, Long colorId) throws NoContentException {
+        return inventoryRepository.lockByProductIdAndColorId(productId, colorId).orElseThrow(
+                () -> new NoContentException("No Active Inventory Found for product : " + productId + ", color : " + colorId)
+        );
+    }
+
+    //the net changes of every journal segment up to the epoch, and the checkpoint, in one transaction
+    @Transactional
+    public void apply(Map<Long, long[]> deltas, long epoch) {
+        deltas.forEach((inventoryId, delta) -> {
+            if (delta[0] != 0 || delta[1] != 0) {
+                inventoryRepository.applyStockDelta(inventoryId, delta[0], delta[1]);
+            }
+        });
+        checkpointRepository.save(new StockJournalCheckpoint(StockJournalCheckpoint.ID, epoch));
+    }
+
+    public long lastFlushedEpoch() {
+        return checkpointRepository.findById(StockJournalCheckpoint.ID).map(StockJournalCheckpoint::getLastEpoch).orElse(0L);
+    }
+}
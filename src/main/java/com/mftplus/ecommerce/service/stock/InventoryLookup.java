@@ -0,0 +1,104 @@
+package com.mftplus.ecommerce.service.stock;
+
+import com.mftplus.ecommerce.repository.InventoryRepository;
+import com.mftplus.ecommerce.service.event.InventoryChangedEvent;
+import com.mftplus.ecommerce.service.event.ProductChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+
+//(product id, color id) -> active inventory for the cart and the checkout. the key is the two ids packed in
+//one long (product id in the high half), looked up in a primitive cache in front of the query.
+//the cache keeps immutable InventoryPrice rows, not entities : a caller can not change what the next one reads.
+@Component
+public class InventoryLookup {
+
+    private static final long ID_MASK = 0xFFFFFFFFL;
+
+    private final InventoryRepository inventoryRepository;
+
+    private final PackedLongCache<InventoryPrice> cache;
+
+    public InventoryLookup(InventoryRepository inventoryRepository,
+                           @Value("${inventory.lookup-cache.max-size}") int maxSize) {
+        this.inventoryRepository = inventoryRepository;
+        this.cache = new PackedLongCache<>(maxSize);
+    }
+
+    //ids that do not fit in 32 bits give -1 and are never cached
+    public static long key(Long productId, Long colorId) {
+        if (productId == null || colorId == null || productId <= 0 || colorId <= 0
+                || productId > ID_MASK || colorId > ID_MASK) {
+            return -1;
+        }
+        return productId << 32 | colorId;
+    }
+
+    public static long productIdOf(long key) {
+        return key >>> 32;
+    }
+
+    public static long colorIdOf(long key) {
+        return key & ID_MASK;
+    }
+
+    public Optional<InventoryPrice> find(Long productId, Long colorId) {
+        long key = key(productId, colorId);
+        if (key < 0) {
+            return inventoryRepository.findByProductIdAndColorIdAndDeletedFalse(productId, colorId).map(inventory ->
+                    new InventoryPrice(inventory.getId(), productId, colorId, inventory.getPrice(), inventory.getOffPercent()));
+        }
+        return Optional.ofNullable(findAll(List.of(key)).get(key));
+    }
+
+    //a whole cart in one query for the pairs not cached yet, keyed by key(productId, colorId).
+    //pairs without an active inventory are not in the result.
+    public Map<Long, InventoryPrice> findAll(Collection<Long> keys) {
+        Map<Long, InventoryPrice> found = new HashMap<>();
+        Set<Long> missing = new HashSet<>();
+        for (long key : keys) {
+            InventoryPrice inventory = key > 0 ? cache.get(key) : null;
+            if (inventory != null) {
+                found.put(key, inventory);
+            } else if (key > 0) {
+                missing.add(key);
+            }
+        }
+        if (missing.isEmpty()) {
+            return found;
+        }
+
+        long version = cache.version();
+        Set<Long> productIds = new HashSet<>();
+        Set<Long> colorIds = new HashSet<>();
+        for (long key : missing) {
+            productIds.add(productIdOf(key));
+            colorIds.add(colorIdOf(key));
+        }
+        for (InventoryPrice inventory : inventoryRepository.findPricesByProductIdInAndColorIdInAndDeletedFalse(productIds, colorIds)) {
+            long key = key(inventory.getProductId(), inventory.getColorId());
+            if (missing.contains(key)) {
+                found.put(key, inventory);
+                cache.put(key, inventory, version);
+            }
+        }
+        return found;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onInventoryChanged(InventoryChangedEvent event) {
+        evict(event.getProductId());
+    }
+
+    //a product save writes its inventories too (cascade), their price or deleted flag may have changed
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        evict(event.getProductId());
+    }
+
+    private void evict(long productId) {
+        cache.removeIf(key -> productIdOf(key) == productId);
+    }
+}
@@ -0,0 +1,21 @@
+package com.mftplus.ecommerce.service.stock;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//what the cart and the checkout read of an active inventory, kept by InventoryLookup.
+//shared between callers, so it has no setters : a price is changed by saving the inventory.
+@Getter
+@AllArgsConstructor
+public class InventoryPrice {
+
+    private final Long id;
+
+    private final Long productId;
+
+    private final Long colorId;
+
+    private final Integer price;
+
+    private final Integer offPercent;
+}
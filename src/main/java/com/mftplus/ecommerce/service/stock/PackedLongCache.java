@@ -0,0 +1,195 @@
+package com.mftplus.ecommerce.service.stock;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongPredicate;
+
+//open addressing (linear probing) map from a non zero long to a value, no boxing and no entry objects.
+//lookups are optimistic reads, writers take the lock. when full the cache is cleared.
+//every removal moves the version on, a value read from the db before it is not put back.
+class PackedLongCache<V> {
+
+    private final int maxSize;
+
+    private final StampedLock lock = new StampedLock();
+
+    //0 is a free slot
+    private long[] keys;
+
+    private Object[] values;
+
+    private int size;
+
+    private long version;
+
+    PackedLongCache(int maxSize) {
+        this.maxSize = maxSize;
+        allocate(16);
+    }
+
+    V get(long key) {
+        long stamp = lock.tryOptimisticRead();
+        V value = find(key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = find(key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return value;
+    }
+
+    long version() {
+        long stamp = lock.readLock();
+        try {
+            return version;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //ignored when something was removed since the version was read
+    void put(long key, V value, long readVersion) {
+        long stamp = lock.writeLock();
+        try {
+            if (version != readVersion) {
+                return;
+            }
+            int slot = slot(keys, key);
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            if (size + 1 > maxSize) {
+                allocate(16);
+                slot = slot(keys, key);
+            } else if ((size + 1) * 2 > keys.length) {
+                grow();
+                slot = slot(keys, key);
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void removeIf(LongPredicate predicate) {
+        long stamp = lock.writeLock();
+        try {
+            version++;
+            int i = 0;
+            while (i < keys.length) {
+                if (keys[i] != 0 && predicate.test(keys[i])) {
+                    delete(i);
+                    //the slot is refilled by the shift, look at it again
+                } else {
+                    i++;
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void clear() {
+        long stamp = lock.writeLock();
+        try {
+            version++;
+            allocate(16);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //may run against arrays being written, the result is validated by the caller
+    @SuppressWarnings("unchecked")
+    private V find(long key) {
+        long[] currentKeys = keys;
+        Object[] currentValues = values;
+        if (currentKeys.length != currentValues.length) {
+            return null;
+        }
+        int mask = currentKeys.length - 1;
+        int slot = hash(key) & mask;
+        for (int probes = 0; probes < currentKeys.length; probes++) {
+            long candidate = currentKeys[slot];
+            if (candidate == key) {
+                return (V) currentValues[slot];
+            }
+            if (candidate == 0) {
+                return null;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    //backward shift : the entries after the removed one are moved up so no probe chain is broken
+    private void delete(int slot) {
+        int mask = keys.length - 1;
+        int free = slot;
+        int next = (slot + 1) & mask;
+        while (keys[next] != 0) {
+            int home = hash(keys[next]) & mask;
+            //the entry at next may move to free only if free is on its probe path
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[free] = 0;
+        values[free] = null;
+        size--;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        long[] newKeys = new long[oldKeys.length * 2];
+        Object[] newValues = new Object[newKeys.length];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(newKeys, oldKeys[i]);
+                newKeys[slot] = oldKeys[i];
+                newValues[slot] = oldValues[i];
+            }
+        }
+        values = newValues;
+        keys = newKeys;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        size = 0;
+    }
+
+    //the slot holding the key, or the free slot where it goes
+    private static int slot(long[] keys, long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,93 @@
+package com.mftplus.ecommerce.service.stock;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//append only journal of one stripe, one segment file per flush epoch : stock-journal-<epoch>-<stripe>.log
+//with one "inventoryId quantityDelta reservedDelta" line per acknowledged change. guarded by the stripe lock.
+class StockJournal {
+
+    static final Pattern SEGMENT_NAME = Pattern.compile("stock-journal-(\\d+)-(\\d+)\\.log");
+
+    private final Path directory;
+
+    private final int stripe;
+
+    private final boolean fsync;
+
+    private FileChannel channel;
+
+    private Path segment;
+
+    StockJournal(Path directory, int stripe, boolean fsync, long epoch) throws IOException {
+        this.directory = directory;
+        this.stripe = stripe;
+        this.fsync = fsync;
+        open(epoch);
+    }
+
+    //the change is acknowledged only once this returns
+    void append(long inventoryId, long quantityDelta, long reservedDelta) throws IOException {
+        byte[] line = (inventoryId + " " + quantityDelta + " " + reservedDelta + "\n").getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.wrap(line);
+        long position = channel.size();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            //a half written line would be glued to the next one
+            channel.truncate(position);
+            throw e;
+        }
+    }
+
+    //closes the current segment and starts the one of the next epoch, returns the closed segment
+    Path rotate(long epoch) throws IOException {
+        Path closed = segment;
+        channel.close();
+        open(epoch);
+        return closed;
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    private void open(long epoch) throws IOException {
+        segment = directory.resolve("stock-journal-" + epoch + "-" + stripe + ".log");
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    static long epochOf(Path segment) {
+        Matcher matcher = SEGMENT_NAME.matcher(segment.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    //net change per inventory : {quantityDelta, reservedDelta}. a last line without its newline was torn by a crash
+    //and never acknowledged, it is skipped.
+    static void read(Path segment, Map<Long, long[]> deltas) throws IOException {
+        String content = Files.readString(segment, StandardCharsets.US_ASCII);
+        int end = content.lastIndexOf('\n');
+        if (end < 0) {
+            return;
+        }
+        for (String line : content.substring(0, end).split("\n")) {
+            String[] fields = line.split(" ");
+            long[] delta = deltas.computeIfAbsent(Long.parseLong(fields[0]), id -> new long[2]);
+            delta[0] += Long.parseLong(fields[1]);
+            delta[1] += Long.parseLong(fields[2]);
+        }
+    }
+}
@@ -4,8 +4,14 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.icegreen.greenmail.configuration.GreenMailConfiguration;
 import com.icegreen.greenmail.junit5.GreenMailExtension;
 import com.icegreen.greenmail.util.ServerSetupTest;
+import com.mftplus.ecommerce.api.dto.LoginBody;
 import com.mftplus.ecommerce.api.dto.RegistrationBody;
+import com.mftplus.ecommerce.api.idempotency.IdempotencyStore;
+import com.mftplus.ecommerce.service.outbox.OutboxDispatcher;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
 import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,8 +20,16 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -30,6 +44,9 @@ public class AuthenticationControllerTest {
     @Autowired
     private MockMvc mvc;
 
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+
     @Test
     @Transactional
     public void testRegister() throws Exception {
@@ -60,7 +77,7 @@ public class AuthenticationControllerTest {
 
 
         //null email
-        body.setUsername("AuthenticationControllerTestTestRegister");
+        body.setUsername("authenticationcontrollertest-register");
         body.setEmail(null);
 
         mvc.perform(post("/auth/register")
@@ -136,13 +153,86 @@ public class AuthenticationControllerTest {
 
         //todo : test patterns, length and email format
 
-        //valid
+        //valid, answered once the hashing pool hashed the password
         body.setLastName("LastName");
 
-        mvc.perform(post("/auth/register")
+        MvcResult result = mvc.perform(post("/auth/register")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(mapper.writeValueAsString(body)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
                 .andExpect(status().is(HttpStatus.OK.value()));
 
+        //already registered
+        result = mvc.perform(post("/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(body)))
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().is(HttpStatus.CONFLICT.value()));
+
+    }
+
+    @Test
+    @Transactional
+    public void testRegisterRetry() throws Exception {
+        RegistrationBody body = new RegistrationBody();
+        body.setUsername("retryuser");
+        body.setEmail("AuthenticationControllerTest$testRegisterRetry@junit.com");
+        body.setFirstName("FirstName");
+        body.setLastName("LastName");
+        body.setPassword("Password123");
+        body.setPhoneNumber("09123858573");
+        String json = new ObjectMapper().writeValueAsString(body);
+        String key = UUID.randomUUID().toString();
+
+        MvcResult result = mvc.perform(post("/auth/register").header(IdempotencyStore.HEADER, key)
+                        .contentType(MediaType.APPLICATION_JSON).content(json))
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().is(HttpStatus.OK.value()));
+        result = mvc.perform(post("/auth/register").header(IdempotencyStore.HEADER, key)
+                        .contentType(MediaType.APPLICATION_JSON).content(json))
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andExpect(header().string(IdempotencyStore.REPLAYED_HEADER, "true"));
+
+        //the verification email is queued, sent by the outbox
+        outboxDispatcher.drain();
+        Assertions.assertEquals(1, Arrays.stream(greenMailExtension.getReceivedMessages())
+                        .filter(message -> recipient(message).equals(body.getEmail())).count(),
+                "The retry should not send a second verification email.");
+    }
+
+    @Test
+    public void testLogin() throws Exception {
+        LoginBody body = new LoginBody();
+        body.setUsername("UserA");
+        body.setPassword("PasswordA123");
+
+        //answered once the hashing pool checked the password
+        MvcResult result = mvc.perform(post("/auth/login").contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(body)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andExpect(jsonPath("$.jwt").isNotEmpty());
+
+        body.setPassword("BadPassword123");
+        result = mvc.perform(post("/auth/login").contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(body)))
+                .andReturn();
+        mvc.perform(asyncDispatch(result)).andExpect(status().is(HttpStatus.BAD_REQUEST.value()));
+    }
+
+    private static String recipient(Message message) {
+        try {
+            return message.getRecipients(Message.RecipientType.TO)[0].toString();
+        } catch (MessagingException e) {
+            throw new IllegalStateException(e);
+        }
     }
 }
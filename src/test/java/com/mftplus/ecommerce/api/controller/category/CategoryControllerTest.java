@@ -0,0 +1,164 @@
+package com.mftplus.ecommerce.api.controller.category;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mftplus.ecommerce.exception.NoContentException;
+import com.mftplus.ecommerce.model.entity.Category;
+import com.mftplus.ecommerce.repository.CategoryClosureRepository;
+import com.mftplus.ecommerce.repository.ProductRepository;
+import com.mftplus.ecommerce.service.impl.CategoryServiceImpl;
+import com.mftplus.ecommerce.service.search.CategoryTree;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class CategoryControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CategoryServiceImpl categoryService;
+
+    @Autowired
+    private CategoryClosureRepository categoryClosureRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryTree categoryTree;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testCategoryTreeQueryCount() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        String json = mvc.perform(get("/category").param("categoryName", "men"))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andReturn().getResponse().getContentAsString();
+
+        JsonNode category = new ObjectMapper().readTree(json);
+        Assertions.assertEquals("men", category.get("name").asText());
+        Assertions.assertEquals(2, category.get("products").size(), "Category should list its products.");
+        Assertions.assertEquals("shorts", category.get("childCategories").get(0).get("name").asText());
+        Assertions.assertFalse(category.get("products").get(0).get("inventories").isEmpty(),
+                "Products should be serialized with their inventories.");
+
+        //men > shorts > winterShorts : the category, its subtree collections, the product ids and the product fetch plan
+        long queries = statistics.getPrepareStatementCount();
+        Assertions.assertTrue(queries <= 9, "Category tree should be loaded with at most 9 queries but took " + queries);
+    }
+
+    @Test
+    public void testCategoryMenu() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        categoryTree.current();
+        statistics.clear();
+
+        MvcResult result = mvc.perform(get("/category/tree").param("depth", "1"))
+                .andExpect(status().is(HttpStatus.OK.value())).andReturn();
+        Assertions.assertEquals(0, statistics.getPrepareStatementCount(), "Menu should be served from the snapshot.");
+
+        JsonNode roots = new ObjectMapper().readTree(result.getResponse().getContentAsString());
+        Assertions.assertEquals("men", roots.get(0).get("name").asText());
+        //products #1 and #2, #1 is in men and in shorts
+        Assertions.assertEquals(2, roots.get(0).get("productCount").asLong());
+        JsonNode shorts = roots.get(0).get("children").get(0);
+        Assertions.assertEquals("shorts", shorts.get("name").asText());
+        Assertions.assertEquals(1, shorts.get("productCount").asLong());
+        Assertions.assertFalse(shorts.get("leaf").asBoolean());
+        Assertions.assertEquals(0, shorts.get("children").size(), "Depth should bound the tree.");
+        Assertions.assertFalse(roots.get(0).has("products"));
+
+        String eTag = result.getResponse().getHeader(HttpHeaders.ETAG);
+        Assertions.assertNotNull(eTag);
+        mvc.perform(get("/category/tree").param("depth", "1").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().is(HttpStatus.NOT_MODIFIED.value()));
+
+        Category hats = categoryService.save(Category.builder().name("hats").build());
+        try {
+            mvc.perform(get("/category/tree").param("depth", "1").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                    .andExpect(status().is(HttpStatus.OK.value()));
+        } finally {
+            categoryService.remove(hats.getId());
+        }
+
+        mvc.perform(get("/category/tree").param("categoryName", "nothing"))
+                .andExpect(status().is(HttpStatus.NOT_FOUND.value()));
+    }
+
+    @Test
+    public void testCategoryClosure() throws Exception {
+        Assertions.assertEquals(List.of("winterShorts", "shorts", "men"), names(categoryService.findPathByNameAndDeletedFalse("winterShorts")));
+        Assertions.assertEquals(List.of(1L, 2L), productRepository.findIdsInCategoryTree(1L).stream().sorted().toList(),
+                "Products of men and of the categories under it.");
+
+        Category hats = categoryService.save(Category.builder().name("hats")
+                .parentCategory(categoryService.findByNameAndDeletedFalse("shorts")).build());
+        Category caps = categoryService.save(Category.builder().name("caps").parentCategory(hats).build());
+        try {
+            Assertions.assertEquals(List.of("caps", "hats", "shorts", "men"), names(categoryService.findPathByNameAndDeletedFalse("caps")));
+            Assertions.assertEquals(4, categoryClosureRepository.findAncestorRows(caps.getId()).size());
+
+            //moving hats moves caps with it
+            hats = categoryService.findById(hats.getId());
+            hats.setParentCategory(categoryService.findByNameAndDeletedFalse("woman"));
+            categoryService.update(hats);
+            Assertions.assertEquals(List.of("caps", "hats", "woman"), names(categoryService.findPathByNameAndDeletedFalse("caps")));
+            Assertions.assertEquals(3, categoryClosureRepository.findAncestorRows(caps.getId()).size());
+            Assertions.assertEquals(3, categoryClosureRepository.findDescendantRows(2L).size());
+
+            Category movedHats = categoryService.findById(hats.getId());
+            movedHats.setParentCategory(caps);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> categoryService.update(movedHats),
+                    "A category can not be moved under its own child.");
+        } finally {
+            categoryService.remove(caps.getId());
+            categoryService.remove(hats.getId());
+        }
+        Assertions.assertThrows(NoContentException.class, () -> categoryService.findPathByNameAndDeletedFalse("caps"));
+    }
+
+    @Test
+    public void testStaleClosureIsRebuilt() throws Exception {
+        //winterShorts moved under woman behind the service : same number of closure rows, other parent
+        jdbcTemplate.update("update category_tbl set category_id = 2 where id = 6");
+        try {
+            categoryService.rebuildClosureIfStale();
+            Assertions.assertEquals(List.of("winterShorts", "woman"), names(categoryService.findPathByNameAndDeletedFalse("winterShorts")));
+            Assertions.assertEquals(2, categoryClosureRepository.findAncestorRows(6L).size());
+        } finally {
+            jdbcTemplate.update("update category_tbl set category_id = 4 where id = 6");
+            categoryService.rebuildClosureIfStale();
+        }
+        Assertions.assertEquals(3, categoryClosureRepository.findAncestorRows(6L).size());
+    }
+
+    private List<String> names(List<Category> categories) {
+        return categories.stream().map(Category::getName).toList();
+    }
+}
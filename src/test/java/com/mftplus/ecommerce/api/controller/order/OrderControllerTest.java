@@ -1,20 +1,40 @@
 package com.mftplus.ecommerce.api.controller.order;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.mftplus.ecommerce.model.entity.Order;
+import com.mftplus.ecommerce.api.dto.OrderBody;
+import com.mftplus.ecommerce.api.dto.OrderLineBody;
+import com.mftplus.ecommerce.api.idempotency.IdempotencyStore;
+import com.mftplus.ecommerce.model.entity.Inventory;
+import com.mftplus.ecommerce.model.entity.OrderQuantities;
+import com.mftplus.ecommerce.repository.InventoryRepository;
+import com.mftplus.ecommerce.repository.OrderQuantitiesRepository;
+import com.mftplus.ecommerce.repository.OrderRepository;
+import com.mftplus.ecommerce.repository.SqlStatementRecorder;
+import com.mftplus.ecommerce.repository.UserRepository;
+import com.mftplus.ecommerce.service.InventoryService;
+import com.mftplus.ecommerce.service.JWTService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithUserDetails;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -24,6 +44,27 @@ public class OrderControllerTest {
     @Autowired
     private MockMvc mvc;
 
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderQuantitiesRepository orderQuantitiesRepository;
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JWTService jwtService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     @Test
     @WithUserDetails("UserA")
     public void testUserAAuthenticatedOrderList() throws Exception{
@@ -36,19 +77,191 @@ public class OrderControllerTest {
         testAuthenticatedListBelongsToUser("UserB");
     }
 
+    private String bearer(String username) {
+        return "Bearer " + jwtService.generateJWT(userRepository.findByUsernameIgnoreCaseAndDeletedFalse(username).orElseThrow());
+    }
+
     private void testAuthenticatedListBelongsToUser(String username) throws Exception{
         mvc.perform(get("/order")).andExpect(status().is(HttpStatus.OK.value()))
                 .andExpect(result -> {
                     String json = result.getResponse().getContentAsString();
-                    List<Order> orders = new ObjectMapper().readValue(json, new TypeReference<List<Order>>() {});
-                    for (Order order : orders){
-                        Assertions.assertEquals(username , order.getUser().getUsername(),
+                    JsonNode orders = new ObjectMapper().readTree(json).get("orders");
+                    for (JsonNode order : orders){
+                        Assertions.assertEquals(username , orderRepository.findById(order.get("id").asLong())
+                                        .orElseThrow().getUser().getUsername(),
                                 "Order list should only be orders belonging to the user.");
                     }
                 });
     }
 
 
+    @Test
+    public void testPlaceOrder() throws Exception {
+        //product #1 in blue twice, they are one line
+        OrderBody body = new OrderBody(1L, List.of(new OrderLineBody(1L, 1L, 2),
+                new OrderLineBody(1L, 2L, 1), new OrderLineBody(2L, 1L, 1), new OrderLineBody(1L, 1L, 1)));
+
+        SqlStatementRecorder.start();
+        String json = mvc.perform(post("/order").header("Authorization", bearer("UserA")).contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(body)))
+                .andExpect(status().is(HttpStatus.CREATED.value()))
+                .andReturn().getResponse().getContentAsString();
+        List<String> statements = SqlStatementRecorder.stop();
+        long orderId = Long.parseLong(json);
+        try {
+            Assertions.assertTrue(orderId > 5, "The id sequence should start after the existing orders.");
+            Assertions.assertEquals(1, statements.stream().filter(sql -> sql.startsWith("insert into order_quantities_tbl")).count(),
+                    "The lines should be inserted in one batch.");
+
+            List<OrderQuantities> lines = orderQuantitiesRepository.findAll().stream()
+                    .filter(line -> line.getOrder().getId() == orderId).toList();
+            Assertions.assertEquals(3, lines.size());
+            OrderQuantities blue = lines.stream().filter(line -> line.getProduct().getId() == 2L).findFirst().orElseThrow();
+            Assertions.assertEquals(1L, blue.getColor().getId());
+            Assertions.assertEquals(72, blue.getPrice(), "90 with 20 percent off.");
+            Assertions.assertEquals(3, lines.stream().filter(line -> line.getProduct().getId() == 1L
+                    && line.getColor().getId() == 1L).findFirst().orElseThrow().getQuantity());
+
+            Inventory inventory = inventoryRepository.findByProductIdAndColorIdAndDeletedFalse(1L, 1L).orElseThrow();
+            Assertions.assertEquals(2, inventory.getQuantity());
+            Assertions.assertEquals(3, inventory.getReserved());
+
+            //3 * 0 + 1 * 1 + 1 * 72
+            JsonNode summary = new ObjectMapper().readTree(mvc.perform(get("/order").header("Authorization", bearer("UserA")))
+                    .andExpect(status().is(HttpStatus.OK.value()))
+                    .andReturn().getResponse().getContentAsString()).get("orders").get(0);
+            Assertions.assertEquals(orderId, summary.get("id").asLong(), "The newest order should come first.");
+            Assertions.assertEquals(3, summary.get("lineCount").asLong());
+            Assertions.assertEquals(73, summary.get("total").asLong());
+            Assertions.assertFalse(summary.get("createdTimeStamp").isNull());
+
+            JsonNode detail = new ObjectMapper().readTree(mvc.perform(get("/order/" + orderId).header("Authorization", bearer("UserA")))
+                    .andExpect(status().is(HttpStatus.OK.value()))
+                    .andReturn().getResponse().getContentAsString());
+            Assertions.assertEquals("Testerton", detail.get("city").asText());
+            Assertions.assertEquals(3, detail.get("lines").size());
+            Assertions.assertEquals("Product #1", detail.get("lines").get(0).get("productName").asText());
+            Assertions.assertEquals(73, detail.get("total").asLong());
+        } finally {
+            inventoryService.releaseReservation(1L, 1L, 3);
+            inventoryService.releaseReservation(1L, 2L, 1);
+            inventoryService.releaseReservation(2L, 1L, 1);
+            orderRepository.deleteById(orderId);
+        }
+    }
+
+    @Test
+    public void testPlaceOrderOutOfStock() throws Exception {
+        long orders = orderRepository.count();
+        //3 red ones in stock
+        OrderBody body = new OrderBody(1L, List.of(new OrderLineBody(1L, 1L, 1), new OrderLineBody(1L, 2L, 100)));
+        mvc.perform(post("/order").header("Authorization", bearer("UserA")).contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(body)))
+                .andExpect(status().is(HttpStatus.CONFLICT.value()));
+
+        Assertions.assertEquals(orders, orderRepository.count());
+        Inventory inventory = inventoryRepository.findByProductIdAndColorIdAndDeletedFalse(1L, 1L).orElseThrow();
+        Assertions.assertEquals(5, inventory.getQuantity(), "The reservation of the first line should be rolled back.");
+        Assertions.assertEquals(0, inventory.getReserved());
+    }
+
+    @Test
+    public void testPlaceOrderBadRequests() throws Exception {
+        //address of UserC
+        mvc.perform(post("/order").header("Authorization", bearer("UserA")).contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(new OrderBody(2L, List.of(new OrderLineBody(1L, 1L, 1))))))
+                .andExpect(status().is(HttpStatus.NOT_FOUND.value()));
+        //no red product #2
+        mvc.perform(post("/order").header("Authorization", bearer("UserA")).contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(new OrderBody(1L, List.of(new OrderLineBody(2L, 2L, 1))))))
+                .andExpect(status().is(HttpStatus.NOT_FOUND.value()));
+        mvc.perform(post("/order").header("Authorization", bearer("UserA")).contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(new OrderBody(1L, List.of()))))
+                .andExpect(status().is(HttpStatus.BAD_REQUEST.value()));
+        mvc.perform(post("/order").header("Authorization", bearer("UserA")).contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(new OrderBody(1L, List.of(new OrderLineBody(1L, 1L, 0))))))
+                .andExpect(status().is(HttpStatus.BAD_REQUEST.value()));
+    }
+
+    @Test
+    public void testPlaceOrderRetry() throws Exception {
+        long orders = orderRepository.count();
+        String token = bearer("UserA");
+        String key = UUID.randomUUID().toString();
+        String body = new ObjectMapper().writeValueAsString(new OrderBody(1L, List.of(new OrderLineBody(4L, 1L, 1))));
+
+        String first = mvc.perform(post("/order").header("Authorization", token).header(IdempotencyStore.HEADER, key)
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().is(HttpStatus.CREATED.value()))
+                .andReturn().getResponse().getContentAsString();
+        try {
+            mvc.perform(post("/order").header("Authorization", token).header(IdempotencyStore.HEADER, key)
+                            .contentType(MediaType.APPLICATION_JSON).content(body))
+                    .andExpect(status().is(HttpStatus.CREATED.value()))
+                    .andExpect(header().string(IdempotencyStore.REPLAYED_HEADER, "true"))
+                    .andExpect(content().string(first));
+            Assertions.assertEquals(orders + 1, orderRepository.count(), "The retry should not place a second order.");
+            Assertions.assertEquals(1, inventoryRepository.findByProductIdAndColorIdAndDeletedFalse(4L, 1L).orElseThrow().getReserved());
+        } finally {
+            inventoryService.releaseReservation(4L, 1L, 1);
+            orderRepository.deleteById(Long.parseLong(first));
+        }
+    }
+
+    @Test
+    public void testOrderHistoryPages() throws Exception {
+        String token = bearer("UserA");
+        //the user of the token is read here and cached
+        mvc.perform(get("/order").header("Authorization", token).param("cursor", "NotACursor"))
+                .andExpect(status().is(HttpStatus.BAD_REQUEST.value()));
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            var request = get("/order").header("Authorization", token).param("limit", "2");
+            if (cursor != null) {
+                request.param("cursor", cursor);
+            }
+            statistics.clear();
+            JsonNode page = new ObjectMapper().readTree(mvc.perform(request)
+                    .andExpect(status().is(HttpStatus.OK.value()))
+                    .andReturn().getResponse().getContentAsString());
+            Assertions.assertEquals(1, statistics.getPrepareStatementCount(), "One query per page.");
+            Assertions.assertTrue(page.get("orders").size() <= 2, "Page should not exceed the limit.");
+            for (JsonNode order : page.get("orders")) {
+                ids.add(order.get("id").asLong());
+                if (order.get("id").asLong() == 2L) {
+                    Assertions.assertEquals(3, order.get("lineCount").asLong());
+                    Assertions.assertEquals(0, order.get("total").asLong(), "Lines without a price count as 0.");
+                }
+            }
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+            pages++;
+        } while (cursor != null && pages < 10);
+
+        Assertions.assertEquals(List.of(3L, 2L, 1L), ids, "Orders of UserA, newest first.");
+    }
+
+    @Test
+    public void testOrderDetail() throws Exception {
+        //order #4 is of UserC, the user of the token is read here and cached
+        String token = bearer("UserA");
+        mvc.perform(get("/order/4").header("Authorization", token))
+                .andExpect(status().is(HttpStatus.NOT_FOUND.value()));
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        JsonNode detail = new ObjectMapper().readTree(mvc.perform(get("/order/2").header("Authorization", token))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andReturn().getResponse().getContentAsString());
+        Assertions.assertEquals(2, statistics.getPrepareStatementCount(), "Order and lines.");
+        Assertions.assertEquals(3, detail.get("lines").size());
+        Assertions.assertEquals("Product #3", detail.get("lines").get(0).get("productName").asText());
+        Assertions.assertTrue(detail.get("lines").get(0).get("colorId").isNull(), "Seeded lines have no color.");
+    }
+
     @Test
     public void testUnAuthenticatedOrderList() throws Exception{
         mvc.perform(get("/order")).andExpect(status().is(HttpStatus.FORBIDDEN.value()));
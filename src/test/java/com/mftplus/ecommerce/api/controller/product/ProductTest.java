@@ -1,11 +1,22 @@
 package com.mftplus.ecommerce.api.controller.product;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mftplus.ecommerce.api.dto.PageCursor;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpStatus;
 import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -16,8 +27,189 @@ public class ProductTest {
     @Autowired
     private MockMvc mvc;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     @Test
     public void testProductList() throws Exception {
         mvc.perform(get("/product")).andExpect(status().is(HttpStatus.OK.value()));
     }
+
+    @Test
+    public void testProductSearchPages() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+
+        do {
+            var request = get("/product/search").param("limit", "2");
+            if (cursor != null) {
+                request.param("cursor", cursor);
+            }
+            String json = mvc.perform(request).andExpect(status().is(HttpStatus.OK.value()))
+                    .andReturn().getResponse().getContentAsString();
+
+            JsonNode page = new ObjectMapper().readTree(json);
+            Assertions.assertTrue(page.get("products").size() <= 2, "Page should not exceed the limit.");
+            page.get("products").forEach(product -> ids.add(product.get("id").asLong()));
+
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+            pages++;
+        } while (cursor != null && pages < 10);
+
+        Assertions.assertEquals(List.of(1L, 2L, 3L, 4L, 5L), ids,
+                "Following the cursors should visit every product once, in id order.");
+    }
+
+    @Test
+    public void testProductSearchPagesByPrice() throws Exception {
+        //cheapest inventories : #1 6, #5 53, #4 56, #3 78, #2 90
+        Assertions.assertEquals(List.of(1L, 5L, 4L, 3L, 2L), pageIds("PRICE_ASC"));
+        Assertions.assertEquals(List.of(2L, 3L, 4L, 5L, 1L), pageIds("PRICE_DESC"));
+
+        String otherSortCursor = new PageCursor("Product #1", 1L).encode();
+        mvc.perform(get("/product/search").param("sort", "PRICE_ASC").param("cursor", otherSortCursor))
+                .andExpect(status().is(HttpStatus.BAD_REQUEST.value()));
+    }
+
+    private List<Long> pageIds(String sort) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            var request = get("/product/search").param("limit", "2").param("sort", sort);
+            if (cursor != null) {
+                request.param("cursor", cursor);
+            }
+            JsonNode page = new ObjectMapper().readTree(mvc.perform(request)
+                    .andExpect(status().is(HttpStatus.OK.value()))
+                    .andReturn().getResponse().getContentAsString());
+            page.get("products").forEach(product -> ids.add(product.get("id").asLong()));
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+        } while (cursor != null && ids.size() < 10);
+        return ids;
+    }
+
+    @Test
+    public void testProductSearchBadCursor() throws Exception {
+        mvc.perform(get("/product/search").param("cursor", "NotACursor"))
+                .andExpect(status().is(HttpStatus.BAD_REQUEST.value()));
+    }
+
+    @Test
+    public void testProductSearchIsOneQuery() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+        mvc.perform(get("/product/search").param("limit", "5")).andExpect(status().is(HttpStatus.OK.value()));
+
+        Assertions.assertEquals(1, statistics.getPrepareStatementCount(), "Page should be read with a single query.");
+        Assertions.assertEquals(0, statistics.getEntityLoadCount(), "Listing should not load any entity.");
+    }
+
+    @Test
+    public void testProductListReturnsSummaries() throws Exception {
+        String json = mvc.perform(get("/product").param("brand", "lcwaikiki"))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andReturn().getResponse().getContentAsString();
+
+        JsonNode product = new ObjectMapper().readTree(json).get(0);
+        Assertions.assertEquals(1L, product.get("id").asLong());
+        Assertions.assertEquals("Product #1", product.get("name").asText());
+        Assertions.assertEquals("lcwaikiki", product.get("brandName").asText());
+        Assertions.assertEquals(6, product.get("minPrice").asInt(), "Summary should have the cheapest inventory price.");
+        Assertions.assertEquals(90, product.get("maxOffPercent").asInt(), "Summary should have the biggest off percent.");
+        Assertions.assertFalse(product.has("inventories"), "Summary should not contain the inventories.");
+    }
+
+    @Test
+    public void testProductDetail() throws Exception {
+        String json = mvc.perform(get("/product/1"))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andReturn().getResponse().getContentAsString();
+
+        JsonNode product = new ObjectMapper().readTree(json);
+        Assertions.assertEquals("lcwaikiki", product.get("brand").get("name").asText());
+        Assertions.assertEquals(2, product.get("inventories").size());
+        Assertions.assertEquals(2, product.get("categories").size());
+
+        mvc.perform(get("/product/404")).andExpect(status().is(HttpStatus.NOT_FOUND.value()));
+    }
+
+    @Test
+    public void testProductTextSearch() throws Exception {
+        String json = mvc.perform(get("/product/search").param("name", "Product #3"))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andReturn().getResponse().getContentAsString();
+        JsonNode products = new ObjectMapper().readTree(json).get("products");
+        Assertions.assertEquals(1, products.size(), "Only product #3 has this name.");
+        Assertions.assertEquals(3L, products.get(0).get("id").asLong());
+
+        json = mvc.perform(get("/product/search").param("name", "description of product #3"))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andReturn().getResponse().getContentAsString();
+        Assertions.assertEquals(0, new ObjectMapper().readTree(json).get("products").size(),
+                "Descriptions should not be searched.");
+
+        json = mvc.perform(get("/product").param("name", "Product #")).andExpect(status().is(HttpStatus.OK.value()))
+                .andReturn().getResponse().getContentAsString();
+        Assertions.assertEquals(5, new ObjectMapper().readTree(json).size(), "Every product name contains the text.");
+
+        json = mvc.perform(get("/product").param("name", "Nothing like this")).andExpect(status().is(HttpStatus.OK.value()))
+                .andReturn().getResponse().getContentAsString();
+        Assertions.assertEquals(0, new ObjectMapper().readTree(json).size());
+    }
+
+    @Test
+    public void testSuggest() throws Exception {
+        String json = mvc.perform(get("/product/suggest").param("q", "prod").param("limit", "3"))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andReturn().getResponse().getContentAsString();
+        JsonNode suggestions = new ObjectMapper().readTree(json);
+        Assertions.assertEquals(3, suggestions.size());
+        //products #2 and #3 were ordered 15 times, #1 10 times
+        Assertions.assertEquals("Product #2", suggestions.get(0).get("text").asText());
+        Assertions.assertEquals("Product #3", suggestions.get(1).get("text").asText());
+        Assertions.assertEquals("Product #1", suggestions.get(2).get("text").asText());
+        Assertions.assertEquals("PRODUCT", suggestions.get(0).get("type").asText());
+
+        json = mvc.perform(get("/product/suggest").param("q", "labou"))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andReturn().getResponse().getContentAsString();
+        suggestions = new ObjectMapper().readTree(json);
+        Assertions.assertEquals("BRAND", suggestions.get(0).get("type").asText());
+        Assertions.assertEquals(2L, suggestions.get(0).get("id").asLong());
+    }
+
+    @Test
+    public void testProductSearchFacets() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        String json = mvc.perform(get("/product/search").param("brand", "lcwaikiki").param("facets", "true"))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andReturn().getResponse().getContentAsString();
+        JsonNode facets = new ObjectMapper().readTree(json).get("facets");
+
+        Assertions.assertEquals(3, facets.get("total").asLong());
+        //the brand facet ignores the brand filter
+        Assertions.assertEquals("lcwaikiki", facets.get("brands").get(0).get("value").asText());
+        Assertions.assertEquals(3, facets.get("brands").get(0).get("count").asLong());
+        Assertions.assertEquals("laboutin", facets.get("brands").get(1).get("value").asText());
+        Assertions.assertEquals(2, facets.get("brands").get(1).get("count").asLong());
+
+        Assertions.assertEquals("men", facets.get("categories").get(0).get("value").asText());
+        Assertions.assertEquals(2, facets.get("categories").get(0).get("count").asLong());
+        Assertions.assertEquals("shorts", facets.get("categories").get(1).get("value").asText());
+        Assertions.assertEquals(1, facets.get("categories").get(1).get("count").asLong());
+
+        Assertions.assertEquals(5, facets.get("prices").size(), "Four bounds make five buckets.");
+        Assertions.assertEquals(1, facets.get("prices").get(0).get("count").asLong(), "Product #1 is under 50.");
+        Assertions.assertEquals(2, facets.get("prices").get(1).get("count").asLong(), "Products #2 and #3 are in 50-100.");
+        Assertions.assertTrue(facets.get("prices").get(4).get("to").isNull());
+
+        Assertions.assertEquals(2, facets.get("onSale").asLong());
+
+        Assertions.assertEquals(2, statistics.getPrepareStatementCount(), "Page and one query for all the facets.");
+        Assertions.assertEquals(0, statistics.getEntityLoadCount(), "Facets should not load any entity.");
+    }
 }
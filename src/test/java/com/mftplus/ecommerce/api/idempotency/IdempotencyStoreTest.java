@@ -0,0 +1,103 @@
+package com.mftplus.ecommerce.api.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class IdempotencyStoreTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private final IdempotencyStore store = new IdempotencyStore(new ObjectMapper(), 100, 60, now::get);
+
+    private final AtomicInteger runs = new AtomicInteger();
+
+    private ResponseEntity<Integer> create() {
+        return ResponseEntity.status(HttpStatus.CREATED).body(runs.incrementAndGet());
+    }
+
+    @Test
+    public void testRetryIsReplayed() {
+        ResponseEntity<Integer> first = store.execute("order:1", "key", List.of(1, 2), this::create);
+        ResponseEntity<Integer> retry = store.execute("order:1", "key", List.of(1, 2), this::create);
+
+        Assertions.assertEquals(1, runs.get(), "The retry should not run the action.");
+        Assertions.assertEquals(HttpStatus.CREATED, retry.getStatusCode());
+        Assertions.assertEquals(first.getBody(), retry.getBody());
+        Assertions.assertEquals("true", retry.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+
+        //same key of an other user, no key
+        store.execute("order:2", "key", List.of(1, 2), this::create);
+        store.execute("order:1", null, List.of(1, 2), this::create);
+        store.execute("order:1", null, List.of(1, 2), this::create);
+        Assertions.assertEquals(4, runs.get());
+    }
+
+    @Test
+    public void testBadRequests() {
+        store.execute("order:1", "key", List.of(1), this::create);
+        Assertions.assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, store.execute("order:1", "key", List.of(2), this::create).getStatusCode(),
+                "The same key with an other body should be refused.");
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, store.execute("order:1", "", List.of(1), this::create).getStatusCode());
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, store.execute("order:1", "k".repeat(256), List.of(1), this::create).getStatusCode());
+        Assertions.assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void testRetryWhileRunning() {
+        ResponseEntity<Integer> response = store.execute("order:1", "key", List.of(1), () -> {
+            Assertions.assertEquals(HttpStatus.CONFLICT, store.execute("order:1", "key", List.of(1), this::create).getStatusCode());
+            return create();
+        });
+        Assertions.assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        Assertions.assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void testFailuresAreNotKept() {
+        store.execute("order:1", "key", List.of(1), () -> ResponseEntity.internalServerError().build());
+        store.execute("order:1", "key", List.of(1), () -> ResponseEntity.status(HttpStatus.CONFLICT).build());
+        Assertions.assertThrows(IllegalStateException.class, () -> store.execute("order:1", "key", List.of(1), () -> {
+            throw new IllegalStateException();
+        }));
+        Assertions.assertEquals(HttpStatus.CREATED, store.execute("order:1", "key", List.of(1), this::create).getStatusCode());
+        Assertions.assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void testAsyncRetryWhileRunning() {
+        CompletableFuture<ResponseEntity<Integer>> running = new CompletableFuture<>();
+        CompletableFuture<ResponseEntity<Integer>> response = store.executeAsync("register", "key", List.of(1), () -> running);
+
+        Assertions.assertEquals(HttpStatus.CONFLICT, store.executeAsync("register", "key", List.of(1),
+                () -> CompletableFuture.completedFuture(create())).join().getStatusCode(), "The key runs until the future completes.");
+
+        running.complete(create());
+        Assertions.assertEquals(HttpStatus.CREATED, response.join().getStatusCode());
+        Assertions.assertEquals("true", store.executeAsync("register", "key", List.of(1),
+                () -> CompletableFuture.completedFuture(create())).join().getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        Assertions.assertEquals(1, runs.get());
+
+        //a failed future is not kept
+        store.executeAsync("register", "other", List.of(1), () -> CompletableFuture.failedFuture(new IllegalStateException()));
+        Assertions.assertEquals(HttpStatus.CREATED, store.executeAsync("register", "other", List.of(1),
+                () -> CompletableFuture.completedFuture(create())).join().getStatusCode());
+    }
+
+    @Test
+    public void testExpiry() {
+        store.execute("order:1", "key", List.of(1), this::create);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        Assertions.assertEquals(0, store.size());
+        store.execute("order:1", "key", List.of(1), this::create);
+        Assertions.assertEquals(2, runs.get(), "An expired key should run again.");
+    }
+}
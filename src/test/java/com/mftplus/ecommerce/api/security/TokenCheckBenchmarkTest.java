@@ -0,0 +1,151 @@
+package com.mftplus.ecommerce.api.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.mftplus.ecommerce.model.entity.User;
+import com.mftplus.ecommerce.repository.UserRepository;
+import com.mftplus.ecommerce.service.JWTService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+//token checks per second of JWTRequestFilter : the verifier rebuilt on every call (as it was), the prebuilt one,
+//a known token served by the principal cache, and expired tokens. the filter* ones go through checkToken as a
+//request does (pre-check, cache, verify) with a valid, an expired and a foreign token. run with mvn test -Pbenchmark
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class TokenCheckBenchmarkTest {
+
+    private static final String KEY = "SuperSecureSecurityKey";
+
+    private static final String ISSUER = "eCommerce";
+
+    private Algorithm algorithm;
+
+    private JWTService jwtService;
+
+    private PrincipalCache principalCache;
+
+    private String token;
+
+    private String expiredToken;
+
+    //authorization headers
+    private String bearer;
+
+    private String expiredBearer;
+
+    private String foreignBearer;
+
+    private JWTRequestFilter filter;
+
+    @Test
+    public void benchmarkTokenCheck() throws Exception {
+        new Runner(new OptionsBuilder().include(getClass().getName() + "\\.").build()).run();
+    }
+
+    @Setup
+    public void setUp() {
+        algorithm = Algorithm.HMAC256(KEY);
+        jwtService = new JWTService();
+        ReflectionTestUtils.setField(jwtService, "algorithmKey", KEY);
+        ReflectionTestUtils.setField(jwtService, "issuer", ISSUER);
+        ReflectionTestUtils.setField(jwtService, "expiryInSeconds", 3600);
+        jwtService.postConstruct();
+
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("usera");
+        user.setEmailVerified(true);
+        token = jwtService.generateJWT(user);
+        expiredToken = JWT.create().withClaim("USERNAME", "usera").withIssuer(ISSUER)
+                .withExpiresAt(new Date(System.currentTimeMillis() - 1000)).sign(algorithm);
+        bearer = "Bearer " + token;
+        expiredBearer = "Bearer " + expiredToken;
+        foreignBearer = "Bearer " + JWT.create().withClaim("USERNAME", "usera").withIssuer(ISSUER)
+                .sign(Algorithm.HMAC256("NotTheRealSecret"));
+
+        principalCache = new PrincipalCache(1000, 300, new SimpleMeterRegistry());
+        principalCache.put(token, user, principalCache.version());
+
+        //only a valid token missing from the cache reads the user
+        UserRepository userRepository = Mockito.mock(UserRepository.class);
+        Mockito.when(userRepository.findByUsernameIgnoreCaseAndDeletedFalse("usera")).thenReturn(Optional.of(user));
+        filter = new JWTRequestFilter(jwtService, userRepository, principalCache);
+    }
+
+    @Benchmark
+    public String rebuiltVerifier() {
+        return JWT.require(algorithm).withIssuer(ISSUER).build().verify(token).getClaim("USERNAME").asString();
+    }
+
+    @Benchmark
+    public String prebuiltVerifier() {
+        return jwtService.getUsername(token);
+    }
+
+    @Benchmark
+    public User cachedPrincipal() {
+        return principalCache.get(token);
+    }
+
+    @Benchmark
+    public Object expiredRebuiltVerifier() {
+        try {
+            return JWT.require(algorithm).withIssuer(ISSUER).build().verify(expiredToken);
+        } catch (JWTVerificationException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object expiredPrebuiltVerifier() {
+        try {
+            return jwtService.getUsername(expiredToken);
+        } catch (JWTVerificationException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public UsernamePasswordAuthenticationToken filterValidToken() {
+        return filter.checkToken(bearer);
+    }
+
+    @Benchmark
+    public UsernamePasswordAuthenticationToken filterExpiredToken() {
+        return filter.checkToken(expiredBearer);
+    }
+
+    @Benchmark
+    public UsernamePasswordAuthenticationToken filterForeignToken() {
+        return filter.checkToken(foreignBearer);
+    }
+}
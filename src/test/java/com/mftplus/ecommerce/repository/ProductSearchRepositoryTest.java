@@ -0,0 +1,85 @@
+package com.mftplus.ecommerce.repository;
+
+import com.mftplus.ecommerce.api.dto.ProductSummary;
+import com.mftplus.ecommerce.api.dto.SearchRequest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ProductSearchRepositoryTest {
+
+    @Autowired
+    private ProductSearchRepository productSearchRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testAllFiltersCompileIntoOneQuery() {
+        SearchRequest request = new SearchRequest();
+        request.setCategoryNames(List.of("men", "shorts"));
+        request.setBrandName("lcwaikiki");
+        request.setMinPrice(1);
+        request.setMaxPrice(100);
+        request.setEnableOff(true);
+
+        SqlStatementRecorder.start();
+        List<ProductSummary> products = productSearchRepository.findSummariesByCriteria(request, null);
+        String sql = SqlStatementRecorder.stop().get(0);
+
+        Assertions.assertEquals(List.of(1L), products.stream().map(ProductSummary::getId).toList(),
+                "Only product #1 is in men and shorts, lcwaikiki, in price range and on sale.");
+
+        Assertions.assertEquals(1, count(sql, "from product_tbl"),
+                "Product table should only be read once, filters are semi-joins.");
+        Assertions.assertEquals(0, count(sql, "in\\s*\\(\\s*select"),
+                "Filters should not be compiled into IN subqueries.");
+        Assertions.assertEquals(3, count(sql, "exists\\s*\\("),
+                "Categories, price and off percent should each be one EXISTS.");
+
+        //explain only plans the statement, so the parameter values do not matter
+        int parameterCount = count(sql, "\\?");
+        String plan = String.join("\n", jdbcTemplate.query("EXPLAIN " + sql, (rs, i) -> rs.getString(1),
+                Collections.nCopies(parameterCount, null).toArray()));
+
+        Assertions.assertEquals(0, count(plan.toLowerCase(), "in\\s*\\(\\s*select"),
+                "Plan should not contain IN subqueries.");
+        Assertions.assertEquals(1, count(plan.toLowerCase(), "\"product_tbl\""),
+                "Plan should scan product table once.");
+        Assertions.assertTrue(plan.contains("BRAND_ID = B1_0.ID"),
+                "Brand should be a direct indexed join : " + plan);
+    }
+
+    @Test
+    public void testCategoriesAreMatchedTogether() {
+        SearchRequest request = new SearchRequest();
+        request.setCategoryNames(List.of("men"));
+
+        Assertions.assertEquals(List.of(1L, 2L), productSearchRepository.findSummariesByCriteria(request, null)
+                .stream().map(ProductSummary::getId).sorted().toList());
+
+        request.setCategoryNames(List.of("men", "shorts", "men"));
+
+        Assertions.assertEquals(List.of(1L), productSearchRepository.findSummariesByCriteria(request, null)
+                .stream().map(ProductSummary::getId).toList(), "Product should be in every requested category.");
+    }
+
+    private static int count(String text, String regex) {
+        Matcher matcher = Pattern.compile(regex, Pattern.CASE_INSENSITIVE).matcher(text);
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+}
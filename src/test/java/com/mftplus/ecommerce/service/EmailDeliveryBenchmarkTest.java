@@ -0,0 +1,97 @@
+package com.mftplus.ecommerce.service;
+
+import com.icegreen.greenmail.configuration.GreenMailConfiguration;
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.mftplus.ecommerce.ECommerceApplication;
+import com.mftplus.ecommerce.service.event.EmailQueuedEvent;
+import com.mftplus.ecommerce.service.outbox.OutboxDispatcher;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//sustained messages per second from the queue to the smtp server (greenmail), one message per connection against
+//batches. an operation is one message. run with mvn test -Pbenchmark
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(1)
+public class EmailDeliveryBenchmarkTest {
+
+    private static final int MESSAGES = 1000;
+
+    @Param({"1", "5", "25", "100"})
+    private int batchSize;
+
+    private GreenMail greenMail;
+
+    private ConfigurableApplicationContext context;
+
+    private EmailQueue emailQueue;
+
+    private OutboxDispatcher outboxDispatcher;
+
+    @Test
+    public void benchmarkDelivery() throws Exception {
+        new Runner(new OptionsBuilder().include(getClass().getName() + "\\.").build()).run();
+    }
+
+    @Setup
+    public void setUp() {
+        greenMail = new GreenMail(ServerSetupTest.SMTP)
+                .withConfiguration(GreenMailConfiguration.aConfig().withUser("springboot", "secret"));
+        greenMail.start();
+        context = new SpringApplicationBuilder(ECommerceApplication.class).properties("server.port=0").run();
+        emailQueue = context.getBean(EmailQueue.class);
+        outboxDispatcher = context.getBean(OutboxDispatcher.class);
+        ReflectionTestUtils.setField(context.getBean(EmailService.class), "batchSize", batchSize);
+    }
+
+    //an invocation sends MESSAGES messages, long enough for a setup per invocation
+    @Setup(Level.Invocation)
+    public void queue() throws Exception {
+        greenMail.purgeEmailFromAllMailboxes();
+        for (int i = 0; i < MESSAGES; i++) {
+            emailQueue.queue(new EmailQueuedEvent("Benchmark" + i + "@junit.com", "verification", null,
+                    Map.of("link", "http://junit/" + i)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public int deliver() {
+        return outboxDispatcher.drain();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        greenMail.stop();
+    }
+}
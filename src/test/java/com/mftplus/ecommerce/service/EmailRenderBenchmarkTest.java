@@ -0,0 +1,66 @@
+package com.mftplus.ecommerce.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//emails rendered per second by EmailTemplates, templates parsed on every render (spring.thymeleaf.cache=false, as it
+//was) against parsed once. run with mvn test -Pbenchmark
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class EmailRenderBenchmarkTest {
+
+    private static final Map<String, Object> VARIABLES =
+            Map.of("orderId", 12345L, "total", 700L, "link", "http://ecommerce.com/order/12345");
+
+    private EmailTemplates uncached;
+
+    private EmailTemplates cached;
+
+    @Test
+    public void benchmarkRender() throws Exception {
+        new Runner(new OptionsBuilder().include(getClass().getName() + "\\.").build()).run();
+    }
+
+    @Setup
+    public void setUp() {
+        uncached = new EmailTemplates(false, "en");
+        cached = new EmailTemplates(true, "en");
+    }
+
+    @Benchmark
+    public EmailTemplates.Email uncachedTemplates() {
+        return uncached.render("orderPlaced", "en", VARIABLES);
+    }
+
+    @Benchmark
+    public EmailTemplates.Email cachedTemplates() {
+        return cached.render("orderPlaced", "en", VARIABLES);
+    }
+
+    @Benchmark
+    public EmailTemplates.Email cachedTemplatesOtherLocale() {
+        return cached.render("orderPlaced", "fa", VARIABLES);
+    }
+}
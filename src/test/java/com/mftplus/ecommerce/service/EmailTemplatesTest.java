@@ -0,0 +1,44 @@
+package com.mftplus.ecommerce.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+public class EmailTemplatesTest {
+
+    private final EmailTemplates emailTemplates = new EmailTemplates(true, "en");
+
+    @Test
+    public void testRender() {
+        EmailTemplates.Email email = emailTemplates.render("passwordReset", null,
+                Map.of("link", "http://ecommerce.com/auth/reset?token=a&b"));
+
+        Assertions.assertEquals("Your password reset request link.", email.subject());
+        Assertions.assertTrue(email.text().contains("http://ecommerce.com/auth/reset?token=a&b"), "Text should not be escaped.");
+        Assertions.assertTrue(email.html().contains("href=\"http://ecommerce.com/auth/reset?token=a&amp;b\""));
+        Assertions.assertTrue(email.html().contains("dir=\"ltr\""));
+        Assertions.assertFalse(email.html().contains("th:"), "Html should have no template attribute left.");
+    }
+
+    @Test
+    public void testRenderArguments() {
+        EmailTemplates.Email email = emailTemplates.render("orderPlaced", "en",
+                Map.of("orderId", 12345L, "total", 700L, "link", "http://ecommerce.com/order/12345"));
+
+        Assertions.assertEquals("Your order #12345 has been placed.", email.subject(), "Order id should not be grouped.");
+        Assertions.assertTrue(email.text().startsWith("Thank you for your order, its total is 700."));
+    }
+
+    @Test
+    public void testRenderLocale() {
+        EmailTemplates.Email email = emailTemplates.render("verification", "fa", Map.of("link", "http://ecommerce.com"));
+        Assertions.assertEquals("برای فعال شدن حساب، ایمیل خود را تایید کنید.", email.subject());
+        Assertions.assertTrue(email.html().contains("dir=\"rtl\""));
+        Assertions.assertTrue(email.html().contains("lang=\"fa\""));
+
+        email = emailTemplates.render("verification", "de-DE", Map.of("link", "http://ecommerce.com"));
+        Assertions.assertEquals("Verify your email to activate your account.", email.subject(),
+                "A language without messages should get the default ones.");
+    }
+}
@@ -1,10 +1,16 @@
 package com.mftplus.ecommerce.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -25,4 +31,61 @@ public class EncryptionServiceTest {
                 , " Altered password should not be valid!");
 
     }
+
+    @Test
+    public void testSaltPerHash() {
+        String password = "PasswordIsASecret123";
+        String hash = encryptionService.encryptPassword(password);
+        String otherHash = encryptionService.encryptPassword(password);
+
+        Assertions.assertNotEquals(hash.substring(0, 29), otherHash.substring(0, 29), " Every hash should have its own salt.");
+        Assertions.assertTrue(encryptionService.verifyPassword(password, otherHash));
+        Assertions.assertFalse(encryptionService.needsRehash(hash));
+    }
+
+    @Test
+    public void testCostTuning() {
+        EncryptionService service = new EncryptionService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "saltRounds", 4);
+        ReflectionTestUtils.setField(service, "maxRounds", 6);
+        ReflectionTestUtils.setField(service, "hashBudget", 10_000L);
+        ReflectionTestUtils.setField(service, "poolSize", 1);
+        ReflectionTestUtils.setField(service, "queueSize", 1);
+        service.postConstruct();
+        try {
+            Assertions.assertEquals(6, service.getCost(), " A cost 4 hash is far under the budget, the maximum fits.");
+            Assertions.assertTrue(service.needsRehash(BCrypt.hashpw("PasswordIsASecret123", BCrypt.gensalt(4))));
+            Assertions.assertFalse(service.needsRehash(service.encryptPassword("PasswordIsASecret123")));
+            Assertions.assertTrue(service.needsRehash("NotABcryptHash"));
+        } finally {
+            service.preDestroy();
+        }
+    }
+
+    @Test
+    public void testHashingPoolRejectsWhenFull() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        EncryptionService service = new EncryptionService(meterRegistry);
+        ReflectionTestUtils.setField(service, "saltRounds", 4);
+        ReflectionTestUtils.setField(service, "poolSize", 1);
+        ReflectionTestUtils.setField(service, "queueSize", 1);
+        service.postConstruct();
+        try {
+            //a few hundred milliseconds each, the first one runs and the second one waits
+            String hash = BCrypt.hashpw("PasswordIsASecret123", BCrypt.gensalt(12));
+            CompletableFuture<Boolean> running = service.verifyPasswordAsync("PasswordIsASecret123", hash);
+            CompletableFuture<Boolean> queued = service.verifyPasswordAsync("PasswordIsASecret123", hash);
+            CompletableFuture<Boolean> rejected = service.verifyPasswordAsync("PasswordIsASecret123", hash);
+
+            Assertions.assertTrue(rejected.isCompletedExceptionally(), "A full queue should be refused at once.");
+            Assertions.assertThrows(RejectedExecutionException.class,
+                    () -> service.verifyPassword("PasswordIsASecret123", hash));
+            Assertions.assertTrue(running.join());
+            Assertions.assertTrue(queued.join());
+            Assertions.assertEquals(2, meterRegistry.get("password.hash.rejected").counter().count());
+            Assertions.assertEquals(2, meterRegistry.get("password.hash").tag("operation", "verify").timer().count());
+        } finally {
+            service.preDestroy();
+        }
+    }
 }
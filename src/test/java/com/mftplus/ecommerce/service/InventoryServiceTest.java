@@ -0,0 +1,297 @@
+package com.mftplus.ecommerce.service;
+
+import com.mftplus.ecommerce.api.dto.OrderBody;
+import com.mftplus.ecommerce.api.dto.OrderLineBody;
+import com.mftplus.ecommerce.exception.NoContentException;
+import com.mftplus.ecommerce.exception.OutOfStockException;
+import com.mftplus.ecommerce.model.entity.Inventory;
+import com.mftplus.ecommerce.model.entity.Product;
+import com.mftplus.ecommerce.model.entity.User;
+import com.mftplus.ecommerce.repository.InventoryRepository;
+import com.mftplus.ecommerce.repository.ProductRepository;
+import com.mftplus.ecommerce.repository.UserRepository;
+import com.mftplus.ecommerce.service.impl.InventoryServiceImpl;
+import com.mftplus.ecommerce.service.stock.HotStock;
+import com.mftplus.ecommerce.service.stock.InventoryLookup;
+import com.mftplus.ecommerce.service.stock.InventoryPrice;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class InventoryServiceTest {
+
+    //product #4 in blue, 73 in stock
+    private static final long PRODUCT_ID = 4L;
+    private static final long COLOR_ID = 1L;
+
+    @Autowired
+    private InventoryServiceImpl inventoryService;
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private HotStock hotStock;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    public void testReserveCommitRelease() throws Exception {
+        inventoryService.reserve(PRODUCT_ID, COLOR_ID, 3);
+        Assertions.assertEquals(70, stock().getQuantity());
+        Assertions.assertEquals(3, stock().getReserved());
+
+        inventoryService.commitReservation(PRODUCT_ID, COLOR_ID, 1);
+        inventoryService.releaseReservation(PRODUCT_ID, COLOR_ID, 2);
+        Assertions.assertEquals(72, stock().getQuantity());
+        Assertions.assertEquals(0, stock().getReserved());
+
+        Assertions.assertThrows(OutOfStockException.class, () -> inventoryService.reserve(PRODUCT_ID, COLOR_ID, 1000));
+        Assertions.assertThrows(NoContentException.class, () -> inventoryService.releaseReservation(PRODUCT_ID, COLOR_ID, 1));
+        Assertions.assertThrows(OutOfStockException.class, () -> inventoryService.reserve(PRODUCT_ID, 3L, 1),
+                "There is no purple inventory of this product.");
+
+        //put back the committed unit
+        inventoryService.restock(PRODUCT_ID, COLOR_ID, 1);
+        Assertions.assertEquals(73, stock().getQuantity());
+        Assertions.assertThrows(OutOfStockException.class, () -> inventoryService.restock(PRODUCT_ID, COLOR_ID, -74),
+                "Restock should not take the stock below zero.");
+        Assertions.assertThrows(NoContentException.class, () -> inventoryService.restock(PRODUCT_ID, 3L, 1),
+                "There is no purple inventory of this product.");
+
+        Inventory edited = stock();
+        edited.setQuantity(edited.getQuantity() + 10);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> inventoryService.update(edited),
+                "Update should refuse a quantity change instead of dropping it.");
+        Assertions.assertEquals(73, stock().getQuantity());
+    }
+
+    @Test
+    public void testSaveDoesNotOverwriteStock() throws Exception {
+        int stock = stock().getQuantity();
+
+        //an admin edit read before the reservation and saved after it
+        Inventory edited = stock();
+        inventoryService.reserve(PRODUCT_ID, COLOR_ID, 2);
+        edited.setPrice(edited.getPrice() + 1);
+        inventoryService.save(edited);
+        Assertions.assertEquals(stock - 2, stock().getQuantity(), "A stale save should not put the reserved units back.");
+        Assertions.assertEquals(2, stock().getReserved());
+        Assertions.assertEquals(edited.getPrice(), stock().getPrice());
+
+        //the same through the product
+        Product product = productRepository.fetchInventoriesByIdIn(List.of(PRODUCT_ID)).get(0);
+        inventoryService.releaseReservation(PRODUCT_ID, COLOR_ID, 2);
+        productService.save(product);
+        Assertions.assertEquals(stock, stock().getQuantity(), "A stale product save should not drop the released units.");
+        Assertions.assertEquals(0, stock().getReserved());
+
+        edited.setPrice(edited.getPrice() - 1);
+        inventoryService.save(edited);
+    }
+
+    @Test
+    public void testConcurrentReservationsDoNotOversell() throws Exception {
+        int stock = stock().getQuantity();
+        int threads = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger outOfStock = new AtomicInteger();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        inventoryService.reserve(PRODUCT_ID, COLOR_ID, 1);
+                        reserved.incrementAndGet();
+                    } catch (OutOfStockException e) {
+                        outOfStock.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assertions.assertEquals(stock, reserved.get(), "Every unit should be reserved exactly once.");
+        Assertions.assertEquals(threads - stock, outOfStock.get());
+        Assertions.assertEquals(0, stock().getQuantity());
+        Assertions.assertEquals(stock, stock().getReserved());
+
+        inventoryService.releaseReservation(PRODUCT_ID, COLOR_ID, stock);
+        Assertions.assertEquals(stock, stock().getQuantity());
+    }
+
+    @Test
+    public void testHotStockConcurrentReservations() throws Exception {
+        int stock = stock().getQuantity();
+        Assertions.assertEquals(stock, hotStock.enable(PRODUCT_ID, COLOR_ID).getQuantity());
+        try {
+            int threads = 200;
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicInteger reserved = new AtomicInteger();
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        try {
+                            inventoryService.reserve(PRODUCT_ID, COLOR_ID, 1);
+                            reserved.incrementAndGet();
+                        } catch (OutOfStockException e) {
+                            //sold out
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> future : futures) {
+                    future.get(60, TimeUnit.SECONDS);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            Assertions.assertEquals(stock, reserved.get(), "Every unit should be reserved exactly once.");
+
+            hotStock.flush();
+            Assertions.assertEquals(0, stock().getQuantity(), "Flush should write the reservations behind.");
+            Assertions.assertEquals(stock, stock().getReserved());
+
+            inventoryService.commitReservation(PRODUCT_ID, COLOR_ID, 1);
+            inventoryService.releaseReservation(PRODUCT_ID, COLOR_ID, stock - 1);
+            Assertions.assertThrows(NoContentException.class, () -> inventoryService.releaseReservation(PRODUCT_ID, COLOR_ID, 1));
+        } finally {
+            hotStock.disable(PRODUCT_ID, COLOR_ID);
+        }
+        Assertions.assertEquals(stock - 1, stock().getQuantity(), "Disable should flush the counters.");
+        Assertions.assertEquals(0, stock().getReserved());
+
+        //back on the db
+        inventoryService.reserve(PRODUCT_ID, COLOR_ID, 1);
+        Assertions.assertEquals(stock - 2, stock().getQuantity());
+        inventoryService.releaseReservation(PRODUCT_ID, COLOR_ID, 1);
+
+        inventoryService.restock(PRODUCT_ID, COLOR_ID, 1);
+        Assertions.assertEquals(stock, stock().getQuantity());
+    }
+
+    @Test
+    public void testHotReservationReleasedOnRollback() throws Exception {
+        User user = userRepository.findByUsernameIgnoreCaseAndDeletedFalse("UserA").orElseThrow();
+        int stock = stock().getQuantity();
+        hotStock.enable(PRODUCT_ID, COLOR_ID);
+        try {
+            //product #1 in blue is not hot, the order itself is fine : only the outer transaction rolls back
+            OrderBody body = new OrderBody(1L, List.of(new OrderLineBody(PRODUCT_ID, COLOR_ID, 2), new OrderLineBody(1L, 1L, 1)));
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                try {
+                    orderService.placeOrder(user, body);
+                } catch (NoContentException | OutOfStockException e) {
+                    throw new IllegalStateException(e);
+                }
+                Assertions.assertEquals(2, hotStock.findAll().get(0).getReserved());
+                status.setRollbackOnly();
+            });
+
+            Assertions.assertEquals(stock, hotStock.findAll().get(0).getQuantity(), "The hot units should be given back.");
+            Assertions.assertEquals(0, hotStock.findAll().get(0).getReserved());
+            Assertions.assertEquals(0, inventoryRepository.findByProductIdAndColorIdAndDeletedFalse(1L, 1L).orElseThrow().getReserved(),
+                    "The db reservation should be rolled back, not released twice.");
+        } finally {
+            hotStock.disable(PRODUCT_ID, COLOR_ID);
+        }
+        Assertions.assertEquals(stock, stock().getQuantity());
+    }
+
+    @Test
+    public void testLookupByProductAndColor() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        //products #1 and #2 in blue, #1 in red, #2 has no red one
+        List<Long> cart = List.of(InventoryLookup.key(1L, 1L), InventoryLookup.key(1L, 2L),
+                InventoryLookup.key(2L, 1L), InventoryLookup.key(2L, 2L));
+        statistics.clear();
+        Map<Long, InventoryPrice> inventories = inventoryService.findAllByProductIdAndColorIdAndDeletedFalse(cart);
+        Assertions.assertEquals(1, statistics.getPrepareStatementCount(), "A cart should be resolved with one query.");
+        Assertions.assertEquals(3, inventories.size());
+        Assertions.assertEquals(8, inventories.get(InventoryLookup.key(1L, 2L)).getPrice());
+        Assertions.assertFalse(inventories.containsKey(InventoryLookup.key(2L, 2L)));
+
+        statistics.clear();
+        Assertions.assertEquals(90, inventoryService.findByProductIdAndColorIdAndDeletedFalse(2L, 1L).orElseThrow().getPrice());
+        inventoryService.findAllByProductIdAndColorIdAndDeletedFalse(cart.subList(0, 3));
+        Assertions.assertEquals(0, statistics.getPrepareStatementCount(), "Looked up pairs should be cached.");
+
+        //a write drops the product from the cache
+        Inventory inventory = inventoryRepository.findByProductIdAndColorIdAndDeletedFalse(2L, 1L).orElseThrow();
+        inventory.setPrice(91);
+        inventoryService.save(inventory);
+        try {
+            Assertions.assertEquals(91, inventoryService.findByProductIdAndColorIdAndDeletedFalse(2L, 1L).orElseThrow().getPrice());
+        } finally {
+            inventory.setPrice(90);
+            inventoryService.save(inventory);
+        }
+    }
+
+    @Test
+    public void testLookupDroppedOnProductSave() throws Exception {
+        Assertions.assertEquals(90, inventoryService.findByProductIdAndColorIdAndDeletedFalse(2L, 1L).orElseThrow().getPrice());
+
+        //the inventories are written through the product
+        Product product = productRepository.fetchInventoriesByIdIn(List.of(2L)).get(0);
+        Inventory inventory = product.getInventories().stream()
+                .filter(candidate -> candidate.getColor().getId() == 1L).findFirst().orElseThrow();
+        inventory.setPrice(92);
+        productService.save(product);
+        try {
+            Assertions.assertEquals(92, inventoryService.findByProductIdAndColorIdAndDeletedFalse(2L, 1L).orElseThrow().getPrice());
+        } finally {
+            inventory.setPrice(90);
+            productService.save(product);
+        }
+    }
+
+    private Inventory stock() {
+        return inventoryRepository.findByProductIdAndColorIdAndDeletedFalse(PRODUCT_ID, COLOR_ID).orElseThrow();
+    }
+}
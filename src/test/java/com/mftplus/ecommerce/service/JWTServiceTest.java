@@ -2,8 +2,10 @@ package com.mftplus.ecommerce.service;
 
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTDecodeException;
 import com.auth0.jwt.exceptions.MissingClaimException;
 import com.auth0.jwt.exceptions.SignatureVerificationException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
 import com.mftplus.ecommerce.model.entity.User;
 import com.mftplus.ecommerce.repository.UserRepository;
 import org.junit.jupiter.api.Assertions;
@@ -13,6 +15,8 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.util.Date;
+
 @SpringBootTest
 @AutoConfigureMockMvc
 public class JWTServiceTest {
@@ -26,14 +30,29 @@ public class JWTServiceTest {
     @Value("${jwt.algorithm.key}")
     private String algorithmKey;
 
+    @Value("${jwt.issuer}")
+    private String issuer;
+
     @Test
     public void testVerificationTokenNotUsableForLogin(){
         User user = userRepository.findByUsernameIgnoreCaseAndDeletedFalse("UserA").get();
         String token = jwtService.generateVerificationJwt(user);
 
-        Assertions.assertNull(jwtService.getUsername(token),
-                " verification token should not contain token.");
+        Assertions.assertThrows(MissingClaimException.class, () -> jwtService.getUsername(token),
+                " verification token should not be accepted for login.");
+
+    }
+
+    @Test
+    public void testTokensOfOtherPurposesRejected(){
+        User user = userRepository.findByUsernameIgnoreCaseAndDeletedFalse("UserA").get();
 
+        Assertions.assertThrows(MissingClaimException.class,
+                () -> jwtService.getUsername(jwtService.generatePasswordResetJwt(user)));
+        Assertions.assertThrows(MissingClaimException.class,
+                () -> jwtService.getResetPasswordEmail(jwtService.generateJWT(user)));
+        Assertions.assertThrows(MissingClaimException.class,
+                () -> jwtService.getResetPasswordEmail(jwtService.generateVerificationJwt(user)));
     }
 
     @Test
@@ -95,4 +114,23 @@ public class JWTServiceTest {
                 , jwtService.getResetPasswordEmail(token)
                 ,"Email should match inside jwt." );
     }
+
+    @Test
+    public void testExpiredToken() {
+        String token = JWT.create().withClaim("USERNAME", "UserA").withIssuer(issuer)
+                .withExpiresAt(new Date(System.currentTimeMillis() - 1000)).sign(Algorithm.HMAC256(algorithmKey));
+        Assertions.assertThrows(TokenExpiredException.class, () -> jwtService.getUsername(token));
+
+        //expired and badly signed, rejected before the signature is checked
+        String foreign = JWT.create().withClaim("USERNAME", "UserA").withIssuer(issuer)
+                .withExpiresAt(new Date(System.currentTimeMillis() - 1000)).sign(Algorithm.HMAC256("NotTheRealSecret"));
+        Assertions.assertThrows(TokenExpiredException.class, () -> jwtService.getUsername(foreign));
+    }
+
+    @Test
+    public void testMalformedToken() {
+        Assertions.assertThrows(JWTDecodeException.class, () -> jwtService.getUsername("NotAToken"));
+        Assertions.assertThrows(JWTDecodeException.class, () -> jwtService.getUsername("a.b.c.d"));
+        Assertions.assertThrows(JWTDecodeException.class, () -> jwtService.getResetPasswordEmail("x".repeat(5000) + ".a.b"));
+    }
 }
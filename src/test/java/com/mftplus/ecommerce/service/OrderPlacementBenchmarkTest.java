@@ -0,0 +1,134 @@
+package com.mftplus.ecommerce.service;
+
+import com.mftplus.ecommerce.ECommerceApplication;
+import com.mftplus.ecommerce.api.dto.OrderBody;
+import com.mftplus.ecommerce.api.dto.OrderLineBody;
+import com.mftplus.ecommerce.model.entity.Inventory;
+import com.mftplus.ecommerce.model.entity.Order;
+import com.mftplus.ecommerce.model.entity.Product;
+import com.mftplus.ecommerce.model.entity.User;
+import com.mftplus.ecommerce.repository.ColorRepository;
+import com.mftplus.ecommerce.repository.InventoryRepository;
+import com.mftplus.ecommerce.repository.OrderRepository;
+import com.mftplus.ecommerce.repository.ProductRepository;
+import com.mftplus.ecommerce.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//orders per second of the checkout for carts of 1, 10 and 50 lines, against the test context (h2).
+//the statements per order are logged at the end of each trial. run with mvn test -Pbenchmark
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class OrderPlacementBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderPlacementBenchmarkTest.class);
+
+    private static final int PRODUCTS = 50;
+
+    @Param({"1", "10", "50"})
+    private int lines;
+
+    private ConfigurableApplicationContext context;
+
+    private OrderService orderService;
+
+    private User user;
+
+    private OrderBody body;
+
+    private Statistics statistics;
+
+    private final List<Product> products = new ArrayList<>();
+
+    private final List<Inventory> inventories = new ArrayList<>();
+
+    private final List<Long> orderIds = new ArrayList<>();
+
+    @Test
+    public void benchmarkPlaceOrder() throws Exception {
+        new Runner(new OptionsBuilder().include(getClass().getName() + "\\.").build()).run();
+    }
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(ECommerceApplication.class).properties("server.port=0").run();
+        orderService = context.getBean(OrderService.class);
+        ProductRepository productRepository = context.getBean(ProductRepository.class);
+        InventoryRepository inventoryRepository = context.getBean(InventoryRepository.class);
+        ColorRepository colorRepository = context.getBean(ColorRepository.class);
+        user = context.getBean(UserRepository.class).findByUsernameIgnoreCaseAndDeletedFalse("UserA").orElseThrow();
+
+        for (int i = 0; i < PRODUCTS; i++) {
+            //names are letters only
+            String name = "Benchmark" + (char) ('a' + i / 26) + (char) ('a' + i % 26);
+            Product product = productRepository.save(Product.builder().name(name)
+                    .shortDescription("Benchmark").longDescription("Benchmarkproduct").build());
+            products.add(product);
+            inventories.add(inventoryRepository.save(Inventory.builder().product(product)
+                    .color(colorRepository.getReferenceById(1L)).quantity(Integer.MAX_VALUE / 2).price(10).offPercent(0).build()));
+        }
+
+        List<OrderLineBody> cart = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            cart.add(new OrderLineBody(products.get(i).getId(), 1L, 1));
+        }
+        body = new OrderBody(1L, cart);
+
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Benchmark
+    public Order placeOrder() throws Exception {
+        Order order = orderService.placeOrder(user, body);
+        orderIds.add(order.getId());
+        return order;
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (!orderIds.isEmpty()) {
+            logger.info("{} lines : {} statements/order", lines,
+                    String.format("%.1f", (double) statistics.getPrepareStatementCount() / orderIds.size()));
+        }
+        try {
+            context.getBean(OrderRepository.class).deleteAllById(orderIds);
+            context.getBean(InventoryRepository.class).deleteAll(inventories);
+            context.getBean(ProductRepository.class).deleteAll(products);
+        } finally {
+            context.close();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.mftplus.ecommerce.service;
+
+import com.mftplus.ecommerce.model.entity.Color;
+import com.mftplus.ecommerce.service.impl.ColorServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ReferenceDataCacheTest {
+
+    @Autowired
+    private ColorServiceImpl colorService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void testLookupsAreCached() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        colorService.findAllByDeletedFalse();
+        colorService.findByNameAndDeletedFalse("blue");
+        colorService.findById(2L);
+        statistics.clear();
+
+        Assertions.assertEquals(3, colorService.findAllByDeletedFalse().size());
+        Assertions.assertEquals(1L, colorService.findByNameAndDeletedFalse("blue").getId());
+        Assertions.assertEquals("red", colorService.findById(2L).getName());
+        Assertions.assertEquals(0, statistics.getPrepareStatementCount(), "Cached lookups should not hit the database.");
+        Assertions.assertEquals(2, statistics.getQueryCacheHitCount());
+        Assertions.assertTrue(statistics.getSecondLevelCacheHitCount() > 0, "Colors should come from the entity cache.");
+    }
+
+    @Test
+    public void testUpdateIsVisibleAfterWrite() throws Exception {
+        Color purple = colorService.findByNameAndDeletedFalse("purple");
+        try {
+            purple.setName("violet");
+            colorService.update(purple);
+
+            Assertions.assertEquals("violet", colorService.findByIdAndDeletedFalse(purple.getId()).getName());
+            Assertions.assertTrue(colorService.findAllByDeletedFalse().stream().anyMatch(color -> color.getName().equals("violet")),
+                    "Cached list should be invalidated by the update.");
+        } finally {
+            purple.setName("purple");
+            colorService.update(purple);
+        }
+    }
+
+    @Test
+    public void testCacheMetrics() {
+        colorService.findAllByDeletedFalse();
+        Assertions.assertNotNull(meterRegistry.find("hibernate.second.level.cache.requests").meter(),
+                "Cache hits and misses should be published as metrics.");
+    }
+}
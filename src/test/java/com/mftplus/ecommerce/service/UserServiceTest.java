@@ -6,7 +6,6 @@ import com.icegreen.greenmail.util.ServerSetupTest;
 import com.mftplus.ecommerce.api.dto.LoginBody;
 import com.mftplus.ecommerce.api.dto.PasswordResetBody;
 import com.mftplus.ecommerce.api.dto.RegistrationBody;
-import com.mftplus.ecommerce.exception.EmailFailureException;
 import com.mftplus.ecommerce.exception.EmailNotFoundException;
 import com.mftplus.ecommerce.exception.UserAlreadyExistsException;
 import com.mftplus.ecommerce.exception.UserNotVerifiedException;
@@ -15,8 +14,10 @@ import com.mftplus.ecommerce.model.entity.VerificationToken;
 import com.mftplus.ecommerce.repository.UserRepository;
 import com.mftplus.ecommerce.repository.VerificationTokenRepository;
 import com.mftplus.ecommerce.service.impl.UserServiceImpl;
+import com.mftplus.ecommerce.service.outbox.OutboxDispatcher;
 import jakarta.mail.Message;
 import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
 import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -24,8 +25,16 @@ import org.junit.jupiter.api.extension.RegisterExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 //run with coverage for more info
 @SpringBootTest
@@ -52,20 +61,27 @@ public class UserServiceTest {
     @Autowired
     private EncryptionService encryptionService;
 
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     @Test
     @Transactional
-    public void testRegisterUser() throws MessagingException {
+    public void testRegisterUser() {
         RegistrationBody body = new RegistrationBody();
         body.setUsername("UserA");
         body.setEmail("UserServiceTest$testRegisterUser@junit.com");
         body.setFirstName("FirstName");
         body.setLastName("lastName");
         body.setPassword("MySecretPassword123");
+        body.setPhoneNumber("09123858573");
 
         Assertions.assertThrows(UserAlreadyExistsException.class,
                 () -> userService.save(body), " username should already be in use.");
 
-        body.setUsername("UserServiceTestTestRegisterUser");
+        body.setUsername("userservicetest-register");
         body.setEmail("UserA@junit.com");
 
         Assertions.assertThrows(UserAlreadyExistsException.class,
@@ -76,15 +92,13 @@ public class UserServiceTest {
         Assertions.assertDoesNotThrow(
                 () -> userService.save(body), " user should register successfully");
 
-        Assertions.assertEquals(body.getEmail(),
-                greenMailExtension.getReceivedMessages()[0]
-                        .getRecipients(Message.RecipientType.TO)[0].toString());
+        Assertions.assertEquals(1, sentEmails(body.getEmail()).length, " The verification email should be sent.");
     }
 
 
     @Test
     @Transactional
-    public void testLoginUser() throws UserNotVerifiedException, EmailFailureException {
+    public void testLoginUser() throws UserNotVerifiedException {
         LoginBody body = new LoginBody();
 
         body.setUsername("UserA-NotExists");
@@ -109,7 +123,7 @@ public class UserServiceTest {
 
         }catch (UserNotVerifiedException exception){
             Assertions.assertTrue(exception.isNewEmailSent(), " Email verification should be sent.");
-            Assertions.assertEquals(1, greenMailExtension.getReceivedMessages().length);
+            Assertions.assertEquals(1, sentEmails("UserB@junit.com").length);
         }
 
         try {
@@ -118,14 +132,14 @@ public class UserServiceTest {
 
         }catch (UserNotVerifiedException exception){
             Assertions.assertFalse(exception.isNewEmailSent(), " Email verification should be resent.");
-            Assertions.assertEquals(1, greenMailExtension.getReceivedMessages().length);
+            Assertions.assertEquals(1, sentEmails("UserB@junit.com").length);
         }
     }
 
 
     @Test
     @Transactional
-    public void testVerifyUser() throws EmailFailureException {
+    public void testVerifyUser() {
         Assertions.assertFalse(userService.verifyUser("Bad Token"),
                 " Token is bad or does not exist should return false.");
 
@@ -156,10 +170,10 @@ public class UserServiceTest {
         Assertions.assertDoesNotThrow(() -> userService.forgotPassword(
                 "UserA@junit.com"), "Non existing email should be rejected.");
 
-        Assertions.assertEquals("UserA@junit.com",
-                greenMailExtension.getReceivedMessages()[0]
-                        .getRecipients(Message.RecipientType.TO)[0].toString(),
-                "Password reset email should be sent.");
+        MimeMessage[] emails = sentEmails("UserA@junit.com");
+        Assertions.assertEquals(1, emails.length, "Password reset email should be sent.");
+        Assertions.assertEquals("Your password reset request link.", emails[0].getSubject());
+        Assertions.assertTrue(emails[0].getContentType().startsWith("multipart/"), "Email should have html and text parts.");
     }
 
     @Test
@@ -182,4 +196,64 @@ public class UserServiceTest {
                 user.getPassword()), "Password change should be written to DB");
     }
 
+
+    @Test
+    public void testRehashOnLogin() throws Exception {
+        User user = userRepository.findByUsernameIgnoreCaseAndDeletedFalse("UserA").get();
+        String weakHash = BCrypt.hashpw("PasswordA123", BCrypt.gensalt(4));
+        Assertions.assertEquals(1, userRepository.updatePassword(user.getId(), user.getPassword(), weakHash));
+
+        LoginBody body = new LoginBody();
+        body.setUsername("UserA");
+        body.setPassword("PasswordA123");
+        Assertions.assertNotNull(userService.loginUser(body), " The old hash should still log in.");
+
+        //redone in the background
+        String hash = weakHash;
+        for (int i = 0; i < 100 && hash.equals(weakHash); i++) {
+            Thread.sleep(50);
+            hash = userRepository.findByUsernameIgnoreCaseAndDeletedFalse("UserA").get().getPassword();
+        }
+        Assertions.assertFalse(encryptionService.needsRehash(hash), " The hash should have the current cost.");
+        Assertions.assertTrue(encryptionService.verifyPassword("PasswordA123", hash));
+        Assertions.assertNotNull(userService.loginUser(body));
+    }
+
+    @Test
+    public void testLoginUserAsyncNotVerified() throws Exception {
+        LoginBody body = new LoginBody();
+        body.setUsername("UserC");
+        body.setPassword("PasswordC123");
+        LocaleContextHolder.setLocale(Locale.forLanguageTag("fa"));
+        try {
+            //the session of the request stays open while the login starts
+            CompletableFuture<String> login = new TransactionTemplate(transactionManager)
+                    .execute(status -> userService.loginUserAsync(body));
+            LocaleContextHolder.resetLocaleContext();
+            ExecutionException exception = Assertions.assertThrows(ExecutionException.class, login::get);
+            Assertions.assertTrue(exception.getCause() instanceof UserNotVerifiedException notVerified
+                    && notVerified.isNewEmailSent(), " Email verification should be sent.");
+
+            Assertions.assertEquals(1, verificationTokenRepository.findByUser_IdOrderByIdDesc(3L).size());
+            MimeMessage[] emails = sentEmails("UserC@junit.com");
+            Assertions.assertEquals(1, emails.length);
+            Assertions.assertEquals("برای فعال شدن حساب، ایمیل خود را تایید کنید.", emails[0].getSubject(),
+                    " The email should be in the language of the request.");
+        } finally {
+            LocaleContextHolder.resetLocaleContext();
+            verificationTokenRepository.deleteAll(verificationTokenRepository.findByUser_IdOrderByIdDesc(3L));
+        }
+    }
+
+    //the emails are queued, the outbox is drained here instead of by the poller
+    private MimeMessage[] sentEmails(String to) {
+        outboxDispatcher.drain();
+        return Arrays.stream(greenMailExtension.getReceivedMessages()).filter(message -> {
+            try {
+                return message.getRecipients(Message.RecipientType.TO)[0].toString().equals(to);
+            } catch (MessagingException e) {
+                throw new IllegalStateException(e);
+            }
+        }).toArray(MimeMessage[]::new);
+    }
 }
@@ -0,0 +1,168 @@
+package com.mftplus.ecommerce.service.outbox;
+
+import com.icegreen.greenmail.configuration.GreenMailConfiguration;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.mftplus.ecommerce.api.dto.OrderBody;
+import com.mftplus.ecommerce.api.dto.OrderLineBody;
+import com.mftplus.ecommerce.exception.OutOfStockException;
+import com.mftplus.ecommerce.model.entity.OutboxEvent;
+import com.mftplus.ecommerce.model.entity.User;
+import com.mftplus.ecommerce.repository.OrderRepository;
+import com.mftplus.ecommerce.repository.OutboxEventRepository;
+import com.mftplus.ecommerce.repository.UserRepository;
+import com.mftplus.ecommerce.service.EmailQueue;
+import com.mftplus.ecommerce.service.InventoryService;
+import com.mftplus.ecommerce.service.event.EmailQueuedEvent;
+import com.mftplus.ecommerce.service.OrderService;
+import com.mftplus.ecommerce.service.search.SuggestionIndex;
+import jakarta.mail.Message;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class OutboxDispatcherTest {
+
+    @RegisterExtension
+    private static GreenMailExtension greenMailExtension = new GreenMailExtension(ServerSetupTest.SMTP)
+            .withConfiguration(GreenMailConfiguration.aConfig().withUser("springboot", "secret"))
+            .withPerMethodLifecycle(true);
+
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SuggestionIndex suggestionIndex;
+
+    @Autowired
+    private EmailQueue emailQueue;
+
+
+    @Test
+    public void testOrderPlacedIsDispatched() throws Exception {
+        User user = userRepository.findByUsernameIgnoreCaseAndDeletedFalse("UserA").orElseThrow();
+        long popularity = popularity("Product #5");
+
+        //product #5 in blue, 2 in stock
+        long orderId = orderService.placeOrder(user, new OrderBody(1L, List.of(new OrderLineBody(5L, 1L, 2)))).getId();
+        try {
+            List<OutboxEvent> events = events(orderId);
+            Assertions.assertEquals(3, events.size(), "One row per handler, written with the order.");
+
+            Assertions.assertTrue(outboxDispatcher.drain() >= 3);
+            Assertions.assertTrue(events(orderId).isEmpty(), "Handled rows should be deleted.");
+
+            Message[] messages = greenMailExtension.getReceivedMessages();
+            Assertions.assertTrue(Arrays.stream(messages).anyMatch(message -> subject(message).contains("#" + orderId)),
+                    "The confirmation email should be sent.");
+            Assertions.assertEquals(popularity + 2, popularity("Product #5"), "The ordered quantity should rank the product.");
+
+            Assertions.assertEquals(0, outboxDispatcher.drain(), "Nothing should be left.");
+        } finally {
+            inventoryService.releaseReservation(5L, 1L, 2);
+            orderRepository.deleteById(orderId);
+        }
+    }
+
+    @Test
+    public void testFailedOrderWritesNoEvent() {
+        User user = userRepository.findByUsernameIgnoreCaseAndDeletedFalse("UserA").orElseThrow();
+        long events = outboxEventRepository.count();
+        Assertions.assertThrows(OutOfStockException.class,
+                () -> orderService.placeOrder(user, new OrderBody(1L, List.of(new OrderLineBody(5L, 1L, 100)))));
+        Assertions.assertEquals(events, outboxEventRepository.count(), "The outbox rows should roll back with the order.");
+    }
+
+    @Test
+    public void testRetryBackoffAndGiveUp() {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        OutboxEvent event = outboxEventRepository.save(OutboxEvent.builder().handler("no-such-handler").payload("{}")
+                .createdTimeStamp(now).nextAttemptTimeStamp(now).build());
+        try {
+            outboxDispatcher.drain();
+            event = outboxEventRepository.findById(event.getId()).orElseThrow();
+            Assertions.assertEquals(1, event.getAttempts());
+            Assertions.assertFalse(event.isFailed());
+            Assertions.assertTrue(event.getNextAttemptTimeStamp().getTime() >= now.getTime() + 1000,
+                    "The first retry should wait the base delay.");
+
+            outboxDispatcher.drain();
+            Assertions.assertEquals(1, outboxEventRepository.findById(event.getId()).orElseThrow().getAttempts(),
+                    "The event should not be taken before its next attempt.");
+
+            event.setAttempts(9);
+            event.setNextAttemptTimeStamp(now);
+            outboxEventRepository.save(event);
+            outboxDispatcher.drain();
+            event = outboxEventRepository.findById(event.getId()).orElseThrow();
+            Assertions.assertEquals(10, event.getAttempts());
+            Assertions.assertTrue(event.isFailed(), "The event should be given up after max attempts.");
+        } finally {
+            outboxEventRepository.deleteById(event.getId());
+        }
+    }
+
+    @Test
+    public void testQueuedEmailsAreSentInBatches() {
+        for (int i = 0; i < 60; i++) {
+            emailQueue.queue(new EmailQueuedEvent("Queued" + i + "@junit.com", "verification", null, Map.of("link", "http://junit/" + i)));
+        }
+        Assertions.assertEquals(0, greenMailExtension.getReceivedMessages().length, "Nothing should be sent on queue.");
+
+        outboxDispatcher.drain();
+        //60 messages, 3 smtp connections
+        Assertions.assertEquals(60, Arrays.stream(greenMailExtension.getReceivedMessages())
+                .filter(message -> recipient(message).startsWith("Queued")).count());
+        Assertions.assertEquals(0, outboxDispatcher.drain(), "Sent emails should leave the outbox.");
+    }
+
+    private List<OutboxEvent> events(long orderId) {
+        return outboxEventRepository.findAll().stream()
+                .filter(event -> event.getPayload().contains("\"orderId\":" + orderId + ",")).toList();
+    }
+
+    private long popularity(String name) {
+        return suggestionIndex.suggest(name.toLowerCase(), 1).get(0).getPopularity();
+    }
+
+    private static String recipient(Message message) {
+        try {
+            return message.getRecipients(Message.RecipientType.TO)[0].toString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String subject(Message message) {
+        try {
+            return message.getSubject();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
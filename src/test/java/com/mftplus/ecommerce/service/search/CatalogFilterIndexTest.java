@@ -0,0 +1,194 @@
+package com.mftplus.ecommerce.service.search;
+
+import com.mftplus.ecommerce.api.dto.FacetCount;
+import com.mftplus.ecommerce.api.dto.PriceBucket;
+import com.mftplus.ecommerce.api.dto.ProductFacets;
+import com.mftplus.ecommerce.api.dto.SearchRequest;
+import com.mftplus.ecommerce.model.entity.Brand;
+import com.mftplus.ecommerce.model.entity.Category;
+import com.mftplus.ecommerce.repository.BrandRepository;
+import com.mftplus.ecommerce.repository.CategoryRepository;
+import com.mftplus.ecommerce.repository.InventoryRepository;
+import com.mftplus.ecommerce.repository.ProductRepository;
+import com.mftplus.ecommerce.service.event.BrandChangedEvent;
+import com.mftplus.ecommerce.service.event.InventoryChangedEvent;
+import com.mftplus.ecommerce.service.event.ProductChangedEvent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+
+public class CatalogFilterIndexTest {
+
+    private ProductRepository productRepository;
+
+    private InventoryRepository inventoryRepository;
+
+    private CatalogFilterIndex index;
+
+    //same catalog as data.sql
+    @BeforeEach
+    public void setUp() {
+        productRepository = Mockito.mock(ProductRepository.class);
+        inventoryRepository = Mockito.mock(InventoryRepository.class);
+        BrandRepository brandRepository = Mockito.mock(BrandRepository.class);
+        CategoryRepository categoryRepository = Mockito.mock(CategoryRepository.class);
+
+        Mockito.when(brandRepository.findAllByDeletedFalse()).thenReturn(List.of(
+                Brand.builder().id(1L).name("lcwaikiki").build(),
+                Brand.builder().id(2L).name("laboutin").build()));
+        Mockito.when(categoryRepository.findAllByDeletedFalse()).thenReturn(List.of(
+                Category.builder().id(1L).name("men").build(),
+                Category.builder().id(4L).name("shorts").build()));
+        Mockito.when(productRepository.findBrandMembershipsByIdGreaterThan(eq(0L), any())).thenReturn(List.of(
+                new ProductMembership(1L, 1L), new ProductMembership(2L, 1L), new ProductMembership(3L, 1L),
+                new ProductMembership(4L, 2L), new ProductMembership(5L, 2L)));
+        Mockito.when(productRepository.findCategoryMembershipsByIdIn(anyCollection())).thenReturn(List.of(
+                new ProductMembership(1L, 1L), new ProductMembership(1L, 4L), new ProductMembership(2L, 1L)));
+        Mockito.when(inventoryRepository.findFilterRowsByProductIdIn(anyCollection())).thenReturn(List.of(
+                new InventoryRow(1L, 1L, 6, 90), new InventoryRow(1L, 2L, 8, 78),
+                new InventoryRow(2L, 1L, 90, 20), new InventoryRow(3L, 1L, 78, 0),
+                new InventoryRow(4L, 1L, 56, 0), new InventoryRow(5L, 1L, 53, 10)));
+
+        index = new CatalogFilterIndex(productRepository, inventoryRepository, brandRepository, categoryRepository);
+        index.setEnabled(true);
+    }
+
+    @Test
+    public void testDisabledOrNotBuilt() {
+        Assertions.assertNull(index.filter(new SearchRequest(), null), "Index should not answer before it is built.");
+    }
+
+    @Test
+    public void testFilter() {
+        index.rebuild();
+
+        SearchRequest request = new SearchRequest();
+        Assertions.assertArrayEquals(new long[]{1, 2, 3, 4, 5}, index.filter(request, null).toArray());
+
+        request.setCategoryNames(List.of("men", "shorts"));
+        Assertions.assertArrayEquals(new long[]{1}, index.filter(request, null).toArray(), "Categories should be and-ed.");
+
+        request = new SearchRequest();
+        request.setBrandName("lcwaikiki");
+        request.setMinPrice(50);
+        request.setMaxPrice(90);
+        Assertions.assertArrayEquals(new long[]{2, 3}, index.filter(request, null).toArray());
+
+        request = new SearchRequest();
+        request.setColorId(2L);
+        Assertions.assertArrayEquals(new long[]{1}, index.filter(request, null).toArray());
+
+        request = new SearchRequest();
+        request.setEnableOff(true);
+        Assertions.assertArrayEquals(new long[]{2, 5}, index.filter(request, new long[]{2, 3, 4, 5}).toArray());
+
+        request = new SearchRequest();
+        request.setBrandName("unknown");
+        Assertions.assertTrue(index.filter(request, null).isEmpty(), "Unknown names should match nothing.");
+    }
+
+    @Test
+    public void testFacets() {
+        index.rebuild();
+
+        SearchRequest request = new SearchRequest();
+        request.setBrandName("lcwaikiki");
+        ProductFacets facets = index.facets(request, null, new int[]{50, 100, 200, 500});
+
+        Assertions.assertEquals(3, facets.getTotal());
+        Assertions.assertEquals(List.of("lcwaikiki:3", "laboutin:2"), counts(facets.getBrands()));
+        Assertions.assertEquals(List.of("men:2", "shorts:1"), counts(facets.getCategories()));
+        Assertions.assertEquals(List.of(1L, 2L, 0L, 0L, 0L),
+                facets.getPrices().stream().map(PriceBucket::getCount).toList());
+        Assertions.assertEquals(2, facets.getOnSale());
+    }
+
+    @Test
+    public void testChanges() {
+        index.rebuild();
+
+        //product #4 gets a cheap inventory on sale
+        Mockito.when(productRepository.findBrandMembershipsByIdIn(List.of(4L)))
+                .thenReturn(List.of(new ProductMembership(4L, 2L)));
+        Mockito.when(productRepository.findCategoryMembershipsByIdIn(anyCollection())).thenReturn(List.of());
+        Mockito.when(inventoryRepository.findFilterRowsByProductIdIn(anyCollection())).thenReturn(List.of(
+                new InventoryRow(4L, 1L, 56, 0), new InventoryRow(4L, 3L, 10, 50)));
+        index.onInventoryChanged(new InventoryChangedEvent(4L));
+
+        SearchRequest request = new SearchRequest();
+        request.setMinPrice(1);
+        request.setMaxPrice(20);
+        Assertions.assertArrayEquals(new long[]{1, 4}, index.filter(request, null).toArray());
+        request = new SearchRequest();
+        request.setColorId(3L);
+        Assertions.assertArrayEquals(new long[]{4}, index.filter(request, null).toArray());
+
+        index.onBrandChanged(new BrandChangedEvent(2L, "louboutin", false));
+        request = new SearchRequest();
+        request.setBrandName("louboutin");
+        Assertions.assertArrayEquals(new long[]{4, 5}, index.filter(request, null).toArray(), "Brand should be renamed.");
+
+        //deleted products are not returned by the membership query
+        Mockito.when(productRepository.findBrandMembershipsByIdIn(List.of(5L))).thenReturn(List.of());
+        index.onInventoryChanged(new InventoryChangedEvent(5L));
+        Assertions.assertArrayEquals(new long[]{4}, index.filter(request, null).toArray());
+    }
+
+    @Test
+    public void testNamesAreNotUnique() {
+        index.rebuild();
+        //brand #3 has the name of brand #2, product #6 is of brand #3
+        Mockito.when(productRepository.findBrandMembershipsByIdIn(List.of(6L)))
+                .thenReturn(List.of(new ProductMembership(6L, 3L)));
+        Mockito.when(productRepository.findCategoryMembershipsByIdIn(anyCollection())).thenReturn(List.of());
+        Mockito.when(inventoryRepository.findFilterRowsByProductIdIn(anyCollection())).thenReturn(List.of());
+        index.onBrandChanged(new BrandChangedEvent(3L, "laboutin", false));
+        index.onProductChanged(new ProductChangedEvent(6L, "Product #6", false));
+
+        SearchRequest request = new SearchRequest();
+        request.setBrandName("laboutin");
+        Assertions.assertArrayEquals(new long[]{4, 5, 6}, index.filter(request, null).toArray(),
+                "Every brand of the name should match.");
+        Assertions.assertEquals(List.of("laboutin:3", "lcwaikiki:3"),
+                counts(index.facets(request, null, new int[]{50}).getBrands()), "One count per name.");
+
+        index.onBrandChanged(new BrandChangedEvent(3L, "louboutin", false));
+        Assertions.assertArrayEquals(new long[]{4, 5}, index.filter(request, null).toArray(),
+                "Renaming brand #3 should keep brand #2 under its name.");
+        request.setBrandName("louboutin");
+        Assertions.assertArrayEquals(new long[]{6}, index.filter(request, null).toArray());
+    }
+
+    @Test
+    public void testChangesDuringRebuild() {
+        ReentrantReadWriteLock lock = (ReentrantReadWriteLock) ReflectionTestUtils.getField(index, "lock");
+        //product #5 is deleted while the rebuild reads the first page
+        Mockito.when(productRepository.findBrandMembershipsByIdGreaterThan(eq(0L), any())).thenAnswer(invocation -> {
+            index.onInventoryChanged(new InventoryChangedEvent(5L));
+            return List.of(new ProductMembership(1L, 1L), new ProductMembership(2L, 1L), new ProductMembership(3L, 1L),
+                    new ProductMembership(4L, 2L), new ProductMembership(5L, 2L));
+        });
+        Mockito.when(productRepository.findBrandMembershipsByIdIn(anyCollection())).thenAnswer(invocation -> {
+            Assertions.assertFalse(lock.isWriteLockedByCurrentThread(), "Rows should be read outside the write lock.");
+            return List.of();
+        });
+        index.rebuild();
+
+        Assertions.assertArrayEquals(new long[]{1, 2, 3, 4}, index.filter(new SearchRequest(), null).toArray(),
+                "Changes committed during the rebuild should be replayed.");
+        Mockito.verify(productRepository, Mockito.times(2)).findBrandMembershipsByIdIn(anyCollection());
+    }
+
+    private static List<String> counts(List<FacetCount> counts) {
+        return counts.stream().map(count -> count.getValue() + ":" + count.getCount()).toList();
+    }
+}
@@ -0,0 +1,136 @@
+package com.mftplus.ecommerce.service.search;
+
+import com.mftplus.ecommerce.api.dto.CategoryNode;
+import com.mftplus.ecommerce.repository.CategoryRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CategoryTreeTest {
+
+    private CategoryRepository categoryRepository;
+
+    private CategoryTree tree;
+
+    @BeforeEach
+    public void setUp() {
+        categoryRepository = Mockito.mock(CategoryRepository.class);
+        //men > shorts > winterShorts, men > shirts, woman
+        Mockito.when(categoryRepository.findRows()).thenReturn(List.of(
+                new CategoryRow(1L, "men", null, false, 3L),
+                new CategoryRow(2L, "woman", null, false, 1L),
+                new CategoryRow(3L, "shorts", 1L, false, 2L),
+                new CategoryRow(4L, "winterShorts", 3L, false, 1L),
+                new CategoryRow(5L, "shirts", 1L, true, 0L)));
+        tree = new CategoryTree(categoryRepository);
+    }
+
+    @Test
+    public void testPathsAndDescendants() {
+        CategoryTree.Snapshot snapshot = tree.current();
+
+        Assertions.assertEquals(List.of("winterShorts", "shorts", "men"),
+                snapshot.findByName("winterShorts").getPath().stream().map(CategoryTree.Node::getName).toList());
+        Assertions.assertEquals(List.of(1L, 3L, 4L, 5L),
+                snapshot.findById(1L).getDescendantIds().stream().sorted().toList());
+        Assertions.assertEquals(List.of(2L), snapshot.findByName("woman").getDescendantIds());
+        Assertions.assertTrue(snapshot.findByName("shirts").isDeleted());
+        Assertions.assertNull(snapshot.findByName("hats"));
+    }
+
+    @Test
+    public void testMenu() {
+        CategoryTree.Snapshot snapshot = tree.current();
+
+        List<CategoryNode> roots = snapshot.menu(null, 1);
+        Assertions.assertEquals(List.of("men", "woman"), roots.stream().map(CategoryNode::getName).toList());
+        CategoryNode men = roots.get(0);
+        Assertions.assertEquals(3L, men.getProductCount());
+        Assertions.assertEquals(1, men.getChildren().size(), "Deleted categories should not be listed.");
+        CategoryNode shorts = men.getChildren().get(0);
+        Assertions.assertTrue(shorts.getChildren().isEmpty(), "Depth 1 should stop under the roots.");
+        Assertions.assertFalse(shorts.isLeaf());
+        Assertions.assertTrue(roots.get(1).isLeaf());
+
+        CategoryNode fullShorts = snapshot.menu(snapshot.findByName("shorts"), 5).get(0);
+        Assertions.assertEquals("winterShorts", fullShorts.getChildren().get(0).getName());
+        Assertions.assertSame(snapshot.menu(null, 1), roots, "Menus should be cut once per snapshot.");
+    }
+
+    @Test
+    public void testSnapshotIsReplacedOnChange() {
+        CategoryTree.Snapshot first = tree.current();
+        Assertions.assertSame(first, tree.current(), "Reads should share the snapshot.");
+
+        Mockito.when(categoryRepository.findRows()).thenReturn(List.of(
+                new CategoryRow(1L, "men", null, false, 0L),
+                new CategoryRow(3L, "shorts", 1L, false, 0L),
+                new CategoryRow(6L, "hats", 3L, false, 0L)));
+        tree.onCategoryChanged(null);
+
+        Assertions.assertNotEquals(first.getVersion(), tree.current().getVersion());
+        Assertions.assertEquals(List.of("hats", "shorts", "men"),
+                tree.current().findByName("hats").getPath().stream().map(CategoryTree.Node::getName).toList());
+        Assertions.assertEquals(5, first.size(), "Old snapshot should stay untouched.");
+    }
+
+    @Test
+    public void testProductWritesAreCoalesced() {
+        CategoryTree.Snapshot first = tree.current();
+
+        tree.onProductChanged(null);
+        tree.onProductChanged(null);
+        Assertions.assertSame(first, tree.current(), "Product writes should not reload the tree on their own.");
+        tree.refreshCounts();
+        tree.refreshCounts();
+        Mockito.verify(categoryRepository, Mockito.times(2)).findRows();
+        Assertions.assertEquals(first.getVersion(), tree.current().getVersion(),
+                "Same counts should keep the version.");
+
+        Mockito.when(categoryRepository.findRows()).thenReturn(List.of(
+                new CategoryRow(1L, "men", null, false, 4L),
+                new CategoryRow(2L, "woman", null, false, 1L),
+                new CategoryRow(3L, "shorts", 1L, false, 3L),
+                new CategoryRow(4L, "winterShorts", 3L, false, 1L),
+                new CategoryRow(5L, "shirts", 1L, true, 0L)));
+        tree.onProductChanged(null);
+        tree.refreshCounts();
+        Assertions.assertNotEquals(first.getVersion(), tree.current().getVersion());
+        Assertions.assertEquals(4L, tree.current().findByName("men").getProductCount());
+    }
+
+    @Test
+    public void testCyclicParentsDoNotLoop() {
+        Mockito.when(categoryRepository.findRows()).thenReturn(List.of(
+                new CategoryRow(1L, "men", 2L, false, 0L),
+                new CategoryRow(2L, "woman", 1L, false, 0L)));
+
+        CategoryTree.Snapshot snapshot = tree.rebuild();
+        Assertions.assertEquals(2, snapshot.size());
+        Assertions.assertNotNull(snapshot.findById(1L).getPath());
+        Assertions.assertNotNull(snapshot.findById(2L).getPath());
+    }
+
+    @Test
+    public void testOlderRebuildDoesNotReplaceNewerRows() {
+        List<CategoryRow> older = List.of(new CategoryRow(1L, "men", null, false, 0L));
+        List<CategoryRow> newer = List.of(new CategoryRow(1L, "men", null, false, 0L),
+                new CategoryRow(2L, "woman", null, false, 0L));
+        AtomicInteger reads = new AtomicInteger();
+        Mockito.when(categoryRepository.findRows()).thenAnswer(invocation -> {
+            if (reads.incrementAndGet() == 1) {
+                //a second rebuild starts and finishes while the first one is still reading
+                Assertions.assertEquals(2, tree.rebuild().size());
+                return older;
+            }
+            return newer;
+        });
+
+        Assertions.assertEquals(2, tree.rebuild().size(), "The rows of the newer rebuild should be kept.");
+        Assertions.assertEquals(2, tree.current().size());
+    }
+}
@@ -0,0 +1,151 @@
+package com.mftplus.ecommerce.service.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//product search through the endpoint with the indexes on and off, the answer should not change
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ProductSearchIndexTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private CatalogFilterIndex catalogFilterIndex;
+
+    @Autowired
+    private ProductTextIndex productTextIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${product.search.text-index.max-candidates}")
+    private int maxCandidates;
+
+    @Test
+    @Transactional
+    public void testProductTextSearchSkipsDeletedProducts() throws Exception {
+        //not in the text index, which is only built from the products that are not deleted
+        jdbcTemplate.update("INSERT INTO product_tbl (id, p_name, short_description, long_description, deleted, brand_id)" +
+                " VALUES (1001, 'Product #1001', 'Deleted.', 'A deleted product.', true, 1)");
+
+        String indexed = mvc.perform(get("/product/search").param("name", "Product #"))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andReturn().getResponse().getContentAsString();
+
+        productTextIndex.setMaxCandidates(0);
+        try {
+            String scanned = mvc.perform(get("/product/search").param("name", "Product #"))
+                    .andExpect(status().is(HttpStatus.OK.value()))
+                    .andReturn().getResponse().getContentAsString();
+
+            Assertions.assertEquals(List.of(1L, 2L, 3L, 4L, 5L),
+                    new ObjectMapper().readTree(indexed).get("products").findValues("id").stream()
+                            .map(JsonNode::asLong).toList());
+            Assertions.assertEquals(new ObjectMapper().readTree(indexed), new ObjectMapper().readTree(scanned),
+                    "The like scan should return the same products as the text index.");
+        } finally {
+            productTextIndex.setMaxCandidates(maxCandidates);
+        }
+    }
+
+    @Test
+    public void testProductSearchWithFilterIndex() throws Exception {
+        catalogFilterIndex.setEnabled(true);
+        catalogFilterIndex.rebuild();
+        try {
+            List<Long> ids = new ArrayList<>();
+            String cursor = null;
+            do {
+                var request = get("/product/search").param("limit", "2").param("sort", "ID_DESC")
+                        .param("brand", "lcwaikiki");
+                if (cursor != null) {
+                    request.param("cursor", cursor);
+                }
+                JsonNode page = new ObjectMapper().readTree(mvc.perform(request)
+                        .andExpect(status().is(HttpStatus.OK.value()))
+                        .andReturn().getResponse().getContentAsString());
+                page.get("products").forEach(product -> ids.add(product.get("id").asLong()));
+                cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+            } while (cursor != null && ids.size() < 10);
+            Assertions.assertEquals(List.of(3L, 2L, 1L), ids, "Pages should be cut from the bitmap in id order.");
+
+            String json = mvc.perform(get("/product/search").param("name", "Product #").param("minPrice", "50")
+                            .param("maxPrice", "100").param("sort", "NAME_ASC").param("facets", "true"))
+                    .andExpect(status().is(HttpStatus.OK.value()))
+                    .andReturn().getResponse().getContentAsString();
+            JsonNode page = new ObjectMapper().readTree(json);
+            Assertions.assertEquals(List.of("Product #2", "Product #3", "Product #4", "Product #5"),
+                    new ObjectMapper().convertValue(page.get("products").findValuesAsText("name"), List.class));
+            Assertions.assertEquals(4, page.get("facets").get("total").asLong());
+        } finally {
+            catalogFilterIndex.setEnabled(false);
+        }
+    }
+
+    @Test
+    @Transactional
+    public void testFilterIndexDoesNotChangeTheResult() throws Exception {
+        //deleted rows the index is built without : a product, an inventory, a brand and a category
+        jdbcTemplate.update("INSERT INTO brand_tbl (id, b_name, deleted) VALUES (1001, 'oldBrand', true)");
+        jdbcTemplate.update("INSERT INTO category_tbl (id, c_name, deleted) VALUES (1001, 'oldCategory', true)");
+        jdbcTemplate.update("INSERT INTO product_tbl (id, p_name, short_description, long_description, deleted, brand_id)" +
+                " VALUES (1001, 'Product #1001', 'Deleted.', 'A deleted product.', true, 1)" +
+                "      , (1002, 'Product #1002', 'Old brand.', 'A product of a deleted brand.', false, 1001)");
+        jdbcTemplate.update("INSERT INTO category_products_tbl (product_id, categories_id) VALUES (1001, 1), (2, 1001)");
+        jdbcTemplate.update("INSERT INTO inventory_tbl (id, product_id, i_quantity, deleted, color_id, i_price, i_off_percent)" +
+                " VALUES (1001, 1001, 5, false, 1, 20, 50), (1002, 3, 5, true, 2, 5, 30)");
+
+        List<String> queries = List.of("", "brand=lcwaikiki", "brand=oldBrand", "category=men", "category=oldCategory",
+                "color=2", "minPrice=1&maxPrice=40", "enableOff=true", "name=Product #&sort=NAME_DESC", "sort=ID_DESC");
+        List<JsonNode> fromDb = new ArrayList<>();
+        for (String query : queries) {
+            fromDb.add(search(query));
+        }
+
+        catalogFilterIndex.setEnabled(true);
+        catalogFilterIndex.rebuild();
+        try {
+            for (int i = 0; i < queries.size(); i++) {
+                Assertions.assertEquals(fromDb.get(i), search(queries.get(i)),
+                        "Page and facets should not depend on the filter index : " + queries.get(i));
+            }
+        } finally {
+            catalogFilterIndex.setEnabled(false);
+        }
+        Assertions.assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 1002L),
+                fromDb.get(0).get("products").findValues("id").stream().map(JsonNode::asLong).toList());
+        Assertions.assertEquals(List.of(1L), fromDb.get(5).get("products").findValues("id").stream()
+                .map(JsonNode::asLong).toList(), "The red inventory of product #3 is deleted.");
+    }
+
+    private JsonNode search(String query) throws Exception {
+        var request = get("/product/search").param("facets", "true");
+        for (String parameter : query.split("&")) {
+            if (!parameter.isEmpty()) {
+                request.param(parameter.substring(0, parameter.indexOf('=')),
+                        parameter.substring(parameter.indexOf('=') + 1));
+            }
+        }
+        return new ObjectMapper().readTree(mvc.perform(request)
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andReturn().getResponse().getContentAsString());
+    }
+}
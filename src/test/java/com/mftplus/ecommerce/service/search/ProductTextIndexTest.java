@@ -0,0 +1,71 @@
+package com.mftplus.ecommerce.service.search;
+
+import com.mftplus.ecommerce.repository.ProductRepository;
+import com.mftplus.ecommerce.service.event.ProductChangedEvent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+public class ProductTextIndexTest {
+
+    private ProductTextIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        ProductRepository productRepository = Mockito.mock(ProductRepository.class);
+        Mockito.when(productRepository.findTextsByIdGreaterThan(eq(0L), any())).thenReturn(List.of(
+                new ProductText(1L, "Blue Shirt"),
+                new ProductText(2L, "Red Shorts"),
+                new ProductText(3L, "Blue Jeans")));
+
+        index = new ProductTextIndex(productRepository);
+        index.setMaxCandidates(2);
+    }
+
+    @Test
+    public void testNotReadyBeforeRebuild() {
+        Assertions.assertNull(index.findCandidates("shirt"), "Index should not answer before it is built.");
+    }
+
+    @Test
+    public void testCandidates() {
+        index.rebuild();
+
+        Assertions.assertArrayEquals(new long[]{1L}, index.findCandidates("SHIRT"), "Search should ignore case.");
+        Assertions.assertArrayEquals(new long[0], index.findCandidates("cotton"), "Descriptions should not be indexed.");
+        Assertions.assertArrayEquals(new long[0], index.findCandidates("sweater"));
+        Assertions.assertNull(index.findCandidates("bl"), "Text shorter than a gram should fall back to the scan.");
+        Assertions.assertNull(index.findCandidates("s"), "Too short to use the index.");
+    }
+
+    @Test
+    public void testTooManyCandidates() {
+        index.rebuild();
+
+        //"blu" is in two products but "e j" is only in the jeans
+        Assertions.assertArrayEquals(new long[]{3L}, index.findCandidates("blue j"));
+        index.setMaxCandidates(1);
+        Assertions.assertNull(index.findCandidates("blue"), "Too many candidates should fall back to the scan.");
+    }
+
+    @Test
+    public void testProductChanges() {
+        index.rebuild();
+
+        index.onProductChanged(new ProductChangedEvent(1L, "Green Shirt", false));
+        Assertions.assertArrayEquals(new long[0], index.findCandidates("blue shirt"), "Old text should be unindexed.");
+        Assertions.assertArrayEquals(new long[]{1L}, index.findCandidates("green"));
+
+        index.onProductChanged(new ProductChangedEvent(4L, "Blue Cap", false));
+        Assertions.assertArrayEquals(new long[]{4L}, index.findCandidates("blue cap"));
+
+        index.onProductChanged(new ProductChangedEvent(3L, "Blue Jeans", true));
+        Assertions.assertArrayEquals(new long[0], index.findCandidates("jeans"), "Deleted products should be unindexed.");
+    }
+}
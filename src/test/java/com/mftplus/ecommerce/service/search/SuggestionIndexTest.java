@@ -0,0 +1,82 @@
+package com.mftplus.ecommerce.service.search;
+
+import com.mftplus.ecommerce.api.dto.Suggestion;
+import com.mftplus.ecommerce.api.dto.SuggestionType;
+import com.mftplus.ecommerce.repository.BrandRepository;
+import com.mftplus.ecommerce.repository.CategoryRepository;
+import com.mftplus.ecommerce.repository.ProductRepository;
+import com.mftplus.ecommerce.service.event.BrandChangedEvent;
+import com.mftplus.ecommerce.service.event.ProductChangedEvent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+public class SuggestionIndexTest {
+
+    private SuggestionIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        ProductRepository productRepository = Mockito.mock(ProductRepository.class);
+        BrandRepository brandRepository = Mockito.mock(BrandRepository.class);
+        CategoryRepository categoryRepository = Mockito.mock(CategoryRepository.class);
+        Mockito.when(productRepository.findSuggestionsByIdGreaterThan(eq(0L), any())).thenReturn(List.of(
+                new Suggestion(SuggestionType.PRODUCT, 1L, "Blue Shirt", 10),
+                new Suggestion(SuggestionType.PRODUCT, 2L, "Blue Jeans", 30),
+                new Suggestion(SuggestionType.PRODUCT, 3L, "Red Shirt", 20)));
+        Mockito.when(brandRepository.findSuggestions()).thenReturn(List.of(
+                new Suggestion(SuggestionType.BRAND, 1L, "Bluebird", 5)));
+        Mockito.when(categoryRepository.findSuggestions()).thenReturn(List.of(
+                new Suggestion(SuggestionType.CATEGORY, 1L, "Shirts", 30)));
+
+        index = new SuggestionIndex(productRepository, brandRepository, categoryRepository);
+        ReflectionTestUtils.setField(index, "maxSize", 3);
+        index.rebuild();
+    }
+
+    @Test
+    public void testRankedByPopularity() {
+        Assertions.assertEquals(List.of("Blue Jeans", "Blue Shirt", "Bluebird"), texts(index.suggest("BLU", 3)));
+        Assertions.assertEquals(List.of("Blue Jeans"), texts(index.suggest("blu", 1)));
+        Assertions.assertEquals(List.of(), texts(index.suggest("green", 3)));
+        Assertions.assertEquals(List.of(), texts(index.suggest("", 3)));
+    }
+
+    @Test
+    public void testEveryWordIsAPrefix() {
+        Assertions.assertEquals(List.of("Shirts", "Red Shirt", "Blue Shirt"), texts(index.suggest("shirt", 3)));
+        Assertions.assertSame(index.suggest("shirt", 3), index.suggest("shirt", 3),
+                "Lookups should return the ranking kept in the trie.");
+    }
+
+    @Test
+    public void testPrefixLowerCasedLikeTheNames() {
+        index.onProductChanged(new ProductChangedEvent(7L, "İstanbul Scarf", false));
+        Assertions.assertEquals(List.of("İstanbul Scarf"), texts(index.suggest("İst", 3)));
+    }
+
+    @Test
+    public void testIncrementalChanges() {
+        index.onProductChanged(new ProductChangedEvent(1L, "Green Shirt", false));
+        Assertions.assertEquals(List.of("Blue Jeans", "Bluebird"), texts(index.suggest("blu", 3)));
+        Assertions.assertEquals(List.of("Green Shirt"), texts(index.suggest("gr", 3)));
+
+        index.onBrandChanged(new BrandChangedEvent(2L, "Greenland", false));
+        Assertions.assertEquals(List.of("Green Shirt", "Greenland"), texts(index.suggest("green", 3)),
+                "A renamed product keeps its popularity, a new brand has none.");
+
+        index.onProductChanged(new ProductChangedEvent(2L, "Blue Jeans", true));
+        Assertions.assertEquals(List.of("Bluebird"), texts(index.suggest("blu", 3)));
+    }
+
+    private static List<String> texts(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::getText).toList();
+    }
+}
@@ -0,0 +1,162 @@
+package com.mftplus.ecommerce.service.stock;
+
+import com.mftplus.ecommerce.model.entity.Color;
+import com.mftplus.ecommerce.model.entity.Inventory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+
+public class HotStockTest {
+
+    @TempDir
+    private Path journalDir;
+
+    private HotStockStore store;
+
+    private HotStock hotStock;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        store = Mockito.mock(HotStockStore.class);
+        hotStock = new HotStock(store);
+        ReflectionTestUtils.setField(hotStock, "stripeCount", 4);
+        ReflectionTestUtils.setField(hotStock, "journalDir", journalDir.toString());
+        ReflectionTestUtils.setField(hotStock, "fsync", false);
+        ReflectionTestUtils.setField(hotStock, "switchTimeoutMillis", 200L);
+    }
+
+    @Test
+    public void testReservationsTakeFromEveryStripe() throws Exception {
+        Mockito.when(store.lastFlushedEpoch()).thenReturn(0L);
+        hotStock.recover();
+        Inventory inventory = Inventory.builder().id(7L).quantity(6).reserved(0).color(new Color()).build();
+        Mockito.when(store.lock(1L, 2L)).thenReturn(inventory);
+        hotStock.enable(1L, 2L);
+
+        //6 units over 4 stripes : no single stripe holds 5
+        Assertions.assertTrue(hotStock.reserve(1L, 2L, 5, () -> Assertions.fail("Hot stock should not go to the db.")));
+        Assertions.assertFalse(hotStock.reserve(1L, 2L, 2, () -> true), "Only one unit is left.");
+        Assertions.assertTrue(hotStock.commit(1L, 2L, 5, () -> false));
+        Assertions.assertFalse(hotStock.release(1L, 2L, 1, () -> true), "Nothing is reserved anymore.");
+        Assertions.assertEquals(1, hotStock.findAll().get(0).getQuantity());
+
+        Assertions.assertTrue(hotStock.reserve(3L, 2L, 1, () -> true), "Other inventories go to the db.");
+
+        hotStock.flush();
+        ArgumentCaptor<Map<Long, long[]>> deltas = ArgumentCaptor.forClass(Map.class);
+        Mockito.verify(store).apply(deltas.capture(), eq(1L));
+        Assertions.assertArrayEquals(new long[]{-5, 0}, deltas.getValue().get(7L));
+        try (var files = Files.list(journalDir)) {
+            Assertions.assertTrue(files.allMatch(file -> file.getFileName().toString().startsWith("stock-journal-2-")),
+                    "Flushed segments should be deleted.");
+        }
+    }
+
+    @Test
+    public void testSwitchOnlyFencesItsInventory() throws Exception {
+        Mockito.when(store.lastFlushedEpoch()).thenReturn(0L);
+        hotStock.recover();
+        CountDownLatch locking = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(store.lock(1L, 2L)).thenAnswer(invocation -> {
+            locking.countDown();
+            release.await();
+            return Inventory.builder().id(7L).quantity(6).reserved(0).build();
+        });
+        Thread enable = new Thread(() -> {
+            try {
+                hotStock.enable(1L, 2L);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        enable.start();
+        try {
+            Assertions.assertTrue(locking.await(5, TimeUnit.SECONDS));
+            Assertions.assertTrue(hotStock.reserve(3L, 2L, 1, () -> true),
+                    "Other inventories should go to the db while the row is being locked.");
+        } finally {
+            release.countDown();
+            enable.join();
+        }
+        Assertions.assertEquals(1, hotStock.findAll().size());
+    }
+
+    @Test
+    public void testSwitchGivesUpOnABusyRow() throws Exception {
+        Mockito.when(store.lastFlushedEpoch()).thenReturn(0L);
+        hotStock.recover();
+        Mockito.when(store.lock(1L, 2L))
+                .thenThrow(new PessimisticLockingFailureException("busy"))
+                .thenReturn(Inventory.builder().id(7L).quantity(6).reserved(0).build());
+        Assertions.assertEquals(6, hotStock.enable(1L, 2L).getQuantity(), "A busy row should be tried again.");
+
+        Mockito.when(store.lock(3L, 2L)).thenThrow(new PessimisticLockingFailureException("busy"));
+        Assertions.assertThrows(PessimisticLockingFailureException.class, () -> hotStock.enable(3L, 2L));
+        Assertions.assertTrue(hotStock.reserve(3L, 2L, 1, () -> true), "The db path should be open again.");
+    }
+
+    @Test
+    public void testCloseFlushesTheCounters() throws Exception {
+        Mockito.when(store.lastFlushedEpoch()).thenReturn(0L);
+        hotStock.recover();
+        Mockito.when(store.lock(1L, 2L)).thenReturn(Inventory.builder().id(7L).quantity(6).reserved(0).build());
+        hotStock.enable(1L, 2L);
+        Assertions.assertTrue(hotStock.reserve(1L, 2L, 2, () -> false));
+
+        hotStock.close();
+
+        ArgumentCaptor<Map<Long, long[]>> deltas = ArgumentCaptor.forClass(Map.class);
+        Mockito.verify(store).apply(deltas.capture(), eq(1L));
+        Assertions.assertArrayEquals(new long[]{-2, 2}, deltas.getValue().get(7L));
+        for (Object stripe : (Object[]) ReflectionTestUtils.getField(hotStock, "stripes")) {
+            Object journal = ReflectionTestUtils.getField(stripe, "journal");
+            Assertions.assertFalse(((FileChannel) ReflectionTestUtils.getField(journal, "channel")).isOpen(),
+                    "Journals should be closed.");
+        }
+        Assertions.assertThrows(IllegalStateException.class, () -> hotStock.enable(1L, 2L),
+                "Nothing should be switched after the close.");
+    }
+
+    @Test
+    public void testRecoveryReplaysSegmentsAfterCheckpoint() throws Exception {
+        Mockito.when(store.lastFlushedEpoch()).thenReturn(3L);
+        Files.writeString(journalDir.resolve("stock-journal-3-0.log"), "7 -1 1\n");
+        Files.writeString(journalDir.resolve("stock-journal-4-0.log"), "7 -1 1\n7 -2 2\n");
+        //the last line was torn by the crash
+        Files.writeString(journalDir.resolve("stock-journal-4-1.log"), "7 -1 1\n8 -1 1\n7 -1");
+
+        hotStock.recover();
+
+        ArgumentCaptor<Map<Long, long[]>> deltas = ArgumentCaptor.forClass(Map.class);
+        Mockito.verify(store).apply(deltas.capture(), eq(4L));
+        Assertions.assertArrayEquals(new long[]{-4, 4}, deltas.getValue().get(7L));
+        Assertions.assertArrayEquals(new long[]{-1, 1}, deltas.getValue().get(8L));
+        Assertions.assertFalse(Files.exists(journalDir.resolve("stock-journal-3-0.log")));
+        Assertions.assertTrue(Files.exists(journalDir.resolve("stock-journal-5-0.log")), "Journal should go on with the next epoch.");
+    }
+
+    @Test
+    public void testNothingToRecover() throws Exception {
+        Mockito.when(store.lastFlushedEpoch()).thenReturn(0L);
+        hotStock.recover();
+        hotStock.flush();
+        Mockito.verify(store, Mockito.never()).apply(anyMap(), anyLong());
+    }
+}
@@ -0,0 +1,57 @@
+package com.mftplus.ecommerce.service.stock;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PackedLongCacheTest {
+
+    @Test
+    public void testPutGetRemove() {
+        PackedLongCache<String> cache = new PackedLongCache<>(1000);
+        for (long product = 1; product <= 100; product++) {
+            for (long color = 1; color <= 5; color++) {
+                cache.put(InventoryLookup.key(product, color), product + "/" + color, cache.version());
+            }
+        }
+        Assertions.assertEquals(500, cache.size());
+        Assertions.assertEquals("42/3", cache.get(InventoryLookup.key(42L, 3L)));
+        Assertions.assertNull(cache.get(InventoryLookup.key(42L, 6L)));
+
+        //the entries moved back by the removals must still be found
+        cache.removeIf(key -> InventoryLookup.productIdOf(key) % 2 == 0);
+        Assertions.assertEquals(250, cache.size());
+        for (long product = 1; product <= 100; product++) {
+            for (long color = 1; color <= 5; color++) {
+                String expected = product % 2 == 0 ? null : product + "/" + color;
+                Assertions.assertEquals(expected, cache.get(InventoryLookup.key(product, color)));
+            }
+        }
+    }
+
+    @Test
+    public void testStaleValueIsNotPutBack() {
+        PackedLongCache<String> cache = new PackedLongCache<>(1000);
+        long version = cache.version();
+        cache.removeIf(key -> true);
+        cache.put(1L, "stale", version);
+        Assertions.assertNull(cache.get(1L), "A value read before a removal should be dropped.");
+    }
+
+    @Test
+    public void testClearedWhenFull() {
+        PackedLongCache<String> cache = new PackedLongCache<>(10);
+        for (long key = 1; key <= 11; key++) {
+            cache.put(key, "v" + key, cache.version());
+        }
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertEquals("v11", cache.get(11L));
+    }
+
+    @Test
+    public void testKeyPacking() {
+        long key = InventoryLookup.key(123456L, 7L);
+        Assertions.assertEquals(123456L, InventoryLookup.productIdOf(key));
+        Assertions.assertEquals(7L, InventoryLookup.colorIdOf(key));
+        Assertions.assertEquals(-1, InventoryLookup.key(1L << 33, 1L));
+    }
+}
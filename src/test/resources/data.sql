@@ -1,45 +1,84 @@
 -- Password : PasswordA123
 -- encrypted using https://www.javainuse.com/onlineBcrypt
 
-INSERT INTO user_tbl ( u_email, u_first_name, u_last_name, u_password, u_username, email_verified, deleted)
-VALUES ( 'UserA@junit.com', 'UserAFirstName', 'UserALastName', '$2a$10$hBn5gu6cGelJNiE6DDsaBOmZgyumCSzVwrOK/37FWgJ6aLIdZSSI2', 'UserA', true, false)
-     , ( 'UserB@junit.com', 'UserBFirstName', 'UserBLastName', '$2a$10$TlYbg57fqOy/1LJjispkjuSIvFJXbh3fy0J9fvHnCpuntZOITAjVG', 'UserB', false , false)
-      , ('UserC@junit.com', 'UserCFirstName', 'UserCLastName', '$2a$10$SYiYAIW80gDh39jwSaPyiuKGuhrLi7xTUjocL..NOx/1COWe5P03.', 'UserC', false, false);
-
-
-INSERT INTO address_tbl (address_line_1, city, country, user_id, deleted)
-VALUES ('123 Tester Hill', 'Testerton', 'England', 1, false)
-     , ('312 Spring Boot', 'Hibernate', 'England', 3, false);
-
-INSERT INTO product_tbl (p_name, short_description, long_description, p_price, deleted)
-VALUES ('Product #1', 'Product one short description.', 'This is a very long description of product #1.', 5.50, false)
-     , ('Product #2', 'Product two short description.', 'This is a very long description of product #2.', 10.56 ,false)
-     , ('Product #3', 'Product three short description.', 'This is a very long description of product #3.', 2.74 ,false)
-     , ('Product #4', 'Product four short description.', 'This is a very long description of product #4.', 15.69 ,false)
-     , ('Product #5', 'Product five short description.', 'This is a very long description of product #5.', 42.59 ,false);
-
-INSERT INTO inventory_tbl (product_id, quantity, deleted)
-VALUES (1, 5, false)
-     , (2, 8, false)
-     , (3, 12, false)
-     , (4, 73, false)
-     , (5, 2, false);
-
-INSERT INTO order_tbl (address_id, user_id, deleted)
-VALUES (1, 1, false)
-     , (1, 1, false)
-     , (1, 1, false)
-     , (2, 3, false)
-     , (2, 3, false);
-
-INSERT INTO order_quantities_tbl (order_id, product_id, quantity, deleted)
-VALUES (1, 1, 5, false)
-     , (1, 2, 5, false)
-     , (2, 3, 5, false)
-     , (2, 2, 5, false)
-     , (2, 5, 5, false)
-     , (3, 3, 5, false)
-     , (4, 4, 5, false)
-     , (4, 2, 5, false)
-     , (5, 3, 5, false)
-     , (5, 1, 5, false);
+-- sequence ids : written as they are, the sequences are moved past them on start
+
+INSERT INTO user_tbl (id, u_email, u_first_name, u_last_name, u_password, u_username, email_verified, u_phone_number, deleted)
+VALUES (1, 'UserA@junit.com', 'UserAFirstName', 'UserALastName', '$2a$10$hBn5gu6cGelJNiE6DDsaBOmZgyumCSzVwrOK/37FWgJ6aLIdZSSI2', 'usera', true, '09123858573', false)
+     , (2, 'UserB@junit.com', 'UserBFirstName', 'UserBLastName', '$2a$10$TlYbg57fqOy/1LJjispkjuSIvFJXbh3fy0J9fvHnCpuntZOITAjVG', 'userb', false, '09123858573', false)
+      , (3, 'UserC@junit.com', 'UserCFirstName', 'UserCLastName', '$2a$10$SYiYAIW80gDh39jwSaPyiuKGuhrLi7xTUjocL..NOx/1COWe5P03.', 'userc', false, '09123858573', false);
+
+INSERT INTO role_tbl (id, role_name)
+VALUES (1, 'user'),
+       (2, 'admin');
+
+INSERT INTO user_role (user_id, role_id)
+VALUES (1, 1),
+       (2, 1),
+       (3, 1);
+
+
+INSERT INTO address_tbl (id, address_line_1, city, country, user_id, deleted)
+VALUES (1, '123 Tester Hill', 'Testerton', 'England', 1, false)
+     , (2, '312 Spring Boot', 'Hibernate', 'England', 3, false);
+
+INSERT INTO brand_tbl (id, b_name, deleted)
+VALUES (1, 'lcwaikiki', false),
+       (2, 'laboutin', false);
+
+INSERT INTO product_tbl (id, p_name, short_description, long_description, deleted, brand_id)
+VALUES (1, 'Product #1', 'Product one short description.', 'This is a very long description of product #1.', false, 1)
+     , (2, 'Product #2', 'Product two short description.', 'This is a very long description of product #2.', false, 1)
+     , (3, 'Product #3', 'Product three short description.', 'This is a very long description of product #3.', false, 1)
+     , (4, 'Product #4', 'Product four short description.', 'This is a very long description of product #4.', false, 2)
+     , (5, 'Product #5', 'Product five short description.', 'This is a very long description of product #5.', false, 2);
+
+INSERT INTO category_tbl (id, c_name, deleted)
+VALUES (1, 'men', false),
+       (2, 'woman', false),
+       (3, 'unisex', false),
+       (4, 'shorts', false),
+       (5, 'tShirt', false),
+       (6, 'winterShorts', false);
+
+-- men > shorts > winterShorts
+UPDATE category_tbl SET category_id = 1 WHERE id = 4;
+
+UPDATE category_tbl SET category_id = 4 WHERE id = 6;
+
+INSERT INTO category_products_tbl (product_id, categories_id)
+VALUES (1, 1),
+       (1, 4),
+       (2, 1);
+
+INSERT INTO color_tbl (id, c_name, deleted)
+VALUES (1, 'blue', false),
+       (2, 'red', false),
+       (3, 'purple', false);
+
+INSERT INTO inventory_tbl (id, product_id, i_quantity, deleted, color_id, i_price, i_off_percent)
+VALUES (1, 1, 5, false, 1, 6, 90)
+     , (2, 1, 3, false, 2, 8, 78)
+     , (3, 2, 8, false, 1, 90, 20)
+     , (4, 3, 12, false, 1, 78, 0)
+     , (5, 4, 73, false, 1, 56, 0)
+     , (6, 5, 2, false, 1, 53, 10);
+
+INSERT INTO order_tbl (id, address_id, user_id, deleted)
+VALUES (1, 1, 1, false)
+     , (2, 1, 1, false)
+     , (3, 1, 1, false)
+     , (4, 2, 3, false)
+     , (5, 2, 3, false);
+
+INSERT INTO order_quantities_tbl (id, order_id, product_id, quantity, deleted)
+VALUES (1, 1, 1, 5, false)
+     , (2, 1, 2, 5, false)
+     , (3, 2, 3, 5, false)
+     , (4, 2, 2, 5, false)
+     , (5, 2, 5, 5, false)
+     , (6, 3, 3, 5, false)
+     , (7, 4, 4, 5, false)
+     , (8, 4, 2, 5, false)
+     , (9, 5, 3, 5, false)
+     , (10, 5, 1, 5, false);